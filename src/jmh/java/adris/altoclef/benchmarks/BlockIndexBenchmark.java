@@ -0,0 +1,131 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.BlockIndex;
+import adris.altoclef.util.helpers.BaritoneHelper;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+/**
+ * Nearest block lookups in a made up world: a square of loaded chunks around the player, each with a few blocks
+ * of every tracked type scattered through it. Seeded, so every run gets the same world.
+ * <p>
+ * {@code BlockScanner.getNearestBlock} needs the client world, see {@link #getNearestBlock()} for how close we get.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockIndexBenchmark {
+
+    // Chunks per side of the loaded square, 12 is about the default render distance
+    @Param({"4", "12", "24"})
+    public int chunkRadius;
+
+    // Of each tracked type, per chunk
+    @Param({"4", "64"})
+    public int blocksPerChunk;
+
+    private static final Block[] TRACKED = {Blocks.IRON_ORE, Blocks.COAL_ORE, Blocks.CRAFTING_TABLE, Blocks.FURNACE};
+
+    private final Vec3d player = new Vec3d(8.5, 64, 8.5);
+    private BlockIndex index;
+    // What's actually placed where, stands in for the world
+    private final Long2ObjectOpenHashMap<Block> world = new Long2ObjectOpenHashMap<>();
+    // Iron ore right around the player that the index doesn't have yet, like the scanner's close blocks
+    private final LongOpenHashSet closeIron = new LongOpenHashSet();
+
+    @Setup
+    public void setUp() {
+        // The block registry needs the game set up
+        //#if MC >= 11904
+        SharedConstants.createGameVersion();
+        //#endif
+        Bootstrap.initialize();
+
+        Random random = new Random(42);
+        index = new BlockIndex();
+        for (int chunkX = -chunkRadius; chunkX <= chunkRadius; ++chunkX) {
+            for (int chunkZ = -chunkRadius; chunkZ <= chunkRadius; ++chunkZ) {
+                Int2ObjectOpenHashMap<LongOpenHashSet> blocks = new Int2ObjectOpenHashMap<>();
+                for (Block block : TRACKED) {
+                    LongOpenHashSet positions = new LongOpenHashSet(blocksPerChunk);
+                    for (int i = 0; i < blocksPerChunk; ++i) {
+                        long packed = BlockPos.asLong((chunkX << 4) + random.nextInt(16), random.nextInt(128), (chunkZ << 4) + random.nextInt(16));
+                        positions.add(packed);
+                        world.put(packed, block);
+                    }
+                    blocks.put(BlockIndex.getId(block), positions);
+                }
+                index.putChunk(new ChunkPos(chunkX, chunkZ), blocks);
+            }
+        }
+        // The scanner's close box is 17 blocks across
+        for (int i = 0; i < 8; ++i) {
+            long packed = BlockPos.asLong(random.nextInt(17), 56 + random.nextInt(17), random.nextInt(17));
+            closeIron.add(packed);
+            world.put(packed, Blocks.IRON_ORE);
+        }
+    }
+
+    @Benchmark
+    public long findNearest() {
+        return index.findNearest(player, Double.POSITIVE_INFINITY, packed -> true, Blocks.IRON_ORE);
+    }
+
+    @Benchmark
+    public long findNearestOfSeveral() {
+        return index.findNearest(player, Double.POSITIVE_INFINITY, packed -> true, Blocks.IRON_ORE, Blocks.COAL_ORE);
+    }
+
+    // Most candidates get turned down (unreachable, blacklisted...), so the search has to keep going
+    @Benchmark
+    public long findNearestMostlyRejected() {
+        return index.findNearest(player, Double.POSITIVE_INFINITY, packed -> (packed & 15) == 0, Blocks.IRON_ORE);
+    }
+
+    @Benchmark
+    public long findNearestInRange() {
+        return index.findNearest(player, 32, packed -> true, Blocks.FURNACE);
+    }
+
+    // BlockScanner.getNearestBlock without the scanner: the index lookup checking each candidate is still there,
+    // then the close blocks. The scanner reads the live world for the check, the map stands in for it.
+    @Benchmark
+    public long getNearestBlock() {
+        LongPredicate accept = packed -> {
+            BlockPos pos = BlockPos.fromLong(packed);
+            return world.get(pos.asLong()) == Blocks.IRON_ORE;
+        };
+        long nearest = index.findNearest(player, Double.POSITIVE_INFINITY, accept, Blocks.IRON_ORE);
+        double nearestCost = nearest == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : getCost(nearest);
+        for (LongIterator iterator = closeIron.iterator(); iterator.hasNext(); ) {
+            long packed = iterator.nextLong();
+            double cost = getCost(packed);
+            if (cost >= nearestCost || !accept.test(packed)) continue;
+            nearest = packed;
+            nearestCost = cost;
+        }
+        return nearest;
+    }
+
+    private double getCost(long packed) {
+        return BaritoneHelper.calculateGenericHeuristic(player.x, player.y, player.z,
+                BlockPos.unpackLongX(packed) + 0.5, BlockPos.unpackLongY(packed) + 0.5, BlockPos.unpackLongZ(packed) + 0.5);
+    }
+}
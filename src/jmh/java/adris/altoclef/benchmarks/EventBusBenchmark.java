@@ -0,0 +1,63 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.eventbus.AsyncDelivery;
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.Subscription;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What publishing costs the publisher: handing an event to every synchronous subscriber, or queueing it for the worker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+
+    // Own event types, topics are global
+    public record SyncEvent(int value) {
+    }
+
+    public record AsyncEvent(int value) {
+    }
+
+    @Param({"1", "8", "32"})
+    public int subscribers;
+
+    private final List<Subscription<?>> subscriptions = new ArrayList<>();
+    private final SyncEvent syncEvent = new SyncEvent(1);
+    private final AsyncEvent asyncEvent = new AsyncEvent(1);
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        for (int i = 0; i < subscribers; ++i) {
+            subscriptions.add(EventBus.subscribe(SyncEvent.class, blackhole::consume));
+            subscriptions.add(EventBus.subscribe(AsyncEvent.class, AsyncDelivery.dropOldest(1024), blackhole::consume));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Subscription<?> subscription : subscriptions) {
+            EventBus.unsubscribe(subscription);
+        }
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public void publish() {
+        EventBus.publish(syncEvent);
+    }
+
+    @Benchmark
+    public void publishAsync() {
+        EventBus.publish(asyncEvent);
+    }
+}
@@ -0,0 +1,92 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.EntityIndex;
+import adris.altoclef.trackers.EntityQuery;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.math.Vec3d;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * The search behind {@code EntityTracker.getClosestItemDrop}: closest drop by path cost among a pile of dropped items
+ * scattered around the player. Seeded, so every run gets the same drops.
+ * <p>
+ * The tracker itself needs a world to update from, so this runs its query straight on the index it keeps.
+ * The blacklist check is left out, and every drop is on the ground.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemDropBenchmark {
+
+    // Dropped items in the index, a mob farm or a blown up chest can leave a few hundred
+    @Param({"16", "256", "2048"})
+    public int drops;
+
+    // How far from the player they're spread
+    @Param({"64"})
+    public int spread;
+
+    private static final Item[] DROPPED = {Items.COBBLESTONE, Items.DIRT, Items.ROTTEN_FLESH, Items.BONE, Items.IRON_INGOT};
+
+    private final Vec3d player = new Vec3d(0.5, 64, 0.5);
+    private final Predicate<Entity> isGrounded = Entity::isOnGround;
+    private final EntityQuery query = new EntityQuery();
+    private EntityIndex index;
+
+    @Setup
+    public void setUp() {
+        // Items and entity types need the game set up
+        //#if MC >= 11904
+        SharedConstants.createGameVersion();
+        //#endif
+        Bootstrap.initialize();
+
+        Random random = new Random(42);
+        index = new EntityIndex();
+        for (int i = 0; i < drops; ++i) {
+            // Never added to a world, the index only reads them
+            ItemEntity drop = new ItemEntity(EntityType.ITEM, null);
+            drop.setStack(new ItemStack(DROPPED[random.nextInt(DROPPED.length)], 1 + random.nextInt(64)));
+            drop.setPosition(random.nextInt(spread * 2) - spread + 0.5, 60 + random.nextInt(8), random.nextInt(spread * 2) - spread + 0.5);
+            drop.setOnGround(true);
+            index.add(drop, ItemEntity.class);
+        }
+    }
+
+    @Benchmark
+    public List<Entity> closestDrop() {
+        query.reset().ofItems(Items.IRON_INGOT).byPathCost().from(player);
+        index.find(query, isGrounded);
+        return query.getResults();
+    }
+
+    @Benchmark
+    public List<Entity> closestDropOfSeveral() {
+        query.reset().ofItems(Items.COBBLESTONE, Items.DIRT).byPathCost().from(player);
+        index.find(query, isGrounded);
+        return query.getResults();
+    }
+
+    // Nothing passes the caller's filter, so every drop of the item gets looked at
+    @Benchmark
+    public List<Entity> closestDropAllRejected() {
+        query.reset().ofItems(Items.BONE).byPathCost().from(player).filter(entity -> false);
+        index.find(query, isGrounded);
+        return query.getResults();
+    }
+}
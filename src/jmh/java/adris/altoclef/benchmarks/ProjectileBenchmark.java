@@ -0,0 +1,77 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.util.baritone.CachedProjectile;
+import adris.altoclef.util.helpers.ProjectileHelper;
+import adris.altoclef.util.helpers.ProjectileSimulator;
+import net.minecraft.util.math.Vec3d;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where a batch of projectiles ends up near the player: the old analytic guess against the tick by tick simulation.
+ * The arrows are random but seeded, so every run gets the same volley.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectileBenchmark {
+
+    // How many projectiles are in the air
+    @Param({"1", "16", "64"})
+    public int projectiles;
+
+    // Same as EntitySnapshot
+    @Param({"40"})
+    public int ticks;
+
+    private final Vec3d player = new Vec3d(0, 64, 0);
+    private List<CachedProjectile> volley;
+    private ProjectileSimulator simulation;
+    private final double[] out = new double[4];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        volley = new ArrayList<>(projectiles);
+        for (int i = 0; i < projectiles; ++i) {
+            CachedProjectile arrow = new CachedProjectile();
+            // Somewhere 10-30 blocks out, aimed roughly at the player
+            double angle = random.nextDouble() * Math.PI * 2, distance = 10 + random.nextDouble() * 20;
+            arrow.position = new Vec3d(Math.cos(angle) * distance, 64 + random.nextDouble() * 6, Math.sin(angle) * distance);
+            arrow.velocity = player.subtract(arrow.position).normalize().multiply(1.5 + random.nextDouble()).add(0, 0.2, 0);
+            arrow.gravity = ProjectileHelper.ARROW_GRAVITY_ACCEL;
+            arrow.drag = ProjectileHelper.AIR_DRAG;
+            volley.add(arrow);
+        }
+        simulation = new ProjectileSimulator(volley, ticks);
+    }
+
+    @Benchmark
+    public void analyticClosestApproach(Blackhole blackhole) {
+        for (CachedProjectile arrow : volley) {
+            blackhole.consume(ProjectileHelper.calculateArrowClosestApproach(arrow.position, arrow.velocity, arrow.gravity, player));
+        }
+    }
+
+    @Benchmark
+    public ProjectileSimulator simulate() {
+        return new ProjectileSimulator(volley, ticks);
+    }
+
+    @Benchmark
+    public double simulatedClosestApproach() {
+        double total = 0;
+        for (int p = 0; p < simulation.getProjectileCount(); ++p) {
+            total += simulation.closestApproach(p, player.x, player.y, player.z, out);
+        }
+        return total;
+    }
+}
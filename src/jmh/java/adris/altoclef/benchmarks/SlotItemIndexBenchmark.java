@@ -0,0 +1,91 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.trackers.storage.SlotItemIndex;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@code InventorySubTracker.updateState} does with the open screen: file every slot from scratch after the
+ * screen changes, or just the few slots the server told us about. Seeded, so every run gets the same inventory.
+ * <p>
+ * The tracker reads its slots off the client's open screen, so this drives the {@link SlotItemIndex} it updates
+ * with made up stacks instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotItemIndexBenchmark {
+
+    // Player inventory alone, and with a double chest open
+    @Param({"46", "90"})
+    public int windowSlots;
+
+    // Slots the server changed since the last update
+    @Param({"1", "4"})
+    public int dirtySlots;
+
+    private static final Item[] ITEMS = {Items.COBBLESTONE, Items.DIRT, Items.OAK_LOG, Items.OAK_PLANKS, Items.STICK,
+            Items.IRON_INGOT, Items.COAL, Items.BREAD, Items.DIAMOND_PICKAXE, Items.TORCH};
+
+    private final SlotItemIndex index = new SlotItemIndex();
+    private ItemStack[] stacks;
+    private boolean[] playerInventory;
+    private int[] dirty;
+
+    @Setup
+    public void setUp() {
+        // Items need the game set up
+        //#if MC >= 11904
+        SharedConstants.createGameVersion();
+        //#endif
+        Bootstrap.initialize();
+
+        Random random = new Random(42);
+        stacks = new ItemStack[windowSlots];
+        playerInventory = new boolean[windowSlots];
+        for (int i = 0; i < windowSlots; ++i) {
+            // About a third empty
+            stacks[i] = random.nextInt(3) == 0 ? ItemStack.EMPTY : new ItemStack(ITEMS[random.nextInt(ITEMS.length)], 1 + random.nextInt(64));
+            // The player's slots come after the container's
+            playerInventory[i] = i >= windowSlots - 36;
+        }
+        dirty = new int[dirtySlots];
+        for (int i = 0; i < dirtySlots; ++i) {
+            dirty[i] = random.nextInt(windowSlots);
+        }
+        rebuild();
+    }
+
+    @Benchmark
+    public int rebuild() {
+        index.reset(windowSlots);
+        for (int i = 0; i < windowSlots; ++i) {
+            index.register(i, playerInventory[i], stacks[i]);
+        }
+        return index.getCount(true, Items.COBBLESTONE);
+    }
+
+    @Benchmark
+    public int updateDirty() {
+        for (int slot : dirty) {
+            index.unregister(slot);
+            index.register(slot, index.isInPlayerInventory(slot), stacks[slot]);
+        }
+        return index.getCount(true, Items.COBBLESTONE);
+    }
+
+    @Benchmark
+    public int count() {
+        return index.getCount(true, Items.COBBLESTONE) + index.getCount(false, Items.IRON_INGOT);
+    }
+}
@@ -0,0 +1,73 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.util.helpers.WorldHelper;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.entity.EntityType;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.decoration.ArmorStandEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WorldHelper#isSurrounded(net.minecraft.entity.Entity, List)} against a crowd of hostiles around the player,
+ * some close enough to count and most not. Seeded, so every run gets the same crowd.
+ * <p>
+ * Armor stands stand in for the mobs, mobs can't be made without a world. The check only reads positions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SurroundedBenchmark {
+
+    // Hostiles the entity tracker knows about
+    @Param({"4", "32", "128"})
+    public int hostiles;
+
+    private LivingEntity player;
+    private List<LivingEntity> crowd;
+    // Everyone on the same side, so the check can't stop early
+    private List<LivingEntity> oneSide;
+
+    @Setup
+    public void setUp() {
+        // Entity types need the game set up
+        //#if MC >= 11904
+        SharedConstants.createGameVersion();
+        //#endif
+        Bootstrap.initialize();
+
+        Random random = new Random(42);
+        player = stand(0.5, 64, 0.5);
+        crowd = new ArrayList<>(hostiles);
+        oneSide = new ArrayList<>(hostiles);
+        for (int i = 0; i < hostiles; ++i) {
+            crowd.add(stand(random.nextInt(48) - 24 + 0.5, 64, random.nextInt(48) - 24 + 0.5));
+            oneSide.add(stand(1.5 + random.nextInt(6), 64, random.nextInt(3) - 1 + 0.5));
+        }
+    }
+
+    private static LivingEntity stand(double x, double y, double z) {
+        // Never added to a world, only its position gets read
+        ArmorStandEntity stand = new ArmorStandEntity(EntityType.ARMOR_STAND, null);
+        stand.setPosition(x, y, z);
+        return stand;
+    }
+
+    @Benchmark
+    public boolean surrounded() {
+        return WorldHelper.isSurrounded(player, crowd);
+    }
+
+    @Benchmark
+    public boolean notSurrounded() {
+        return WorldHelper.isSurrounded(player, oneSide);
+    }
+}
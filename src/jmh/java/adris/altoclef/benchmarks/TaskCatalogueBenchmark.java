@@ -0,0 +1,53 @@
+package adris.altoclef.benchmarks;
+
+import adris.altoclef.TaskCatalogue;
+import adris.altoclef.tasks.ResourceTask;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the task that gets a resource, by catalogue name and by item, for a few resources
+ * from the simple (mined) to the deep (crafted from crafted things).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskCatalogueBenchmark {
+
+    @Param({"cobblestone", "planks", "iron_pickaxe", "diamond_chestplate"})
+    public String resource;
+
+    private Item item;
+
+    @Setup
+    public void setUp() {
+        // Items and blocks need the game set up
+        //#if MC >= 11904
+        SharedConstants.createGameVersion();
+        //#endif
+        Bootstrap.initialize();
+
+        // Fill the catalogue now, it's filled once per game
+        TaskCatalogue.init();
+        Item[] matches = TaskCatalogue.getItemMatches(resource);
+        item = matches.length > 0 ? matches[0] : Items.AIR;
+    }
+
+    @Benchmark
+    public ResourceTask byName() {
+        return TaskCatalogue.getItemTask(resource, 1);
+    }
+
+    @Benchmark
+    public ResourceTask byItem() {
+        return TaskCatalogue.getItemTask(item, 1);
+    }
+}
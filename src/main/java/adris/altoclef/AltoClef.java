@@ -19,6 +19,7 @@ import adris.altoclef.multiversion.RenderLayerVer;
 import adris.altoclef.multiversion.versionedfields.Blocks;
 import adris.altoclef.tasksystem.Task;
 import adris.altoclef.tasksystem.TaskRunner;
+import adris.altoclef.tasksystem.TickScheduler;
 import adris.altoclef.trackers.*;
 import adris.altoclef.trackers.storage.ContainerSubTracker;
 import adris.altoclef.trackers.storage.ItemStorageTracker;
@@ -26,8 +27,11 @@ import adris.altoclef.ui.AltoClefTickChart;
 import adris.altoclef.ui.CommandStatusOverlay;
 import adris.altoclef.ui.MessagePriority;
 import adris.altoclef.ui.MessageSender;
+import adris.altoclef.ui.TickProfilerOverlay;
 import adris.altoclef.util.helpers.InputHelper;
+import adris.altoclef.util.helpers.LineOfSightCache;
 import adris.altoclef.util.helpers.StorageHelper;
+import adris.altoclef.util.profiler.TickProfiler;
 import baritone.Baritone;
 import baritone.altoclef.AltoClefSettings;
 import baritone.api.BaritoneAPI;
@@ -55,6 +59,7 @@ public class AltoClef implements ModInitializer {
     // Central Managers
     private static CommandExecutor commandExecutor;
     private TaskRunner taskRunner;
+    private TickScheduler tickScheduler;
     private TrackerManager trackerManager;
     private BotBehaviour botBehaviour;
     private PlayerExtraController extraController;
@@ -74,6 +79,7 @@ public class AltoClef implements ModInitializer {
     // Renderers
     private CommandStatusOverlay commandStatusOverlay;
     private AltoClefTickChart altoClefTickChart;
+    private TickProfilerOverlay tickProfilerOverlay;
     // Settings
     private adris.altoclef.Settings settings;
     // Misc managers/input
@@ -145,9 +151,20 @@ public class AltoClef implements ModInitializer {
         miscBlockTracker = new MiscBlockTracker(this);
         craftingRecipeTracker = new CraftingRecipeTracker(trackerManager);
 
+        // What runs each tick, in order. Background work only gets what's left of its budget.
+        tickScheduler = new TickScheduler(4);
+        tickScheduler.addCritical("ContainerSubTracker.onServerTick", () -> containerSubTracker.onServerTick());
+        tickScheduler.addCritical("MiscBlockTracker.tick", () -> miscBlockTracker.tick());
+        tickScheduler.addCritical("TrackerManager.tick", () -> trackerManager.tick());
+        tickScheduler.addCritical("BlockScanner.tick", () -> blockScanner.tick());
+        tickScheduler.addCritical("TaskRunner.tick", () -> taskRunner.tick());
+        tickScheduler.addDeferrable("BlockScanner.runBackgroundWork", 10, 3, deadline -> blockScanner.runBackgroundWork(deadline));
+        tickScheduler.addDeferrable("ContainerSubTracker.pruneInvalidCaches", 0, 1, deadline -> containerSubTracker.pruneInvalidCaches(deadline));
+
         // Renderers
         commandStatusOverlay = new CommandStatusOverlay();
         altoClefTickChart = new AltoClefTickChart(MinecraftClient.getInstance().textRenderer);
+        tickProfilerOverlay = new TickProfilerOverlay(MinecraftClient.getInstance().textRenderer);
 
         // Misc managers
         messageSender = new MessageSender();
@@ -189,7 +206,12 @@ public class AltoClef implements ModInitializer {
         // Tick with the client
         EventBus.subscribe(ClientTickEvent.class, evt -> {
             long nanos = System.nanoTime();
+            TickProfiler.setEnabled(settings.shouldShowTickProfiler());
+            tickScheduler.setBudgetMs(settings.getBackgroundWorkBudgetMs());
+            TickProfiler.beginTick();
+            LineOfSightCache.clear();
             onClientTick();
+            TickProfiler.endTick();
             altoClefTickChart.pushTickNanos(System.nanoTime()-nanos);
         });
 
@@ -199,9 +221,6 @@ public class AltoClef implements ModInitializer {
         // Playground
         Playground.IDLE_TEST_INIT_FUNCTION(this);
 
-        // Tasks
-        TaskCatalogue.init();
-
         getClientBaritone().getGameEventHandler().registerEventListener(new TabCompleter());
 
         // External mod initialization
@@ -219,13 +238,7 @@ public class AltoClef implements ModInitializer {
             stopTasks();
         }
 
-        // TODO: should this go here?
-        storageTracker.setDirty();
-        containerSubTracker.onServerTick();
-        miscBlockTracker.tick();
-        trackerManager.tick();
-        blockScanner.tick();
-        taskRunner.tick();
+        tickScheduler.tick();
 
         messageSender.tick();
 
@@ -253,6 +266,10 @@ public class AltoClef implements ModInitializer {
         if (settings.shouldShowDebugTickMs()) {
             altoClefTickChart.render(this, context, 1, context.getScaledWindowWidth() / 2 - 124);
         }
+
+        if (settings.shouldShowTickProfiler()) {
+            tickProfilerOverlay.render(this, context);
+        }
     }
 
     private void initializeBaritoneSettings() {
@@ -327,6 +344,13 @@ public class AltoClef implements ModInitializer {
         return taskRunner;
     }
 
+    /**
+     * Runs the client tick's subsystems, and tells background work when its time is up
+     */
+    public TickScheduler getTickScheduler() {
+        return tickScheduler;
+    }
+
     /**
      * The user task chain (runs your command. Ex. Get Diamonds, Beat the Game)
      */
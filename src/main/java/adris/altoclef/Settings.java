@@ -50,6 +50,29 @@ public class Settings implements IFailableConfigFile {
      */
     private boolean showDebugTickMs = false;
 
+    /**
+     * If true, times every tracker, task chain and task each tick and shows where the tick time goes,
+     * along with the typical (p50) and worst case (p99) time per task over the last 200 ticks.
+     * <p>
+     * Costs a little performance itself, so only turn it on when looking for a slowdown.
+     */
+    private boolean showTickProfiler = false;
+
+    /**
+     * How many background threads scan newly loaded chunks for blocks.
+     * <p>
+     * 0 (or less) picks a number based on your CPU cores.
+     * Takes effect after a restart.
+     */
+    private int blockScannerThreads = 0;
+
+    /**
+     * How many milliseconds per tick background upkeep (merging block scans, pruning container caches...) may take.
+     * <p>
+     * Work that doesn't fit is continued next tick. Survival chains and the task runner always run, this only limits the rest.
+     */
+    private float backgroundWorkBudgetMs = 4;
+
     /**
      * If true, text will appear on the top left showing the current
      * task chain.
@@ -459,6 +482,18 @@ public class Settings implements IFailableConfigFile {
         return showDebugTickMs;
     }
 
+    public boolean shouldShowTickProfiler() {
+        return showTickProfiler;
+    }
+
+    public int getBlockScannerThreads() {
+        return blockScannerThreads;
+    }
+
+    public float getBackgroundWorkBudgetMs() {
+        return backgroundWorkBudgetMs;
+    }
+
     public boolean shouldHideAllWarningLogs() {
         return hideAllWarningLogs;
     }
@@ -31,20 +31,44 @@ import java.util.function.Function;
  * <p>
  * Call `TaskCatalogue.getItemTask` to return a task given a resource key.
  * Call `TaskCatalogue.getSquashedItemTask` to return a task that gets multiple resources, combining their steps.
+ * <p>
+ * The catalogue is filled the first time anything asks for it, not when the game starts.
  */
 @SuppressWarnings({"rawtypes"})
 public class TaskCatalogue {
 
     private static final HashMap<String, Item[]> nameToItemMatches = new HashMap<>();
     private static final HashMap<String, CataloguedResource> nameToResourceTask = new HashMap<>();
-    private static final HashMap<Item, CataloguedResource> itemToResourceTask = new HashMap<>();
-    private static final HashSet<Item> resourcesObtainable = new HashSet<>();
+    // Indexed by item raw id, null for items that don't have a resource of their own
+    private static CataloguedResource[] itemIdToResourceTask = new CataloguedResource[0];
+    private static final BitSet resourcesObtainable = new BitSet();
+
+    private static volatile boolean loaded = false;
+    private static boolean loading = false;
 
+    /**
+     * Fills the catalogue now, instead of the first time it's used.
+     */
     public static void init() {
-        nameToItemMatches.keySet();
+        ensureLoaded();
+    }
+
+    private static void ensureLoaded() {
+        if (loaded) return;
+        synchronized (TaskCatalogue.class) {
+            // Resources asking for other resources while we fill it (ex. `t("planks")`) get what's there so far
+            if (loaded || loading) return;
+            loading = true;
+            try {
+                registerAll();
+            } finally {
+                loading = false;
+            }
+            loaded = true;
+        }
     }
 
-    static {
+    private static void registerAll() {
         /// DEFINE RESOURCE TASKS HERE
         {
             String p = "planks";
@@ -648,8 +672,8 @@ public class TaskCatalogue {
         }
         matches = supportedMatches.toArray(new Item[0]);
 
-        CataloguedResource result = new CataloguedResource(matches, getTask);
         Block[] blocks = ItemHelper.itemsToBlocks(matches);
+        CataloguedResource result = new CataloguedResource(blocks, getTask);
         // DEFAULT BEHAVIOUR: Mine if present & assume overworld is required!
         if (blocks.length != 0) {
             result.mineIfPresent();
@@ -660,29 +684,40 @@ public class TaskCatalogue {
         }
         nameToResourceTask.put(name, result);
         nameToItemMatches.put(name, matches);
-        resourcesObtainable.addAll(Arrays.asList(matches));
+        for (Item match : matches) {
+            resourcesObtainable.set(Item.getRawId(match));
+        }
 
         // If this resource is just one item, consider it collectable.
         if (matches.length == 1) {
-            if (itemToResourceTask.containsKey(matches[0])) {
+            int id = Item.getRawId(matches[0]);
+            if (getResource(matches[0]) != null) {
                 throw new IllegalStateException("Tried cataloguing " + matches[0].getTranslationKey() + " twice!");
             }
-            itemToResourceTask.put(matches[0], result);
+            if (id >= itemIdToResourceTask.length) {
+                itemIdToResourceTask = Arrays.copyOf(itemIdToResourceTask, Math.max(id + 1, itemIdToResourceTask.length * 2));
+            }
+            itemIdToResourceTask[id] = result;
         }
 
         return result;
     }
 
+    private static CataloguedResource getResource(Item item) {
+        int id = Item.getRawId(item);
+        return id < itemIdToResourceTask.length ? itemIdToResourceTask[id] : null;
+    }
+
     // This is here so that we can use strings for item targets (optionally) and stuff like that.
     public static Item[] getItemMatches(String name) {
-        if (!nameToItemMatches.containsKey(name)) {
-            return new Item[0];
-        }
-        return nameToItemMatches.get(name);
+        ensureLoaded();
+        Item[] matches = nameToItemMatches.get(name);
+        return matches != null ? matches : new Item[0];
     }
 
     public static boolean isObtainable(Item item) {
-        return resourcesObtainable.contains(item);
+        ensureLoaded();
+        return resourcesObtainable.get(Item.getRawId(item));
     }
 
     public static ItemTarget getItemTarget(String name, int count) {
@@ -694,24 +729,27 @@ public class TaskCatalogue {
     }
 
     public static ResourceTask getItemTask(String name, int count) {
-
-        if (!taskExists(name)) {
+        ensureLoaded();
+        CataloguedResource resource = nameToResourceTask.get(name);
+        if (resource == null) {
             Debug.logWarning("Task " + name + " does not exist. Error possibly.");
             Debug.logStack();
             return null;
         }
 
-        return nameToResourceTask.get(name).getResource(count);
+        return resource.getResource(count);
     }
 
     public static ResourceTask getItemTask(Item item, int count) {
-        if (!taskExists(item)) {
+        ensureLoaded();
+        CataloguedResource resource = getResource(item);
+        if (resource == null) {
             Debug.logWarning("Task " + item + " does not exist. Error possibly.");
             Debug.logStack();
             return null;
         }
 
-        return itemToResourceTask.get(item).getResource(count);
+        return resource.getResource(count);
     }
 
     public static ResourceTask getItemTask(ItemTarget target) {
@@ -725,14 +763,17 @@ public class TaskCatalogue {
     }
 
     public static boolean taskExists(String name) {
+        ensureLoaded();
         return nameToResourceTask.containsKey(name);
     }
 
     public static boolean taskExists(Item item) {
-        return itemToResourceTask.containsKey(item);
+        ensureLoaded();
+        return getResource(item) != null;
     }
 
     public static Collection<String> resourceNames() {
+        ensureLoaded();
         return nameToResourceTask.keySet();
     }
 
@@ -924,15 +965,16 @@ public class TaskCatalogue {
     }
 
     private static class CataloguedResource {
-        private final Item[] _targets;
+        // Blocks of the targets, worked out once instead of per task
+        private final Block[] _targetBlocks;
         private final Function<Integer, ResourceTask> _getResource;
 
         private boolean _mineIfPresent;
         private boolean _forceDimension = false;
         private Dimension _targetDimension;
 
-        public CataloguedResource(Item[] targets, Function<Integer, ResourceTask> getResource) {
-            _targets = targets;
+        public CataloguedResource(Block[] targetBlocks, Function<Integer, ResourceTask> getResource) {
+            _targetBlocks = targetBlocks;
             _getResource = getResource;
         }
 
@@ -960,7 +1002,7 @@ public class TaskCatalogue {
         public ResourceTask getResource(int count) {
             ResourceTask result = _getResource.apply(count);
             if (_mineIfPresent) {
-                result = result.mineIfPresent(ItemHelper.itemsToBlocks(_targets));
+                result = result.mineIfPresent(_targetBlocks);
             }
             if (_forceDimension) {
                 result = result.forceDimension(_targetDimension);
@@ -2,10 +2,12 @@ package adris.altoclef.butler;
 
 import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
+import adris.altoclef.eventbus.AsyncDelivery;
 import adris.altoclef.eventbus.EventBus;
 import adris.altoclef.eventbus.events.ChatMessageEvent;
 import adris.altoclef.eventbus.events.TaskFinishedEvent;
 import adris.altoclef.ui.MessagePriority;
+import net.minecraft.client.MinecraftClient;
 import net.minecraft.network.message.MessageType;
 
 import java.util.Objects;
@@ -46,18 +48,21 @@ public class Butler {
         });
 
         // Receive system events
-        EventBus.subscribe(ChatMessageEvent.class, evt -> {
-            boolean debug = ButlerConfig.getInstance().whisperFormatDebug;
+        // Only the string parsing happens on the event worker, busy servers send a lot of chat. Anything with state
+        // (the repeat check, acting on a whisper) happens back on the client thread.
+        // Blocking instead of dropping, a dropped message could be a command. Parsing is quick, so the client thread
+        // only waits if hundreds of messages arrive at once.
+        EventBus.subscribe(ChatMessageEvent.class, AsyncDelivery.block(256), evt -> {
             String message = evt.messageContent();
             String sender = evt.senderName();
             MessageType messageType = evt.messageType();
-            String receiver = mod.getPlayer().getName().getString();
+            String receiver = evt.receiverName();
+            if (receiver == null) return;
+
             if (sender != null && !Objects.equals(sender, receiver) && shouldAccept(messageType)) {
                 String wholeMessage = sender + " " + receiver + " " + message;
-                if (debug) {
-                    Debug.logMessage("RECEIVED WHISPER: \"" + wholeMessage + "\".");
-                }
-                this.mod.getButler().receiveMessage(wholeMessage, receiver);
+                WhisperChecker.MessageResult result = WhisperChecker.parse(receiver, wholeMessage);
+                MinecraftClient.getInstance().execute(() -> this.mod.getButler().receiveMessage(wholeMessage, result));
             }
         });
     }
@@ -73,10 +78,15 @@ public class Butler {
         //#endif
     }
 
-    private void receiveMessage(String msg, String receiver) {
+    private void receiveMessage(String msg, WhisperChecker.MessageResult result) {
         // Format: <USER> whispers to you: <MESSAGE>
         // Format: <USER> whispers: <MESSAGE>
-        WhisperChecker.MessageResult result = this.whisperChecker.receiveMessage(mod, receiver, msg);
+        if (whisperChecker.isRepeat(msg)) {
+            result = null;
+        }
+        if (ButlerConfig.getInstance().whisperFormatDebug) {
+            Debug.logMessage("RECEIVED WHISPER: \"" + msg + "\".");
+        }
         if (result != null) {
             this.receiveWhisper(result.from, result.message);
         } else if (ButlerConfig.getInstance().whisperFormatDebug) {
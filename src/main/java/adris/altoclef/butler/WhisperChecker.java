@@ -1,6 +1,5 @@
 package adris.altoclef.butler;
 
-import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
 import adris.altoclef.util.time.TimerGame;
 
@@ -54,19 +53,25 @@ public class WhisperChecker {
         return result;
     }
 
-    public MessageResult receiveMessage(AltoClef mod, String ourUsername, String msg) {
-        String foundMiddlePart = "";
-        int index = -1;
-
+    /**
+     * Whether we just got this exact message. Client thread only.
+     */
+    public boolean isRepeat(String msg) {
         boolean duplicate = (msg.equals(_lastMessage));
         if (duplicate && !_repeatTimer.elapsed()) {
             _repeatTimer.reset();
             // It's probably an actual duplicate. IDK why we get those but yeah.
-            return null;
+            return true;
         }
 
         _lastMessage = msg;
+        return false;
+    }
 
+    /**
+     * Tries every whisper format on the message. Only looks at strings, so any thread can call it.
+     */
+    public static MessageResult parse(String ourUsername, String msg) {
         for (String format : ButlerConfig.getInstance().whisperFormats) {
             MessageResult check = tryParse(ourUsername, format, msg);
             if (check != null) {
@@ -38,6 +38,9 @@ public class FoodChain extends SingleTaskChain {
     private boolean requestFillup = false;
     private boolean needsFood = false;
     private Optional<Item> cachedPerfectFood = Optional.empty();
+    private int cachedFoodScore = 0;
+    // Whether this tick's onPreTick got far enough that going out for food is allowed
+    private boolean canCollectFood = false;
     private boolean shouldStop = false;
 
     public FoodChain(TaskRunner runner) {
@@ -89,12 +92,14 @@ public class FoodChain extends SingleTaskChain {
     }
 
     @Override
-    public float getPriority() {
+    protected void onPreTick() {
+        // Only set once we know eating isn't off for this tick
+        canCollectFood = false;
         AltoClef mod = AltoClef.getInstance();
 
         if (WorldHelper.isInNetherPortal()) {
             stopEat();
-            return Float.NEGATIVE_INFINITY;
+            return;
         }
         // do not interrupt defending from mobs by eating
         if (mod.getMobDefenseChain().isPuttingOutFire()
@@ -103,24 +108,24 @@ public class FoodChain extends SingleTaskChain {
                 || mod.getMobDefenseChain().isDoingAcrobatics()
         ) {
             stopEat();
-            return Float.NEGATIVE_INFINITY;
+            return;
         }
         dragonBreathTracker.updateBreath(mod);
         for (BlockPos playerIn : WorldHelper.getBlocksTouchingPlayer()) {
             if (dragonBreathTracker.isTouchingDragonBreath(playerIn)) {
                 stopEat();
-                return Float.NEGATIVE_INFINITY;
+                return;
             }
         }
         if (!mod.getModSettings().isAutoEat()) {
             stopEat();
-            return Float.NEGATIVE_INFINITY;
+            return;
         }
 
         // do NOT eat while in lava if we are escaping it (spaghetti code dependencies go brrrr)
         if (mod.getPlayer().isInLava()) {
             stopEat();
-            return Float.NEGATIVE_INFINITY;
+            return;
         }
 
         /*
@@ -134,10 +139,10 @@ public class FoodChain extends SingleTaskChain {
         if (!mod.getMLGBucketChain().doneMLG() || mod.getMLGBucketChain().isFalling(mod) ||
                 mod.getPlayer().isBlocking() || shouldStop) {
             stopEat();
-            return Float.NEGATIVE_INFINITY;
+            return;
         }
         Pair<Integer, Optional<Item>> calculation = calculateFood(mod);
-        int cachedFoodScore = calculation.getLeft();
+        cachedFoodScore = calculation.getLeft();
         cachedPerfectFood = calculation.getRight();
         hasFood = cachedFoodScore > 0;
         // If we requested a fillup but we're full, stop.
@@ -158,14 +163,21 @@ public class FoodChain extends SingleTaskChain {
 
             // Make sure we're not facing a container
             if (!LookHelper.tryAvoidingInteractable(mod)) {
-                return Float.NEGATIVE_INFINITY;
+                return;
             }
             startEat(mod, toUse);
         } else {
             stopEat();
         }
+        canCollectFood = true;
+    }
 
-        Settings settings = mod.getModSettings();
+    @Override
+    public float getPriority() {
+        // Food eating is handled asynchronously (onPreTick), this is only about going out to get more.
+        if (!canCollectFood) return Float.NEGATIVE_INFINITY;
+
+        Settings settings = AltoClef.getInstance().getModSettings();
 
         if (needsFood || cachedFoodScore < settings.getMinimumFoodAllowed()) {
             needsFood = cachedFoodScore < settings.getFoodUnitsToCollect();
@@ -178,11 +190,14 @@ public class FoodChain extends SingleTaskChain {
             }
         }
 
-
-        // Food eating is handled asynchronously.
         return Float.NEGATIVE_INFINITY;
     }
 
+    @Override
+    public float getPriorityCeiling() {
+        return 55f;
+    }
+
     private boolean areEnemiesNearby(AltoClef mod) {
         for (Entity entity : mod.getEntityTracker().getCloseEntities()) {
             if (entity instanceof HostileEntity hostile && hostile.distanceTo(mod.getPlayer()) < (isTryingToEat?14:7)) {
@@ -117,6 +117,11 @@ public class MLGBucketFallChain extends SingleTaskChain implements ITaskOverride
         return "MLG Water Bucket Fall Chain";
     }
 
+    @Override
+    public boolean isSafetyCritical() {
+        return true;
+    }
+
     @Override
     public boolean isActive() {
         // We're always checking for mlg.
@@ -1,7 +1,6 @@
 package adris.altoclef.chains;
 
 import adris.altoclef.AltoClef;
-import adris.altoclef.Debug;
 import adris.altoclef.control.KillAura;
 import adris.altoclef.multiversion.versionedfields.Entities;
 import adris.altoclef.multiversion.item.ItemVer;
@@ -13,6 +12,8 @@ import adris.altoclef.tasks.movement.RunAwayFromCreepersTask;
 import adris.altoclef.tasks.movement.RunAwayFromHostilesTask;
 import adris.altoclef.tasks.speedrun.DragonBreathTracker;
 import adris.altoclef.tasksystem.TaskRunner;
+import adris.altoclef.trackers.EntityQuery;
+import adris.altoclef.trackers.EntitySnapshot;
 import adris.altoclef.util.baritone.CachedProjectile;
 import adris.altoclef.util.helpers.*;
 import adris.altoclef.util.slots.PlayerSlot;
@@ -52,6 +53,10 @@ public class MobDefenseChain extends SingleTaskChain {
     private static final double ARROW_KEEP_DISTANCE_HORIZONTAL = 2;
     private static final double ARROW_KEEP_DISTANCE_VERTICAL = 10;
     private static final double SAFE_KEEP_DISTANCE = 8;
+    // Wither skeletons are dangerous because of the wither effect. Oof kinda obvious.
+    // If we merely force field them, we will run into them and get the wither effect which will kill us.
+    private static final Class<?>[] dangerousMobs = new Class[]{Entities.WARDEN, WitherEntity.class, WitherSkeletonEntity.class,
+            HoglinEntity.class, ZoglinEntity.class, PiglinBruteEntity.class, VindicatorEntity.class};
     private static final List<Class<? extends Entity>> ignoredMobs = List.of(Entities.WARDEN, WitherEntity.class, EndermanEntity.class, BlazeEntity.class,
             WitherSkeletonEntity.class, HoglinEntity.class, ZoglinEntity.class, PiglinBruteEntity.class, VindicatorEntity.class, MagmaCubeEntity.class);
 
@@ -68,6 +73,14 @@ public class MobDefenseChain extends SingleTaskChain {
 
     private float cachedLastPriority;
 
+    // Asked every tick, so set up once
+    private final EntityQuery dangerousMobQuery = new EntityQuery().ofTypes(dangerousMobs).within(SAFE_KEEP_DISTANCE - 2)
+            .filter(entity -> EntityHelper.isAngryAtPlayer(AltoClef.getInstance(), entity));
+    private final EntityQuery creeperQuery = new EntityQuery().ofTypes(CreeperEntity.class).limit(EntityQuery.NO_LIMIT).includeUnreachable();
+    private final EntityQuery skeletonQuery = new EntityQuery().ofTypes(SkeletonEntity.class).within(10).limit(EntityQuery.NO_LIMIT).includeUnreachable();
+    // Scratch space for isProjectileClose, see ProjectileSimulator.closestApproach
+    private final double[] projectileApproach = new double[4];
+
     public MobDefenseChain(TaskRunner runner) {
         super(runner);
     }
@@ -117,13 +130,24 @@ public class MobDefenseChain extends SingleTaskChain {
         return numberOfProblematicEntities;
     }
 
+    // Shielding, the force field and putting out fire all decide the priority too, so it's all worked out here
     @Override
-    public float getPriority() {
+    protected void onPreTick() {
         cachedLastPriority = getPriorityInner();
         prevHealth = AltoClef.getInstance().getPlayer().getHealth();
+    }
+
+    @Override
+    public float getPriority() {
         return cachedLastPriority;
     }
 
+    @Override
+    public float getPriorityCeiling() {
+        // Running from a creeper about to blow
+        return 100;
+    }
+
     private void stopShielding(AltoClef mod) {
         if (shielding) {
             ItemStack cursor = StorageHelper.getItemStackInCursorSlot();
@@ -213,24 +237,22 @@ public class MobDefenseChain extends SingleTaskChain {
                 return 50 + blowingUp.getClientFuseTime(1) * 50;
             }
         }
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            // Block projectiles with shield
-            if (mod.getModSettings().isDodgeProjectiles()
-                    && hasShield(mod)
-                    && !mod.getPlayer().getItemCooldownManager().isCoolingDown(offhandItem)
-                    && mod.getClientBaritone().getPathingBehavior().isSafeToCancel()
-                    && !mod.getEntityTracker().entityFound(PotionEntity.class) && isProjectileClose(mod)) {
-                ItemStack shieldSlot = StorageHelper.getItemStackInSlot(PlayerSlot.OFFHAND_SLOT);
-                if (shieldSlot.getItem() != Items.SHIELD) {
-                    mod.getSlotHandler().forceEquipItemToOffhand(Items.SHIELD);
-                } else {
-                    startShielding(mod);
-                }
-                return 60;
-            }
-            if (blowingUp == null && !isProjectileClose(mod)) {
-                stopShielding(mod);
+        // Block projectiles with shield
+        if (mod.getModSettings().isDodgeProjectiles()
+                && hasShield(mod)
+                && !mod.getPlayer().getItemCooldownManager().isCoolingDown(offhandItem)
+                && mod.getClientBaritone().getPathingBehavior().isSafeToCancel()
+                && !mod.getEntityTracker().entityFound(PotionEntity.class) && isProjectileClose(mod)) {
+            ItemStack shieldSlot = StorageHelper.getItemStackInSlot(PlayerSlot.OFFHAND_SLOT);
+            if (shieldSlot.getItem() != Items.SHIELD) {
+                mod.getSlotHandler().forceEquipItemToOffhand(Items.SHIELD);
+            } else {
+                startShielding(mod);
             }
+            return 60;
+        }
+        if (blowingUp == null && !isProjectileClose(mod)) {
+            stopShielding(mod);
         }
 
         if (mod.getFoodChain().needsToEat() || mod.getMLGBucketChain().isFalling(mod)
@@ -272,40 +294,38 @@ public class MobDefenseChain extends SingleTaskChain {
 
             List<LivingEntity> toDealWithList = new ArrayList<>();
 
-            synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-                for (LivingEntity hostile : hostiles) {
-                    boolean isRangedOrPoisonous = (hostile instanceof SkeletonEntity
-                            || hostile instanceof WitchEntity || hostile instanceof PillagerEntity
-                            || hostile instanceof PiglinEntity || hostile instanceof StrayEntity
-                            || hostile instanceof CaveSpiderEntity);
-                    int annoyingRange = 10;
-
-                    if (isRangedOrPoisonous) {
-                        annoyingRange = 20;
-                        if (!hasShield(mod)) {
-                            annoyingRange = 35;
-                        }
+            for (LivingEntity hostile : hostiles) {
+                boolean isRangedOrPoisonous = (hostile instanceof SkeletonEntity
+                        || hostile instanceof WitchEntity || hostile instanceof PillagerEntity
+                        || hostile instanceof PiglinEntity || hostile instanceof StrayEntity
+                        || hostile instanceof CaveSpiderEntity);
+                int annoyingRange = 10;
+
+                if (isRangedOrPoisonous) {
+                    annoyingRange = 20;
+                    if (!hasShield(mod)) {
+                        annoyingRange = 35;
                     }
+                }
 
-                    // Give each hostile a timer, if they're close for too long deal with them.
-                    if (hostile.isInRange(mod.getPlayer(), annoyingRange) && LookHelper.seesPlayer(hostile, mod.getPlayer(), annoyingRange)) {
+                // Give each hostile a timer, if they're close for too long deal with them.
+                if (hostile.isInRange(mod.getPlayer(), annoyingRange) && LookHelper.seesPlayer(hostile, mod.getPlayer(), annoyingRange)) {
 
-                        boolean isIgnored = false;
-                        for (Class<? extends Entity> ignored : ignoredMobs) {
-                            if (ignored.isInstance(hostile)) {
-                                isIgnored = true;
-                                break;
-                            }
+                    boolean isIgnored = false;
+                    for (Class<? extends Entity> ignored : ignoredMobs) {
+                        if (ignored.isInstance(hostile)) {
+                            isIgnored = true;
+                            break;
                         }
+                    }
 
-                        // do not go and "attack" these mobs, just hit them if on low HP, or they are close
-                        if (isIgnored) {
-                            if (mod.getPlayer().getHealth() <= 10) {
-                                toDealWithList.add(hostile);
-                            }
-                        } else {
+                    // do not go and "attack" these mobs, just hit them if on low HP, or they are close
+                    if (isIgnored) {
+                        if (mod.getPlayer().getHealth() <= 10) {
                             toDealWithList.add(hostile);
                         }
+                    } else {
+                        toDealWithList.add(hostile);
                     }
                 }
             }
@@ -426,27 +446,23 @@ public class MobDefenseChain extends SingleTaskChain {
 
         // Hit all hostiles close to us.
         List<Entity> entities = mod.getEntityTracker().getCloseEntities();
-        try {
-            for (Entity entity : entities) {
-                boolean shouldForce = false;
-                if (mod.getBehaviour().shouldExcludeFromForcefield(entity)) continue;
-                if (entity instanceof MobEntity) {
-                    if (EntityHelper.isProbablyHostileToPlayer(mod, entity)) {
-                        if (LookHelper.seesPlayer(entity, mod.getPlayer(), 10)) {
-                            shouldForce = true;
-                        }
+        for (Entity entity : entities) {
+            boolean shouldForce = false;
+            if (mod.getBehaviour().shouldExcludeFromForcefield(entity)) continue;
+            if (entity instanceof MobEntity) {
+                if (EntityHelper.isProbablyHostileToPlayer(mod, entity)) {
+                    if (LookHelper.seesPlayer(entity, mod.getPlayer(), 10)) {
+                        shouldForce = true;
                     }
-                } else if (entity instanceof FireballEntity) {
-                    // Ghast ball
-                    shouldForce = true;
                 }
+            } else if (entity instanceof FireballEntity) {
+                // Ghast ball
+                shouldForce = true;
+            }
 
-                if (shouldForce) {
-                    killAura.applyAura(entity);
-                }
+            if (shouldForce) {
+                killAura.applyAura(entity);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
         killAura.tickEnd(mod);
     }
@@ -455,83 +471,76 @@ public class MobDefenseChain extends SingleTaskChain {
     private CreeperEntity getClosestFusingCreeper(AltoClef mod) {
         double worstSafety = Float.POSITIVE_INFINITY;
         CreeperEntity target = null;
-        try {
-            List<CreeperEntity> creepers = mod.getEntityTracker().getTrackedEntities(CreeperEntity.class);
-            for (CreeperEntity creeper : creepers) {
-                if (creeper == null) continue;
-                if (creeper.getClientFuseTime(1) < 0.001) continue;
-
-                // We want to pick the closest creeper, but FIRST pick creepers about to blow
-                // At max fuse, the cost goes to basically zero.
-                double safety = getCreeperSafety(mod.getPlayer().getPos(), creeper);
-                if (safety < worstSafety) {
-                    target = creeper;
-                }
+        for (Entity entity : mod.getEntityTracker().find(creeperQuery.from(mod.getPlayer().getPos()))) {
+            CreeperEntity creeper = (CreeperEntity) entity;
+            if (creeper.getClientFuseTime(1) < 0.001) continue;
+
+            // We want to pick the closest creeper, but FIRST pick creepers about to blow
+            // At max fuse, the cost goes to basically zero.
+            double safety = getCreeperSafety(mod.getPlayer().getPos(), creeper);
+            if (safety < worstSafety) {
+                target = creeper;
             }
-        } catch (ConcurrentModificationException | ArrayIndexOutOfBoundsException | NullPointerException e) {
-            // IDK why but these exceptions happen sometimes. It's extremely bizarre and I
-            // have no idea why.
-            Debug.logWarning("Weird Exception caught and ignored while scanning for creepers: " + e.getMessage());
-            return target;
         }
         return target;
     }
 
     private boolean isProjectileClose(AltoClef mod) {
-        List<CachedProjectile> projectiles = mod.getEntityTracker().getProjectiles();
-        try {
-            for (CachedProjectile projectile : projectiles) {
-                if (projectile.position.squaredDistanceTo(mod.getPlayer().getPos()) < 150) {
-                    boolean isGhastBall = projectile.projectileType == FireballEntity.class;
-                    if (isGhastBall) {
-                        Optional<Entity> ghastBall = mod.getEntityTracker().getClosestEntity(FireballEntity.class);
-                        Optional<Entity> ghast = mod.getEntityTracker().getClosestEntity(GhastEntity.class);
-                        if (ghastBall.isPresent() && ghast.isPresent() && runAwayTask == null
-                                && mod.getClientBaritone().getPathingBehavior().isSafeToCancel()) {
-                            mod.getClientBaritone().getPathingBehavior().requestPause();
-                            LookHelper.lookAt(mod, ghast.get().getEyePos());
-                        }
-                        return false;
-                        // Ignore ghast balls
+        EntitySnapshot entities = mod.getEntityTracker().getSnapshot();
+        List<CachedProjectile> projectiles = entities.getProjectiles();
+        ProjectileSimulator simulation = entities.getProjectileSimulation();
+        double[] approach = projectileApproach;
+        for (int i = 0; i < projectiles.size(); ++i) {
+            CachedProjectile projectile = projectiles.get(i);
+            if (projectile.position.squaredDistanceTo(mod.getPlayer().getPos()) < 150) {
+                boolean isGhastBall = projectile.projectileType == FireballEntity.class;
+                if (isGhastBall) {
+                    Optional<Entity> ghastBall = mod.getEntityTracker().getClosestEntity(FireballEntity.class);
+                    Optional<Entity> ghast = mod.getEntityTracker().getClosestEntity(GhastEntity.class);
+                    if (ghastBall.isPresent() && ghast.isPresent() && runAwayTask == null
+                            && mod.getClientBaritone().getPathingBehavior().isSafeToCancel()) {
+                        mod.getClientBaritone().getPathingBehavior().requestPause();
+                        LookHelper.lookAt(mod, ghast.get().getEyePos());
                     }
-                    if (projectile.projectileType == DragonFireballEntity.class) {
-                        // Ignore dragon fireballs
+                    return false;
+                    // Ignore ghast balls
+                }
+                if (projectile.projectileType == DragonFireballEntity.class) {
+                    // Ignore dragon fireballs
+                    continue;
+                }
+                if (projectile.projectileType == ArrowEntity.class || projectile.projectileType == SpectralArrowEntity.class || projectile.projectileType == SmallFireballEntity.class) {
+                    // check if the projectile is going away from us
+                    // not so fancy math... this should work better than the previous approach (I hope just adding the velocity doesn't cause any issues..)
+                    PlayerEntity player = mod.getPlayer();
+                    if (player.squaredDistanceTo(projectile.position) < player.squaredDistanceTo(projectile.position.add(projectile.velocity))) {
                         continue;
                     }
-                    if (projectile.projectileType == ArrowEntity.class || projectile.projectileType == SpectralArrowEntity.class || projectile.projectileType == SmallFireballEntity.class) {
-                        // check if the projectile is going away from us
-                        // not so fancy math... this should work better than the previous approach (I hope just adding the velocity doesn't cause any issues..)
-                        PlayerEntity player = mod.getPlayer();
-                        if (player.squaredDistanceTo(projectile.position) < player.squaredDistanceTo(projectile.position.add(projectile.velocity))) {
-                            continue;
-                        }
-                    }
-
-                    Vec3d expectedHit = ProjectileHelper.calculateArrowClosestApproach(projectile, mod.getPlayer());
-
-                    Vec3d delta = mod.getPlayer().getPos().subtract(expectedHit);
+                }
 
-                    double horizontalDistanceSq = delta.x * delta.x + delta.z * delta.z;
-                    double verticalDistance = Math.abs(delta.y);
-                    if (horizontalDistanceSq < ARROW_KEEP_DISTANCE_HORIZONTAL * ARROW_KEEP_DISTANCE_HORIZONTAL
-                            && verticalDistance < ARROW_KEEP_DISTANCE_VERTICAL) {
-                        if (mod.getClientBaritone().getPathingBehavior().isSafeToCancel()
-                                && hasShield(mod)) {
-                            mod.getClientBaritone().getPathingBehavior().requestPause();
-                            LookHelper.lookAt(mod, projectile.position.add(0, 0.3, 0));
-                        }
-                        return true;
+                Vec3d playerPos = mod.getPlayer().getPos();
+                simulation.closestApproach(i, playerPos.x, playerPos.y, playerPos.z, approach);
+
+                double deltaX = playerPos.x - approach[0],
+                        deltaZ = playerPos.z - approach[2];
+                double horizontalDistanceSq = deltaX * deltaX + deltaZ * deltaZ;
+                double verticalDistance = Math.abs(playerPos.y - approach[1]);
+                if (horizontalDistanceSq < ARROW_KEEP_DISTANCE_HORIZONTAL * ARROW_KEEP_DISTANCE_HORIZONTAL
+                        && verticalDistance < ARROW_KEEP_DISTANCE_VERTICAL) {
+                    if (mod.getClientBaritone().getPathingBehavior().isSafeToCancel()
+                            && hasShield(mod)) {
+                        mod.getClientBaritone().getPathingBehavior().requestPause();
+                        LookHelper.lookAt(mod, projectile.position.add(0, 0.3, 0));
                     }
+                    return true;
                 }
             }
-
-        } catch (ConcurrentModificationException e) {
-            Debug.logWarning(e.getMessage());
         }
 
         // TODO refactor this into something more reliable for all mobs
-        for (SkeletonEntity skeleton : mod.getEntityTracker().getTrackedEntities(SkeletonEntity.class)) {
-            if (skeleton.distanceTo(mod.getPlayer()) > 10 || !skeleton.canSee(mod.getPlayer())) continue;
+        for (Entity entity : mod.getEntityTracker().find(skeletonQuery.from(mod.getPlayer().getPos()))) {
+            SkeletonEntity skeleton = (SkeletonEntity) entity;
+            if (!skeleton.canSee(mod.getPlayer())) continue;
 
             // when the skeleton is about to shoot (it takes 5 ticks to raise the shield)
             if (skeleton.getItemUseTime() > 15) {
@@ -543,25 +552,7 @@ public class MobDefenseChain extends SingleTaskChain {
     }
 
     private Optional<Entity> getUniversallyDangerousMob(AltoClef mod) {
-        // Wither skeletons are dangerous because of the wither effect. Oof kinda obvious.
-        // If we merely force field them, we will run into them and get the wither effect which will kill us.
-
-        Class<?>[] dangerousMobs = new Class[]{Entities.WARDEN, WitherEntity.class, WitherSkeletonEntity.class,
-                HoglinEntity.class, ZoglinEntity.class, PiglinBruteEntity.class, VindicatorEntity.class};
-
-        double range = SAFE_KEEP_DISTANCE - 2;
-
-        for (Class<?> dangerous : dangerousMobs) {
-            Optional<Entity> entity = mod.getEntityTracker().getClosestEntity(dangerous);
-
-            if (entity.isPresent()) {
-                if (entity.get().squaredDistanceTo(mod.getPlayer()) < range * range && EntityHelper.isAngryAtPlayer(mod, entity.get())) {
-                    return entity;
-                }
-            }
-        }
-
-        return Optional.empty();
+        return mod.getEntityTracker().getClosestEntity(dangerousMobQuery.from(mod.getPlayer().getPos()));
     }
 
     private boolean isInDanger(AltoClef mod) {
@@ -577,21 +568,17 @@ public class MobDefenseChain extends SingleTaskChain {
         }
         if (WorldHelper.isVulnerable()) {
             // If hostile mobs are nearby...
-            try {
-                ClientPlayerEntity player = mod.getPlayer();
-                List<LivingEntity> hostiles = mod.getEntityTracker().getHostiles();
-
-                synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-                    for (Entity entity : hostiles) {
-                        if (entity.isInRange(player, SAFE_KEEP_DISTANCE)
-                                && !mod.getBehaviour().shouldExcludeFromForcefield(entity)
-                                && EntityHelper.isAngryAtPlayer(mod, entity)) {
-                            return true;
-                        }
-                    }
+            ClientPlayerEntity player = mod.getPlayer();
+            EntitySnapshot entities = mod.getEntityTracker().getSnapshot();
+            for (int i = 0; i < entities.size(); ++i) {
+                if (!entities.hasFlag(i, EntitySnapshot.HOSTILE)) continue;
+                if (entities.squaredDistanceTo(i, player.getX(), player.getY(), player.getZ()) >= SAFE_KEEP_DISTANCE * SAFE_KEEP_DISTANCE) continue;
+
+                Entity entity = entities.getEntity(i);
+                if (!mod.getBehaviour().shouldExcludeFromForcefield(entity)
+                        && EntityHelper.isAngryAtPlayer(mod, entity)) {
+                    return true;
                 }
-            } catch (Exception e) {
-                Debug.logWarning("Weird multithread exception. Will fix later. " + e.getMessage());
             }
         }
         return false;
@@ -636,4 +623,9 @@ public class MobDefenseChain extends SingleTaskChain {
     public String getName() {
         return "Mob Defense";
     }
+
+    @Override
+    public boolean isSafetyCritical() {
+        return true;
+    }
 }
\ No newline at end of file
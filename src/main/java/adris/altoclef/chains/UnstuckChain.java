@@ -21,6 +21,7 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Optional;
 
@@ -32,6 +33,8 @@ public class UnstuckChain extends SingleTaskChain {
     private boolean interruptedEating = false;
     private TimerGame shimmyTaskTimer = new TimerGame(5);
     private boolean startedShimmying = false;
+    // Whether onPreTick looked at us this tick (in game, doing a user task, no container open)
+    private boolean tracking = false;
 
     public UnstuckChain(TaskRunner runner) {
         super(runner);
@@ -60,9 +63,11 @@ public class UnstuckChain extends SingleTaskChain {
             return;
         }
 
-        Vec3d pos1 = posHistory.getFirst();
+        // Walk the list instead of get(i), that restarts from the head every time
+        Iterator<Vec3d> history = posHistory.iterator();
+        Vec3d pos1 = history.next();
         for (int i = 1; i < 100; i++) {
-            Vec3d pos2 = posHistory.get(i);
+            Vec3d pos2 = history.next();
             if (Math.abs(pos1.getX() - pos2.getX()) > 0.75 || Math.abs(pos1.getZ() - pos2.getZ()) > 0.75) {
                 return;
             }
@@ -139,31 +144,43 @@ public class UnstuckChain extends SingleTaskChain {
     }
 
     @Override
-    public float getPriority() {
-        if (mainTask instanceof GetOutOfWaterTask && mainTask.isActive()) {
-            return 55;
-        }
-
+    protected void onPreTick() {
         isProbablyStuck = false;
+        tracking = false;
 
         AltoClef mod = AltoClef.getInstance();
 
         if (!AltoClef.inGame() || MinecraftClient.getInstance().isPaused() || !mod.getUserTaskChain().isActive())
-            return Float.NEGATIVE_INFINITY;
+            return;
 
         if (StorageHelper.isBlastFurnaceOpen() || StorageHelper.isSmokerOpen() || StorageHelper.isChestOpen() || StorageHelper.isBigCraftingOpen()) {
-            return Float.NEGATIVE_INFINITY;
+            return;
         }
+        tracking = true;
 
+        // Has to be every tick, checkStuckInWater looks at the last 100 of them
         PlayerEntity player = mod.getPlayer();
         posHistory.addFirst(player.getPos());
         if (posHistory.size() > 500) {
             posHistory.removeLast();
         }
 
+        checkEatingGlitch();
+    }
+
+    @Override
+    public float getPriority() {
+        if (mainTask instanceof GetOutOfWaterTask && mainTask.isActive()) {
+            return 55;
+        }
+
+        if (!tracking)
+            return Float.NEGATIVE_INFINITY;
+
+        AltoClef mod = AltoClef.getInstance();
+
         checkStuckInWater();
         checkStuckInPowderedSnow();
-        checkEatingGlitch();
         checkStuckOnEndPortalFrame(mod);
 
 
@@ -180,6 +197,11 @@ public class UnstuckChain extends SingleTaskChain {
         return Float.NEGATIVE_INFINITY;
     }
 
+    @Override
+    public float getPriorityCeiling() {
+        return 55;
+    }
+
     @Override
     public boolean isActive() {
         return true;
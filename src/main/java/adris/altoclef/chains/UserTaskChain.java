@@ -70,6 +70,11 @@ public class UserTaskChain extends SingleTaskChain {
         return 50;
     }
 
+    @Override
+    public float getPriorityCeiling() {
+        return 50;
+    }
+
     @Override
     public String getName() {
         return "User Tasks";
@@ -43,14 +43,36 @@ public class WorldSurvivalChain extends SingleTaskChain {
     }
 
     @Override
-    public float getPriority() {
-        if (!AltoClef.inGame()) return Float.NEGATIVE_INFINITY;
+    protected void onPreTick() {
+        if (!AltoClef.inGame()) return;
 
         AltoClef mod = AltoClef.getInstance();
 
         // Drowning
         handleDrowning(mod);
 
+        // Keep track of when we were last in lava, isInLavaOhShit goes by it
+        if (mod.getPlayer().isInLava() && !mod.getPlayer().hasStatusEffect(StatusEffects.FIRE_RESISTANCE)) {
+            wasInLavaTimer.reset();
+        }
+
+        // Portal stuck
+        if (isStuckInNetherPortal()) {
+            // We can't break or place while inside a portal (not really)
+            mod.getExtraBaritoneSettings().setInteractionPaused(true);
+        } else {
+            // We're no longer stuck, but we might want to move AWAY from our stuck position.
+            portalStuckTimer.reset();
+            mod.getExtraBaritoneSettings().setInteractionPaused(false);
+        }
+    }
+
+    @Override
+    public float getPriority() {
+        if (!AltoClef.inGame()) return Float.NEGATIVE_INFINITY;
+
+        AltoClef mod = AltoClef.getInstance();
+
         // Lava Escape
         if (isInLavaOhShit(mod) && mod.getBehaviour().shouldEscapeLava()) {
             setTask(new EscapeFromLavaTask(mod));
@@ -95,15 +117,6 @@ public class WorldSurvivalChain extends SingleTaskChain {
             }
         }
 
-        // Portal stuck
-        if (isStuckInNetherPortal()) {
-            // We can't break or place while inside a portal (not really)
-            mod.getExtraBaritoneSettings().setInteractionPaused(true);
-        } else {
-            // We're no longer stuck, but we might want to move AWAY from our stuck position.
-            portalStuckTimer.reset();
-            mod.getExtraBaritoneSettings().setInteractionPaused(false);
-        }
         if (portalStuckTimer.elapsed()) {
             // We're stuck inside a portal, so get out.
             // Don't allow breaking while we're inside the portal.
@@ -114,6 +127,11 @@ public class WorldSurvivalChain extends SingleTaskChain {
         return Float.NEGATIVE_INFINITY;
     }
 
+    @Override
+    public float getPriorityCeiling() {
+        return 100;
+    }
+
     private void handleDrowning(AltoClef mod) {
         // Swim
         boolean avoidedDrowning = false;
@@ -138,7 +156,6 @@ public class WorldSurvivalChain extends SingleTaskChain {
 
     private boolean isInLavaOhShit(AltoClef mod) {
         if (mod.getPlayer().isInLava() && !mod.getPlayer().hasStatusEffect(StatusEffects.FIRE_RESISTANCE)) {
-            wasInLavaTimer.reset();
             return true;
         }
         return mod.getPlayer().isOnFire() && !wasInLavaTimer.elapsed();
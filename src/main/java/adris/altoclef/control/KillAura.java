@@ -6,7 +6,6 @@ import adris.altoclef.multiversion.versionedfields.Entities;
 import adris.altoclef.multiversion.item.ItemVer;
 import adris.altoclef.trackers.storage.ItemStorageTracker;
 import adris.altoclef.util.helpers.LookHelper;
-import adris.altoclef.util.helpers.StlHelper;
 import adris.altoclef.util.helpers.StorageHelper;
 import adris.altoclef.util.helpers.WorldHelper;
 import adris.altoclef.util.slots.PlayerSlot;
@@ -32,6 +31,16 @@ import java.util.*;
  * Controls and applies killaura
  */
 public class KillAura {
+    // Skip certain hostile entity types
+    private static final Set<Class<?>> NO_SHIELD_ENTITIES = Set.of(
+            CreeperEntity.class,
+            HoglinEntity.class,
+            ZoglinEntity.class,
+            Entities.WARDEN,
+            WitherEntity.class
+    );
+    private static final Class[] POTIONS = new Class[]{PotionEntity.class};
+
     // Smart aura data
     private final List<Entity> targets = new ArrayList<>();
     boolean shielding = false;
@@ -77,13 +86,12 @@ public class KillAura {
     }
 
     public void tickEnd(AltoClef mod) {
-        Optional<Entity> entities = targets.stream().min(StlHelper.compareValues(entity -> entity.squaredDistanceTo(mod.getPlayer())));
-        if (entities.isEmpty()) {
+        Entity entity = getClosestTarget(mod);
+        if (entity == null) {
             stopShielding(mod);
             return;
         }
 
-        Entity entity = entities.get();
         MLGBucketFallChain mlgChain = mod.getMLGBucketChain();
         ItemStorageTracker itemStorage = mod.getItemStorage();
         Item offhandItem = StorageHelper.getItemStackInSlot(PlayerSlot.OFFHAND_SLOT).getItem();
@@ -94,7 +102,7 @@ public class KillAura {
                 || distSq < forceFieldRange * forceFieldRange
                 || distSq < 40;
 
-        if (mod.getEntityTracker().entityFound(PotionEntity.class)
+        if (mod.getEntityTracker().entityFound(POTIONS)
                 || !inRange
                 || mlgChain.isFalling(mod)
                 || !mlgChain.doneMLG()
@@ -103,16 +111,7 @@ public class KillAura {
             return;
         }
 
-        // Skip certain hostile entity types
-        Set<Class<?>> ignoredEntities = Set.of(
-                CreeperEntity.class,
-                HoglinEntity.class,
-                ZoglinEntity.class,
-                Entities.WARDEN,
-                WitherEntity.class
-        );
-
-        boolean shouldShield = !ignoredEntities.contains(entity.getClass())
+        boolean shouldShield = !NO_SHIELD_ENTITIES.contains(entity.getClass())
                 && (itemStorage.hasItem(Items.SHIELD) || itemStorage.hasItemInOffhand(Items.SHIELD))
                 && !mod.getPlayer().getItemCooldownManager().isCoolingDown(offhandItem)
                 && mod.getClientBaritone().getPathingBehavior().isSafeToCancel();
@@ -165,14 +164,25 @@ public class KillAura {
                 return;
             }
 
-            Optional<Entity> toHit = targets.stream().min(StlHelper.compareValues(entity -> entity.squaredDistanceTo(mod.getPlayer())));
-
             if (mod.getPlayer() == null || mod.getPlayer().getAttackCooldownProgress(0) < 1) {
                 return;
             }
 
-            toHit.ifPresent(entity -> attack(mod, entity, true));
+            attack(mod, getClosestTarget(mod), true);
+        }
+    }
+
+    private Entity getClosestTarget(AltoClef mod) {
+        Entity closest = null;
+        double closestDistanceSq = Double.POSITIVE_INFINITY;
+        for (Entity target : targets) {
+            double distanceSq = target.squaredDistanceTo(mod.getPlayer());
+            if (distanceSq < closestDistanceSq) {
+                closest = target;
+                closestDistanceSq = distanceSq;
+            }
         }
+        return closest;
     }
 
     private void performFastestAttack(AltoClef mod) {
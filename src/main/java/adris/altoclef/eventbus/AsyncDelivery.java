@@ -0,0 +1,47 @@
+package adris.altoclef.eventbus;
+
+import java.util.function.Function;
+
+/**
+ * How a subscriber wants events handed to it when it runs on the event worker thread instead of the publisher's thread.
+ * <p>
+ * Every async subscriber gets its own bounded queue. What happens once that queue is full depends on the backpressure:
+ * <ul>
+ *     <li>{@link #dropOldest(int)}: the oldest queued event makes room for the new one</li>
+ *     <li>{@link #coalesce(int, Function)}: a new event replaces the queued event with the same key, if any</li>
+ *     <li>{@link #block(int)}: the publisher waits for room, nothing gets dropped (unless the worker itself publishes). If the render thread publishes, keep the callback quick and the queue roomy.</li>
+ * </ul>
+ */
+public final class AsyncDelivery<T> {
+
+    final Backpressure backpressure;
+    final int capacity;
+    final Function<? super T, ?> key;
+
+    private AsyncDelivery(Backpressure backpressure, int capacity, Function<? super T, ?> key) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Async event queue capacity must be positive, got " + capacity);
+        }
+        this.backpressure = backpressure;
+        this.capacity = capacity;
+        this.key = key;
+    }
+
+    public static <T> AsyncDelivery<T> dropOldest(int capacity) {
+        return new AsyncDelivery<>(Backpressure.DROP_OLDEST, capacity, null);
+    }
+
+    public static <T> AsyncDelivery<T> coalesce(int capacity, Function<? super T, ?> key) {
+        return new AsyncDelivery<>(Backpressure.COALESCE, capacity, key);
+    }
+
+    public static <T> AsyncDelivery<T> block(int capacity) {
+        return new AsyncDelivery<>(Backpressure.BLOCK, capacity, null);
+    }
+
+    enum Backpressure {
+        DROP_OLDEST,
+        COALESCE,
+        BLOCK
+    }
+}
@@ -0,0 +1,45 @@
+package adris.altoclef.eventbus;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The one thread that runs every {@link AsyncSubscription}'s callbacks, one subscription at a time.
+ */
+final class AsyncEventWorker {
+
+    // Subscriptions with events waiting. A subscription lines up again as soon as its drain starts, so it can be
+    // in here while it's still being drained, the second drain just handles whatever came in meanwhile.
+    // Nothing here promises every event gets delivered, that's up to the subscription's AsyncDelivery.
+    private static final LinkedBlockingQueue<AsyncSubscription<?>> ready = new LinkedBlockingQueue<>();
+    private static Thread thread;
+
+    private AsyncEventWorker() {
+    }
+
+    static void schedule(AsyncSubscription<?> subscription) {
+        ensureStarted();
+        ready.add(subscription);
+    }
+
+    static boolean isWorkerThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    private static synchronized void ensureStarted() {
+        if (thread != null) return;
+
+        thread = new Thread(AsyncEventWorker::run, "AltoClef Event Worker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void run() {
+        while (true) {
+            try {
+                ready.take().drain();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package adris.altoclef.eventbus;
+
+import adris.altoclef.Debug;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A subscription whose callback runs on the event worker thread.
+ * <p>
+ * Publishing only puts the event in this subscription's queue, the worker picks it up later.
+ */
+public class AsyncSubscription<T> extends Subscription<T> {
+
+    private final AsyncDelivery<? super T> delivery;
+
+    // DROP_OLDEST and BLOCK: the events themselves. COALESCE: the keys, with the latest event per key in `latest`.
+    private final ArrayBlockingQueue<Object> queue;
+    private final ConcurrentHashMap<Object, T> latest;
+
+    // Whether we're already waiting for the worker, so we only line up once
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong dropped = new AtomicLong();
+
+    AsyncSubscription(Consumer<T> callback, AsyncDelivery<? super T> delivery) {
+        super(callback);
+        this.delivery = delivery;
+        queue = new ArrayBlockingQueue<>(delivery.capacity);
+        latest = delivery.backpressure == AsyncDelivery.Backpressure.COALESCE ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Queues the event, the callback runs later on the worker thread.
+     */
+    @Override
+    public void accept(T event) {
+        switch (delivery.backpressure) {
+            case DROP_OLDEST -> offerDroppingOldest(event);
+            case COALESCE -> {
+                Object key = delivery.key.apply(event);
+                // Only line the key up once, the worker grabs whatever is latest when it gets to it
+                if (latest.put(key, event) == null) {
+                    while (!queue.offer(key)) {
+                        Object oldest = queue.poll();
+                        if (oldest != null && latest.remove(oldest) != null) {
+                            dropped.incrementAndGet();
+                        }
+                    }
+                }
+            }
+            case BLOCK -> {
+                if (AsyncEventWorker.isWorkerThread()) {
+                    // Waiting on ourselves would never end
+                    offerDroppingOldest(event);
+                    break;
+                }
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+        }
+
+        if (scheduled.compareAndSet(false, true)) {
+            AsyncEventWorker.schedule(this);
+        }
+    }
+
+    private void offerDroppingOldest(T event) {
+        while (!queue.offer(event)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * How many events never made it to the callback because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void delete() {
+        super.delete();
+        queue.clear();
+        if (latest != null) {
+            latest.clear();
+        }
+    }
+
+    // Worker thread only
+    @SuppressWarnings("unchecked")
+    void drain() {
+        // Anything published from here on lines us up again
+        scheduled.set(false);
+
+        Object next;
+        while ((next = queue.poll()) != null) {
+            if (shouldDelete()) return;
+
+            T event = latest != null ? latest.remove(next) : (T) next;
+            if (event == null) continue;
+            try {
+                super.accept(event);
+            } catch (Exception e) {
+                // Don't let one bad subscriber take the worker down with it
+                Debug.logWarning("Async event subscriber failed on " + event + ": " + e);
+                e.printStackTrace();
+            }
+        }
+    }
+}
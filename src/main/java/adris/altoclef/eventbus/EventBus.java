@@ -1,74 +1,61 @@
 package adris.altoclef.eventbus;
 
-import net.minecraft.util.Pair;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
  * A static class to solve dependency issues. Lets us send and receive events globally, decoupling our codebase.
  * <p>
  * Technically `ConfigHelper` does something like this, but here is a more general case.
+ * <p>
+ * Every event type keeps its subscribers in an array that gets replaced (never modified) when someone subscribes
+ * or unsubscribes, so publishing is a plain array walk: no map lookups, no locking, no allocation.
+ * Subscribing while an event is being published is fine, the new subscriber gets the next one.
+ * <p>
+ * Subscribers can also ask for their events on a worker thread, see {@link AsyncDelivery}.
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class EventBus {
 
-    private static final HashMap<Class, List<Subscription>> topics = new HashMap<>();
-    private static final List<Pair<Class, Subscription>> toAdd = new ArrayList<>();
-    private static boolean lock;
+    public static final int DEFAULT_PRIORITY = 0;
 
-    public static <T> void publish(T event) {
-        Class type = event.getClass();
-
-        // Add all subscriptions we need to add
-        for (Pair<Class, Subscription> toAdd : toAdd) {
-            subscribeInternal(toAdd.getLeft(), toAdd.getRight());
+    private static final ClassValue<Topic> topics = new ClassValue<>() {
+        @Override
+        protected Topic computeValue(Class<?> type) {
+            return new Topic();
         }
-        toAdd.clear();
-
-        if (topics.containsKey(type)) {
-            List<Subscription> subscribers = topics.get(type);
-
-            // Subscriptions can be deleted while they're called
-            List<Subscription> toDelete = new ArrayList<>();
+    };
 
-            // Go through our subscription list. We shouldn't modify the list while we're iterating it.
-            lock = true;
-            for (Subscription subRaw : subscribers) {
-                Subscription<T> sub;
-                try {
-                    sub = (Subscription<T>) subRaw;
-                    if (sub.shouldDelete()) {
-                        toDelete.add(sub);
-                    } else {
-                        sub.accept(event);
-                    }
-                } catch (ClassCastException e) {
-                    System.err.println("TRIED PUBLISHING MISMAPPED EVENT: " + event);
-                    e.printStackTrace();
-                }
+    public static <T> void publish(T event) {
+        Subscription[] subscribers = topics.get(event.getClass()).subscribers;
+        for (Subscription sub : subscribers) {
+            // Might have been deleted by an earlier subscriber of this very event
+            if (!sub.shouldDelete()) {
+                sub.accept(event);
             }
-            // Delete all subscriptions
-            lock = false;
         }
     }
 
-    private static <T> void subscribeInternal(Class<T> type, Subscription<T> sub) {
-        if (!topics.containsKey(type)) {
-            topics.put(type, new ArrayList<>());
-        }
+    public static <T> Subscription<T> subscribe(Class<T> type, Consumer<T> consumeEvent) {
+        return subscribe(type, DEFAULT_PRIORITY, consumeEvent);
+    }
+
+    /**
+     * @param priority Subscribers with a higher priority get the event first. Equal priorities go in subscription order.
+     */
+    public static <T> Subscription<T> subscribe(Class<T> type, int priority, Consumer<T> consumeEvent) {
+        Subscription<T> sub = new Subscription<>(consumeEvent, priority);
         topics.get(type).add(sub);
+        return sub;
     }
 
-    public static <T> Subscription<T> subscribe(Class<T> type, Consumer<T> consumeEvent) {
-        Subscription<T> sub = new Subscription<>(consumeEvent);
-        if (lock) {
-            toAdd.add(new Pair<>(type, sub));
-        } else {
-            subscribeInternal(type, sub);
-        }
+    /**
+     * Subscribe off the publisher's thread: the callback runs on the event worker thread, so slow subscribers
+     * don't add to frame time. Don't touch game state from the callback, hand that back to the client thread.
+     */
+    public static <T> AsyncSubscription<T> subscribe(Class<T> type, AsyncDelivery<? super T> delivery, Consumer<T> consumeEvent) {
+        AsyncSubscription<T> sub = new AsyncSubscription<>(consumeEvent, delivery);
+        topics.get(type).add(sub);
         return sub;
     }
 
@@ -76,4 +63,38 @@ public class EventBus {
         if (subscription != null)
             subscription.delete();
     }
+
+    // Every subscriber of one event type
+    static final class Topic {
+        private static final Subscription[] NONE = new Subscription[0];
+
+        private volatile Subscription[] subscribers = NONE;
+
+        synchronized void add(Subscription sub) {
+            Subscription[] current = subscribers;
+            // Keep it sorted by priority, after everyone with the same priority
+            int index = current.length;
+            while (index > 0 && current[index - 1].getPriority() < sub.getPriority()) {
+                index--;
+            }
+            Subscription[] updated = new Subscription[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            updated[index] = sub;
+            System.arraycopy(current, index, updated, index + 1, current.length - index);
+
+            sub.setTopic(this);
+            subscribers = updated;
+        }
+
+        synchronized void remove(Subscription sub) {
+            Subscription[] current = subscribers;
+            int index = Arrays.asList(current).indexOf(sub);
+            if (index == -1) return;
+
+            Subscription[] updated = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            subscribers = updated;
+        }
+    }
 }
@@ -5,10 +5,18 @@ import java.util.function.Consumer;
 // A wrapper object for event subscription
 public class Subscription<T> {
     private final Consumer<T> callback;
-    private boolean shouldDelete;
+    private final int priority;
+    private volatile boolean shouldDelete;
+    // What we're subscribed to, so we can take ourselves out
+    private EventBus.Topic topic;
 
     public Subscription(Consumer<T> callback) {
+        this(callback, EventBus.DEFAULT_PRIORITY);
+    }
+
+    public Subscription(Consumer<T> callback, int priority) {
         this.callback = callback;
+        this.priority = priority;
     }
 
     public void accept(T event) {
@@ -16,10 +24,22 @@ public class Subscription<T> {
     }
 
     public void delete() {
+        if (shouldDelete) return;
         shouldDelete = true;
+        if (topic != null) {
+            topic.remove(this);
+        }
     }
 
     public boolean shouldDelete() {
         return shouldDelete;
     }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    void setTopic(EventBus.Topic topic) {
+        this.topic = topic;
+    }
 }
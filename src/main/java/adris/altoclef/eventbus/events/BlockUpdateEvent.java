@@ -0,0 +1,19 @@
+package adris.altoclef.eventbus.events;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * A block in the client world was changed by the server (block update or chunk delta packet).
+ */
+public class BlockUpdateEvent {
+    public BlockPos blockPos;
+    public BlockState previousState;
+    public BlockState newState;
+
+    public BlockUpdateEvent(BlockPos blockPos, BlockState previousState, BlockState newState) {
+        this.blockPos = blockPos;
+        this.previousState = previousState;
+        this.newState = newState;
+    }
+}
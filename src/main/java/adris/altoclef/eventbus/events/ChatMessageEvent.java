@@ -1,5 +1,7 @@
 package adris.altoclef.eventbus.events;
 
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.network.message.MessageType;
 
 /**
@@ -9,11 +11,15 @@ public class ChatMessageEvent {
     private final String message;
     private final String senderName;
     private final MessageType messageType;
+    private final String receiverName;
 
+    // Always made on the client thread, so we grab our own name here and async subscribers don't have to touch the player
     public ChatMessageEvent(String message, String senderName, MessageType messageType) {
         this.message = message;
         this.senderName = senderName;
         this.messageType = messageType;
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        this.receiverName = player == null ? null : player.getName().getString();
     }
     public String messageContent() {
         return message;
@@ -26,4 +32,11 @@ public class ChatMessageEvent {
     public MessageType messageType() {
         return messageType;
     }
+
+    /**
+     * Our own name when the message came in, null if we weren't in a world.
+     */
+    public String receiverName() {
+        return receiverName;
+    }
 }
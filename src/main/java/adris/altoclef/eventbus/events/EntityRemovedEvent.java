@@ -0,0 +1,11 @@
+package adris.altoclef.eventbus.events;
+
+import net.minecraft.entity.Entity;
+
+public class EntityRemovedEvent {
+    public Entity entity;
+
+    public EntityRemovedEvent(Entity entity) {
+        this.entity = entity;
+    }
+}
@@ -0,0 +1,20 @@
+package adris.altoclef.eventbus.events;
+
+/**
+ * The server told us what's in a screen handler slot (or all of them).
+ */
+public class InventorySyncEvent {
+    // Not a real screen handler, the update goes straight to the cursor or to the player's inventory
+    public static final int CURSOR_SYNC_ID = -1;
+    public static final int PLAYER_INVENTORY_SYNC_ID = -2;
+    // The whole handler got replaced
+    public static final int ALL_SLOTS = -1;
+
+    public int syncId;
+    public int slot;
+
+    public InventorySyncEvent(int syncId, int slot) {
+        this.syncId = syncId;
+        this.slot = slot;
+    }
+}
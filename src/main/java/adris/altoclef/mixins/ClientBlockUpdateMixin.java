@@ -0,0 +1,35 @@
+package adris.altoclef.mixins;
+
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.BlockUpdateEvent;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientWorld.class)
+public class ClientBlockUpdateMixin {
+
+    // Every block change the server sends us (single updates and chunk deltas) ends up here, on the main thread.
+    //#if MC >= 11904
+    @Inject(
+            method = "handleBlockUpdate",
+            at = @At("HEAD")
+    )
+    private void onServerBlockUpdate(BlockPos pos, BlockState state, int flags, CallbackInfo ci) {
+    //#else
+    //$$ @Inject(
+    //$$         method = "setBlockStateWithoutNeighborUpdates",
+    //$$         at = @At("HEAD")
+    //$$ )
+    //$$ private void onServerBlockUpdate(BlockPos pos, BlockState state, CallbackInfo ci) {
+    //#endif
+        BlockState previous = ((ClientWorld) (Object) this).getBlockState(pos);
+        if (previous != state) {
+            EventBus.publish(new BlockUpdateEvent(pos.toImmutable(), previous, state));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package adris.altoclef.mixins;
+
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.EntityAddedEvent;
+import adris.altoclef.eventbus.events.EntityRemovedEvent;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientWorld.class)
+public class ClientEntityTrackingMixin {
+
+    // Entities the server spawns in (or that come into tracking range)
+    @Inject(
+            method = "addEntity",
+            at = @At("TAIL")
+    )
+    //#if MC >= 12002
+    private void onAddEntity(Entity entity, CallbackInfo ci) {
+    //#else
+    //$$ private void onAddEntity(int id, Entity entity, CallbackInfo ci) {
+    //#endif
+        EventBus.publish(new EntityAddedEvent(entity));
+    }
+
+    // Entities the server despawns (or that leave tracking range). Runs before the entity is gone, so we can still look it up.
+    @Inject(
+            method = "removeEntity",
+            at = @At("HEAD")
+    )
+    //#if MC >= 11701
+    private void onRemoveEntity(int entityId, Entity.RemovalReason removalReason, CallbackInfo ci) {
+    //#else
+    //$$ private void onRemoveEntity(int entityId, CallbackInfo ci) {
+    //#endif
+        Entity entity = ((ClientWorld) (Object) this).getEntityById(entityId);
+        if (entity != null) {
+            EventBus.publish(new EntityRemovedEvent(entity));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package adris.altoclef.mixins;
+
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.InventorySyncEvent;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.InventoryS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScreenHandlerSlotUpdateS2CPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientPlayNetworkHandler.class)
+public class ClientInventorySyncMixin {
+
+    // Both handlers bail out on the network thread and get re-run on the main thread, so TAIL only ever runs there.
+
+    @Inject(
+            method = "onScreenHandlerSlotUpdate",
+            at = @At("TAIL")
+    )
+    private void onSlotUpdate(ScreenHandlerSlotUpdateS2CPacket packet, CallbackInfo ci) {
+        EventBus.publish(new InventorySyncEvent(packet.getSyncId(), packet.getSlot()));
+    }
+
+    @Inject(
+            method = "onInventory",
+            at = @At("TAIL")
+    )
+    private void onInventory(InventoryS2CPacket packet, CallbackInfo ci) {
+        EventBus.publish(new InventorySyncEvent(packet.getSyncId(), InventorySyncEvent.ALL_SLOTS));
+    }
+}
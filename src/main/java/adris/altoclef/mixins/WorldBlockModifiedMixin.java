@@ -25,6 +25,8 @@ public class WorldBlockModifiedMixin {
             at = @At("HEAD")
     )
     public void onBlockWasChanged(BlockPos pos, BlockState oldBlock, BlockState newBlock, CallbackInfo ci) {
+        // This also runs for the integrated server's worlds, which we don't track.
+        if (!((World) (Object) this).isClient()) return;
         if (!hasBlock(oldBlock, pos) && hasBlock(newBlock, pos)) {
             BlockPlaceEvent evt = new BlockPlaceEvent(pos, newBlock);
             EventBus.publish(evt);
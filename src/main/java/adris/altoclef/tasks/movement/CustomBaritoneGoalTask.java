@@ -6,6 +6,7 @@ import adris.altoclef.control.InputControls;
 import adris.altoclef.multiversion.versionedfields.Blocks;
 import adris.altoclef.tasksystem.ITaskRequiresGrounded;
 import adris.altoclef.tasksystem.Task;
+import adris.altoclef.util.baritone.TickRefreshedGoal;
 import adris.altoclef.util.helpers.WorldHelper;
 import adris.altoclef.util.progresscheck.MovementProgressChecker;
 import baritone.api.pathing.goals.Goal;
@@ -149,6 +150,9 @@ public abstract class CustomBaritoneGoalTask extends Task implements ITaskRequir
         if (cachedGoal == null) {
             cachedGoal = newGoal(mod);
         }
+        if (cachedGoal instanceof TickRefreshedGoal refreshed) {
+            refreshed.refresh();
+        }
 
         if (wander) {
             if (isFinished()) {
@@ -179,6 +183,9 @@ public abstract class CustomBaritoneGoalTask extends Task implements ITaskRequir
     public boolean isFinished() {
         if (cachedGoal == null) {
             cachedGoal = newGoal(AltoClef.getInstance());
+            if (cachedGoal instanceof TickRefreshedGoal refreshed) {
+                refreshed.refresh();
+            }
         }
         return cachedGoal != null && cachedGoal.isInGoal(AltoClef.getInstance().getPlayer().getBlockPos());
     }
@@ -15,17 +15,6 @@ public class DodgeProjectilesTask extends CustomBaritoneGoalTask {
         _distanceVertical = distanceVertical;
     }
 
-    @Override
-    protected Task onTick() {
-        if (cachedGoal != null) {
-            // EntityTracker runs ensureUpdated automatically which calls updateState which locks the mutex,
-            // so don't lock here.
-            // Multithreading can be a hassle in more ways than one it seems.
-            GoalDodgeProjectiles goal = (GoalDodgeProjectiles) cachedGoal;
-        }
-        return super.onTick();
-    }
-
     @SuppressWarnings("RedundantIfStatement")
     @Override
     protected boolean isEqual(Task other) {
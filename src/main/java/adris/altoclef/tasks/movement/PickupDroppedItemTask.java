@@ -7,6 +7,7 @@ import adris.altoclef.tasks.resources.SatisfyMiningRequirementTask;
 import adris.altoclef.tasks.slot.EnsureFreeInventorySlotTask;
 import adris.altoclef.tasksystem.ITaskRequiresGrounded;
 import adris.altoclef.tasksystem.Task;
+import adris.altoclef.trackers.EntityQuery;
 import adris.altoclef.util.ItemTarget;
 import adris.altoclef.util.MiningRequirement;
 import adris.altoclef.util.helpers.StlHelper;
@@ -33,6 +34,8 @@ public class PickupDroppedItemTask extends AbstractDoToClosestObjectTask<ItemEnt
     private final MovementProgressChecker stuckCheck = new MovementProgressChecker();
     private final MovementProgressChecker progressChecker = new MovementProgressChecker();
     private final ItemTarget[] itemTargets;
+    // Asked every tick, so set up once
+    private final EntityQuery dropQuery = new EntityQuery().byPathCost();
 
     // This happens all the time in mineshafts and swamps/jungles
     private final Set<ItemEntity> _blacklist = new HashSet<>();
@@ -61,6 +64,9 @@ public class PickupDroppedItemTask extends AbstractDoToClosestObjectTask<ItemEnt
     public PickupDroppedItemTask(ItemTarget[] itemTargets, boolean freeInventoryIfFull) {
         this.itemTargets = itemTargets;
         _freeInventoryIfFull = freeInventoryIfFull;
+        for (ItemTarget target : itemTargets) {
+            dropQuery.addItems(target.getMatches());
+        }
     }
 
     public PickupDroppedItemTask(ItemTarget target, boolean freeInventoryIfFull) {
@@ -246,9 +252,7 @@ public class PickupDroppedItemTask extends AbstractDoToClosestObjectTask<ItemEnt
 
     @Override
     protected Optional<ItemEntity> getClosestTo(AltoClef mod, Vec3d pos) {
-        return mod.getEntityTracker().getClosestItemDrop(
-                pos,
-                itemTargets);
+        return mod.getEntityTracker().getClosestItemDrop(dropQuery.from(pos));
     }
 
     @Override
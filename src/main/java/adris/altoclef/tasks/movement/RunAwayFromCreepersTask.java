@@ -1,13 +1,11 @@
 package adris.altoclef.tasks.movement;
 
 import adris.altoclef.AltoClef;
-import adris.altoclef.chains.MobDefenseChain;
 import adris.altoclef.tasksystem.Task;
 import adris.altoclef.util.baritone.GoalRunAwayFromEntities;
 import baritone.api.pathing.goals.Goal;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.mob.CreeperEntity;
-import net.minecraft.util.math.Vec3d;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -55,11 +53,17 @@ public class RunAwayFromCreepersTask extends CustomBaritoneGoalTask {
         }
 
         @Override
-        protected double getCostOfEntity(Entity entity, int x, int y, int z) {
-            if (entity instanceof CreeperEntity) {
-                return MobDefenseChain.getCreeperSafety(new Vec3d(x + 0.5, y + 0.5, z + 0.5), (CreeperEntity) entity);
-            }
-            return super.getCostOfEntity(entity, x, y, z);
+        protected double getThreatWeight(Entity entity) {
+            // Same as MobDefenseChain.getCreeperSafety, fusing creepers count as closer
+            return entity instanceof CreeperEntity creeper && creeper.getClientFuseTime(1) > 0.001f ? 0.2 : 1;
+        }
+
+        @Override
+        protected double getCostOfThreat(Threat threat, int x, int y, int z) {
+            double dx = threat.x - (x + 0.5),
+                    dy = threat.y - (y + 0.5),
+                    dz = threat.z - (z + 0.5);
+            return (dx * dx + dy * dy + dz * dz) * threat.weight;
         }
     }
 }
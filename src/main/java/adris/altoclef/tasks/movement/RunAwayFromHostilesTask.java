@@ -3,15 +3,13 @@ package adris.altoclef.tasks.movement;
 import adris.altoclef.AltoClef;
 import adris.altoclef.tasksystem.Task;
 import adris.altoclef.util.baritone.GoalRunAwayFromEntities;
-import adris.altoclef.util.helpers.BaritoneHelper;
 import baritone.api.pathing.goals.Goal;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.mob.SkeletonEntity;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class RunAwayFromHostilesTask extends CustomBaritoneGoalTask {
 
@@ -56,13 +54,13 @@ public class RunAwayFromHostilesTask extends CustomBaritoneGoalTask {
 
         @Override
         protected List<Entity> getEntities(AltoClef mod) {
-            Stream<LivingEntity> stream = mod.getEntityTracker().getHostiles().stream();
-            synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-                if (!includeSkeletons) {
-                    stream = stream.filter(hostile -> !(hostile instanceof SkeletonEntity));
+            List<Entity> result = new ArrayList<>();
+            for (LivingEntity hostile : mod.getEntityTracker().getHostiles()) {
+                if (includeSkeletons || !(hostile instanceof SkeletonEntity)) {
+                    result.add(hostile);
                 }
-                return stream.collect(Collectors.toList());
             }
+            return result;
         }
     }
 }
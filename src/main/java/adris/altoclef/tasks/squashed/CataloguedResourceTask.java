@@ -15,24 +15,30 @@ import java.util.*;
 public class CataloguedResourceTask extends ResourceTask {
 
 
-    private final TaskSquasher squasher;
     private final ItemTarget[] targets;
+    // Null if we're not squashing, then it's just each target's own task one after the other
+    private final ResourcePlanner planner;
     private final List<ResourceTask> tasksToComplete;
 
+    // What's left to do, only planned again once the inventory changes
+    private List<ResourceTask> plan = Collections.emptyList();
+    private long planInventoryVersion;
+    private boolean planValid = false;
+
     public CataloguedResourceTask(boolean squash, ItemTarget... targets) {
         super(targets);
-        squasher = new TaskSquasher();
         this.targets = targets;
         tasksToComplete = new ArrayList<>(targets.length);
 
-        for (ItemTarget target : targets) {
-            if (target != null) {
-                tasksToComplete.add(TaskCatalogue.getItemTask(target));
-            }
-        }
-
         if (squash) {
-            squashTasks(tasksToComplete);
+            planner = new ResourcePlanner(targets);
+        } else {
+            planner = null;
+            for (ItemTarget target : targets) {
+                if (target != null) {
+                    tasksToComplete.add(TaskCatalogue.getItemTask(target));
+                }
+            }
         }
     }
 
@@ -47,24 +53,38 @@ public class CataloguedResourceTask extends ResourceTask {
 
     @Override
     protected Task onResourceTick(AltoClef mod) {
-        for (ResourceTask task : tasksToComplete) {
-            for (ItemTarget target : task.getItemTargets()) {
-                // If we failed to meet this task's targets, do the task.
-                if (!StorageHelper.itemTargetsMetInventory(target)) return task;
-            }
-        }
-        return null;
+        return getNextTask();
     }
 
     @Override
     public boolean isFinished() {
-        for (ResourceTask task : tasksToComplete) {
+        // Nothing left to do isn't enough, a target nobody knows how to get leaves nothing to do either
+        if (getNextTask() != null) return false;
+        for (ItemTarget target : targets) {
+            if (target != null && !StorageHelper.itemTargetsMetInventory(target)) return false;
+        }
+        return true;
+    }
+
+    private ResourceTask getNextTask() {
+        AltoClef mod = AltoClef.getInstance();
+        long inventoryVersion = mod.getItemStorage().getInventoryVersion();
+        if (!planValid || inventoryVersion != planInventoryVersion) {
+            plan = planner != null ? planner.plan(mod) : tasksToComplete;
+            planInventoryVersion = inventoryVersion;
+            planValid = true;
+            if (planner != null) {
+                setDebugState(plan.size() + " steps left (~" + planner.getRawCost() + " raw items from scratch)");
+            }
+        }
+
+        for (ResourceTask task : plan) {
             for (ItemTarget target : task.getItemTargets()) {
-                if (!StorageHelper.itemTargetsMetInventory(target)) return false;
+                // If we failed to meet this task's targets, do the task.
+                if (!StorageHelper.itemTargetsMetInventory(target)) return task;
             }
         }
-        // All targets are met.
-        return true;
+        return null;
     }
 
     @Override
@@ -91,12 +111,6 @@ public class CataloguedResourceTask extends ResourceTask {
         return "Get catalogued: " + ArrayUtils.toString(targets);
     }
 
-    private void squashTasks(List<ResourceTask> tasks) {
-        squasher.addTasks(tasks);
-        tasks.clear();
-        tasks.addAll(squasher.getSquashed());
-    }
-
     @SuppressWarnings({"unchecked", "rawtypes"})
     static class TaskSquasher {
 
@@ -0,0 +1,260 @@
+package adris.altoclef.tasks.squashed;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.Debug;
+import adris.altoclef.TaskCatalogue;
+import adris.altoclef.tasks.CraftInInventoryTask;
+import adris.altoclef.tasks.ResourceTask;
+import adris.altoclef.tasks.container.CraftInTableTask;
+import adris.altoclef.tasks.container.SmeltInFurnaceTask;
+import adris.altoclef.trackers.CraftingRecipeTracker;
+import adris.altoclef.util.CraftingRecipe;
+import adris.altoclef.util.ItemTarget;
+import adris.altoclef.util.RecipeTarget;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.item.Item;
+
+import java.util.*;
+
+/**
+ * Works out everything a {@link CataloguedResourceTask} needs, all the way down to raw materials, and turns it into
+ * one schedule: gather everything, then smelt everything, then craft everything.
+ * <p>
+ * Every catalogue recipe the targets depend on gets expanded once, into nodes shared between everything that uses them.
+ * Each node remembers its ingredients and how much raw stuff one of it costs, so planning again (once the inventory
+ * changes) is just one walk down the nodes taking off what we already have.
+ * <p>
+ * Only looks inside catalogue recipes (crafting and smelting). Everything else (mining, mobs, the custom collect tasks)
+ * is a leaf, gathered by its own catalogue task.
+ */
+class ResourcePlanner {
+
+    private final ItemTarget[] targets;
+
+    // Resource key (catalogue name or item) -> its node, see keyOf
+    private final Map<Object, Node> nodes = new HashMap<>();
+    // Ingredients before the things made from them
+    private final List<Node> order = new ArrayList<>();
+    private final Node[] roots;
+    private boolean expanded = false;
+
+    ResourcePlanner(ItemTarget[] targets) {
+        this.targets = targets;
+        roots = new Node[targets.length];
+    }
+
+    /**
+     * What to do, in order. Empty if every target is met.
+     */
+    List<ResourceTask> plan(AltoClef mod) {
+        if (!expanded) {
+            // Lazily, the recipe tracker only knows what the server has once we're in game
+            expand(mod.getCraftingRecipeTracker());
+            expanded = true;
+        }
+
+        // How many of each node we want to end up holding. Parents come last in `order`, so walking it backwards
+        // means a node has heard from everything that uses it before it passes its own needs on.
+        Object2IntOpenHashMap<Node> demand = new Object2IntOpenHashMap<>();
+        for (int i = 0; i < roots.length; ++i) {
+            if (roots[i] != null) {
+                demand.addTo(roots[i], targets[i].getTargetCount());
+            }
+        }
+
+        List<ResourceTask> gather = new ArrayList<>();
+        List<ResourceTask> smelt = new ArrayList<>();
+        List<ResourceTask> craftBefore = new ArrayList<>();
+        List<RecipeTarget> craftInTable = new ArrayList<>();
+        // Smelts and inventory crafts that need something from the table
+        List<ResourceTask> afterTable = new ArrayList<>();
+
+        for (int i = order.size() - 1; i >= 0; --i) {
+            Node node = order.get(i);
+            int wanted = demand.getInt(node);
+            int missing = wanted - mod.getItemStorage().getItemCountInventoryOnly(node.matches);
+            if (missing <= 0) continue;
+
+            int batches = (missing + node.outputCount - 1) / node.outputCount;
+            for (Object2IntMap.Entry<Node> ingredient : node.ingredients.object2IntEntrySet()) {
+                demand.addTo(ingredient.getKey(), ingredient.getIntValue() * batches);
+            }
+
+            switch (node.kind) {
+                case GATHER -> {
+                    ResourceTask task = node.getTask(wanted);
+                    // Nothing in the catalogue gets it, CataloguedResourceTask won't call it done either
+                    if (task != null) gather.add(task);
+                }
+                case SMELT -> (node.afterTable ? afterTable : smelt).add(node.getTask(wanted));
+                case CRAFT_IN_INVENTORY -> (node.afterTable ? afterTable : craftBefore).add(node.getTask(wanted));
+                case CRAFT_IN_TABLE -> craftInTable.add(new RecipeTarget(node.output, wanted, node.recipe));
+            }
+        }
+
+        // `order` has ingredients first, we walked it backwards
+        Collections.reverse(smelt);
+        Collections.reverse(craftBefore);
+        Collections.reverse(craftInTable);
+        Collections.reverse(afterTable);
+
+        List<ResourceTask> result = new ArrayList<>(gather.size() + smelt.size() + craftBefore.size() + afterTable.size() + 1);
+        result.addAll(squash(gather));
+        result.addAll(smelt);
+        result.addAll(craftBefore);
+        if (!craftInTable.isEmpty()) {
+            // One trip to the table for everything
+            result.add(new CraftInTableTask(craftInTable.toArray(RecipeTarget[]::new)));
+        }
+        result.addAll(afterTable);
+        return result;
+    }
+
+    /**
+     * Roughly how many raw items the whole request costs from scratch, ignoring what we have.
+     */
+    int getRawCost() {
+        double cost = 0;
+        for (int i = 0; i < roots.length; ++i) {
+            if (roots[i] != null) {
+                cost += roots[i].cost * targets[i].getTargetCount();
+            }
+        }
+        return (int) Math.ceil(cost);
+    }
+
+    // Leaves can still be squashable on their own (smithing, crafts we didn't look inside)
+    private static List<ResourceTask> squash(List<ResourceTask> tasks) {
+        CataloguedResourceTask.TaskSquasher squasher = new CataloguedResourceTask.TaskSquasher();
+        squasher.addTasks(tasks);
+        return squasher.getSquashed();
+    }
+
+    private void expand(CraftingRecipeTracker recipes) {
+        Set<Node> visiting = new HashSet<>();
+        for (int i = 0; i < targets.length; ++i) {
+            ItemTarget target = targets[i];
+            if (target == null || target.isEmpty()) continue;
+            roots[i] = expand(target, recipes, visiting);
+            if (roots[i] == null) {
+                // Not one catalogued resource, gather it as a whole (see Node.getTask)
+                roots[i] = new Node(target, target.getMatches());
+                order.add(roots[i]);
+            }
+        }
+    }
+
+    // Depth first, so a node lands in `order` after everything it's made from
+    private Node expand(ItemTarget target, CraftingRecipeTracker recipes, Set<Node> visiting) {
+        Object key = keyOf(target);
+        if (key == null) return null;
+        Node node = nodes.get(key);
+        if (node != null) return node;
+
+        node = new Node(key, target.isCatalogueItem() ? TaskCatalogue.getItemMatches(target.getCatalogueName()) : target.getMatches());
+        nodes.put(key, node);
+        visiting.add(node);
+
+        ResourceTask task = node.getTask(1);
+        if (task instanceof CraftInTableTask craft && craft.getRecipeTargets().length == 1) {
+            expandRecipe(node, Kind.CRAFT_IN_TABLE, craft.getRecipeTargets()[0], recipes, visiting);
+        } else if (task instanceof CraftInInventoryTask craft) {
+            expandRecipe(node, Kind.CRAFT_IN_INVENTORY, craft.getRecipeTarget(), recipes, visiting);
+        } else if (task instanceof SmeltInFurnaceTask smelt && smelt.getTargets().length == 1) {
+            node.kind = Kind.SMELT;
+            Node material = expand(smelt.getTargets()[0].getMaterial(), recipes, visiting);
+            if (material == null || visiting.contains(material)) {
+                node.kind = Kind.GATHER;
+            } else {
+                node.ingredients.put(material, 1);
+                node.afterTable = material.kind == Kind.CRAFT_IN_TABLE || material.afterTable;
+                node.cost = material.cost;
+            }
+        }
+
+        visiting.remove(node);
+        order.add(node);
+        return node;
+    }
+
+    private void expandRecipe(Node node, Kind kind, RecipeTarget recipeTarget, CraftingRecipeTracker recipes, Set<Node> visiting) {
+        // The server doesn't have it, let the catalogue task deal with that
+        if (!recipes.hasRecipeForItem(recipeTarget.getOutputItem())) return;
+
+        CraftingRecipe recipe = recipeTarget.getRecipe();
+        Object2IntOpenHashMap<Node> ingredients = new Object2IntOpenHashMap<>();
+        for (ItemTarget slot : recipe.getSlots()) {
+            if (slot == null || slot.isEmpty()) continue;
+            Node ingredient = expand(slot, recipes, visiting);
+            // Something we can't plan for, or a recipe loop (A from B from A). Gather it whole instead.
+            if (ingredient == null || visiting.contains(ingredient)) return;
+            ingredients.addTo(ingredient, Math.max(slot.getTargetCount(), 1));
+        }
+
+        node.kind = kind;
+        node.recipe = recipe;
+        node.output = recipeTarget.getOutputItem();
+        node.outputCount = recipe.outputCount();
+        node.ingredients.putAll(ingredients);
+        double cost = 0;
+        for (Object2IntMap.Entry<Node> ingredient : ingredients.object2IntEntrySet()) {
+            Node child = ingredient.getKey();
+            cost += child.cost * ingredient.getIntValue();
+            node.afterTable |= child.kind == Kind.CRAFT_IN_TABLE || child.afterTable;
+        }
+        node.cost = cost / node.outputCount;
+    }
+
+    // Catalogue name, or the item if it's just one catalogued item. Null if the catalogue can't get it.
+    private static Object keyOf(ItemTarget target) {
+        if (target.isCatalogueItem()) {
+            return TaskCatalogue.taskExists(target.getCatalogueName()) ? target.getCatalogueName() : null;
+        }
+        Item[] matches = target.getMatches();
+        if (matches.length == 1 && TaskCatalogue.taskExists(matches[0])) {
+            return matches[0];
+        }
+        return null;
+    }
+
+    private enum Kind {
+        GATHER,
+        SMELT,
+        CRAFT_IN_INVENTORY,
+        CRAFT_IN_TABLE
+    }
+
+    private static class Node {
+        private final Object key;
+        private final Item[] matches;
+
+        private Kind kind = Kind.GATHER;
+        // Per batch (one craft/smelt, `outputCount` items out)
+        private final Object2IntOpenHashMap<Node> ingredients = new Object2IntOpenHashMap<>();
+        private int outputCount = 1;
+        private CraftingRecipe recipe;
+        private Item output;
+        // Raw items it takes to make one, leaves count as 1
+        private double cost = 1;
+        // Made (somewhere down the line) from something crafted in a table, so it has to wait for the table trip
+        private boolean afterTable = false;
+
+        private Node(Object key, Item[] matches) {
+            this.key = key;
+            this.matches = matches;
+        }
+
+        // Null if the catalogue can't get it
+        private ResourceTask getTask(int count) {
+            if (key instanceof String name) return TaskCatalogue.getItemTask(name, count);
+            if (key instanceof Item item) return TaskCatalogue.getItemTask(item, count);
+            // A target that isn't one catalogued resource (see expand). Any of its matches counts, so go for one we know how to get.
+            for (Item match : matches) {
+                if (TaskCatalogue.taskExists(match)) return TaskCatalogue.getItemTask(match, count);
+            }
+            Debug.logWarning("Don't know how to get any of " + Arrays.toString(matches) + ".");
+            return null;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package adris.altoclef.tasksystem;
 
 import adris.altoclef.Debug;
 import adris.altoclef.tasks.movement.TimeoutWanderTask;
+import adris.altoclef.util.profiler.TickProfiler;
 
 import java.util.function.Predicate;
 
@@ -19,6 +20,15 @@ public abstract class Task {
     private boolean active = false;
 
     public void tick(TaskChain parentChain) {
+        TickProfiler.push(TickProfiler.labelOf(getClass()));
+        try {
+            tickInner(parentChain);
+        } finally {
+            TickProfiler.pop();
+        }
+    }
+
+    private void tickInner(TaskChain parentChain) {
         parentChain.addTaskToChain(this);
         if (first) {
             Debug.logInternal("Task START: " + this);
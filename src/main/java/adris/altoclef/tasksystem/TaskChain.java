@@ -1,5 +1,7 @@
 package adris.altoclef.tasksystem;
 
+import adris.altoclef.util.profiler.TickProfiler;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -7,13 +9,32 @@ public abstract class TaskChain {
 
     private final List<Task> cachedTaskChain = new ArrayList<>();
 
+    // Profiler labels, built once
+    final String priorityLabel = TickProfiler.labelOf(getClass()) + ".getPriority";
+    private final String preTickLabel = TickProfiler.labelOf(getClass()) + ".onPreTick";
+    private final String tickLabel = TickProfiler.labelOf(getClass()) + ".tick";
+
     public TaskChain(TaskRunner runner) {
         runner.addTaskChain(this);
     }
 
     public void tick() {
-        cachedTaskChain.clear();
-        onTick();
+        TickProfiler.push(tickLabel);
+        try {
+            cachedTaskChain.clear();
+            onTick();
+        } finally {
+            TickProfiler.pop();
+        }
+    }
+
+    void preTick() {
+        TickProfiler.push(preTickLabel);
+        try {
+            onPreTick();
+        } finally {
+            TickProfiler.pop();
+        }
     }
 
     public void stop() {
@@ -27,12 +48,37 @@ public abstract class TaskChain {
 
     protected abstract void onTick();
 
+    /**
+     * Runs every tick while we're active, before anyone's priority is asked for and whether we end up running or not.
+     * Whatever has to happen every tick (holding the eat key, shielding, swimming up) goes here and not in getPriority.
+     */
+    protected void onPreTick() {
+    }
+
     public abstract float getPriority();
 
     public abstract boolean isActive();
 
     public abstract String getName();
 
+    /**
+     * Chains that keep us alive (falling, mobs) get their priority checked before anyone else's,
+     * and win ties against chains that aren't.
+     */
+    public boolean isSafetyCritical() {
+        return false;
+    }
+
+    /**
+     * The highest priority this chain can ever return. Once another chain reached it, this chain can't win, so its
+     * {@link #getPriority()} isn't called at all that tick.
+     * <p>
+     * Only lower it if skipping getPriority is fine, meaning its per-tick work is in {@link #onPreTick()}.
+     */
+    public float getPriorityCeiling() {
+        return Float.POSITIVE_INFINITY;
+    }
+
     public List<Task> getTasks() {
         return cachedTaskChain;
     }
@@ -2,6 +2,7 @@ package adris.altoclef.tasksystem;
 
 import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
+import adris.altoclef.util.profiler.TickProfiler;
 
 import java.util.ArrayList;
 
@@ -25,13 +26,26 @@ public class TaskRunner {
             statusReport = " (no chain running) ";
             return;
         }
+        tickChains();
+    }
+
+    // Everything but the in game check, so it can run without a game
+    void tickChains() {
+        for (TaskChain chain : chains) {
+            if (chain.isActive()) {
+                chain.preTick();
+            }
+        }
 
         // Get highest priority chain and run
         TaskChain maxChain = null;
         float maxPriority = Float.NEGATIVE_INFINITY;
         for (TaskChain chain : chains) {
             if (!chain.isActive()) continue;
-            float priority = chain.getPriority();
+            // Can't beat what we have, don't bother asking
+            if (chain.getPriorityCeiling() <= maxPriority) continue;
+
+            float priority = getPriority(chain);
             if (priority > maxPriority) {
                 maxPriority = priority;
                 maxChain = chain;
@@ -49,8 +63,26 @@ public class TaskRunner {
         }
     }
 
+    private float getPriority(TaskChain chain) {
+        TickProfiler.push(chain.priorityLabel);
+        try {
+            return chain.getPriority();
+        } finally {
+            TickProfiler.pop();
+        }
+    }
+
     public void addTaskChain(TaskChain chain) {
-        chains.add(chain);
+        if (!chain.isSafetyCritical()) {
+            chains.add(chain);
+            return;
+        }
+        // Ahead of every chain that isn't safety critical, behind the ones that are
+        int index = 0;
+        while (index < chains.size() && chains.get(index).isSafetyCritical()) {
+            index++;
+        }
+        chains.add(index, chain);
     }
 
     public void enable() {
@@ -0,0 +1,135 @@
+package adris.altoclef.tasksystem;
+
+import adris.altoclef.Debug;
+import adris.altoclef.util.profiler.TickProfiler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the client tick's subsystems in a fixed order, while keeping work that can wait within a time budget.
+ * <p>
+ * Critical jobs run every tick, in the order they were added. Deferrable jobs run afterwards, highest priority first,
+ * each with its own slice of whatever budget is left. A deferrable job gets a deadline and should stop once it's past it,
+ * picking up where it left off next tick.
+ * <p>
+ * A job that got skipped for {@link #MAX_SKIPPED_TICKS} ticks in a row runs anyway, so a busy tick can delay work but never starve it.
+ * <p>
+ * Time comes from a clock that can be swapped out, so the scheduler can be stepped deterministically outside the game.
+ */
+public class TickScheduler {
+
+    private static final int MAX_SKIPPED_TICKS = 10;
+
+    private final List<Runnable> critical = new ArrayList<>();
+    private final List<DeferredJob> deferred = new ArrayList<>();
+
+    private final LongSupplier clock;
+    private long budgetNanos;
+
+    public TickScheduler(float budgetMs) {
+        this(budgetMs, System::nanoTime);
+    }
+
+    /**
+     * @param clock Current time in nanoseconds, also what deferrable jobs should compare their deadline against
+     */
+    public TickScheduler(float budgetMs, LongSupplier clock) {
+        this.clock = clock;
+        setBudgetMs(budgetMs);
+    }
+
+    public long getTimeNanos() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Whether a deferrable job's deadline has come, by this scheduler's clock.
+     */
+    public boolean isPast(long deadlineNanos) {
+        return clock.getAsLong() >= deadlineNanos;
+    }
+
+    public void setBudgetMs(float budgetMs) {
+        budgetNanos = (long) (budgetMs * 1_000_000);
+    }
+
+    /**
+     * Runs every tick, no matter how long it takes.
+     */
+    public void addCritical(String label, Runnable job) {
+        critical.add(() -> {
+            TickProfiler.push(label);
+            try {
+                job.run();
+            } finally {
+                TickProfiler.pop();
+            }
+        });
+    }
+
+    /**
+     * Runs after the critical jobs if there's budget left.
+     *
+     * @param priority  Higher goes first
+     * @param maxMillis The most this job may take in one tick, even if more budget is left
+     */
+    public void addDeferrable(String label, int priority, float maxMillis, SlicedJob job) {
+        deferred.add(new DeferredJob(label, priority, (long) (maxMillis * 1_000_000), job));
+        deferred.sort(Comparator.comparingInt((DeferredJob deferredJob) -> deferredJob.priority).reversed());
+    }
+
+    public void tick() {
+        for (Runnable job : critical) {
+            job.run();
+        }
+
+        long tickDeadline = clock.getAsLong() + budgetNanos;
+        for (DeferredJob job : deferred) {
+            long now = clock.getAsLong();
+            long deadline = Math.min(tickDeadline, now + job.maxNanos);
+            if (deadline <= now) {
+                if (++job.skippedTicks < MAX_SKIPPED_TICKS) continue;
+                // Waited long enough, give it its own slice
+                deadline = now + job.maxNanos;
+            }
+            job.skippedTicks = 0;
+
+            TickProfiler.push(job.label);
+            try {
+                job.job.run(deadline);
+            } catch (Exception e) {
+                Debug.logWarning("Background job " + job.label + " failed: " + e);
+                e.printStackTrace();
+            } finally {
+                TickProfiler.pop();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface SlicedJob {
+        /**
+         * Does as much as fits before `deadlineNanos` (check it with {@link TickScheduler#isPast}, not {@link System#nanoTime()}).
+         * Anything left over should be kept for the next call.
+         */
+        void run(long deadlineNanos);
+    }
+
+    private static final class DeferredJob {
+        final String label;
+        final int priority;
+        final long maxNanos;
+        final SlicedJob job;
+        int skippedTicks;
+
+        DeferredJob(String label, int priority, long maxNanos, SlicedJob job) {
+            this.label = label;
+            this.priority = priority;
+            this.maxNanos = maxNanos;
+            this.job = job;
+        }
+    }
+}
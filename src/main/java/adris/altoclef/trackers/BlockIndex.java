@@ -0,0 +1,217 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.util.helpers.BaritoneHelper;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Block positions, bucketed per block type and per chunk.
+ * <p>
+ * Positions are stored as {@link BlockPos#asLong()} values in primitive sets, keyed by the block's raw registry id,
+ * so millions of tracked blocks don't turn into millions of objects.
+ * <p>
+ * Nearest-block queries look at the buckets closest to the query first and stop as soon as no remaining bucket
+ * could hold anything closer, so they only touch the positions that could actually win.
+ * <p>
+ * Not thread safe, only use it from one thread.
+ */
+public class BlockIndex {
+
+    // block id -> chunk -> packed positions
+    private final Int2ObjectOpenHashMap<Long2ObjectOpenHashMap<LongOpenHashSet>> buckets = new Int2ObjectOpenHashMap<>();
+    // chunk -> block ids it has buckets for, so a chunk can be dropped without visiting every block type
+    private final Long2ObjectOpenHashMap<IntOpenHashSet> chunkContents = new Long2ObjectOpenHashMap<>();
+
+    public static int getId(Block block) {
+        return Registries.BLOCK.getRawId(block);
+    }
+
+    /**
+     * Replaces everything we know about a chunk.
+     * <p>
+     * The sets are taken over as they are, the caller must not touch them afterwards.
+     */
+    public void putChunk(ChunkPos chunk, Int2ObjectMap<LongOpenHashSet> blocks) {
+        long chunkKey = chunk.toLong();
+        removeChunk(chunk);
+        IntOpenHashSet contents = new IntOpenHashSet(blocks.size());
+        for (Int2ObjectMap.Entry<LongOpenHashSet> entry : blocks.int2ObjectEntrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+            buckets.computeIfAbsent(entry.getIntKey(), id -> new Long2ObjectOpenHashMap<>()).put(chunkKey, entry.getValue());
+            contents.add(entry.getIntKey());
+        }
+        chunkContents.put(chunkKey, contents);
+    }
+
+    public void removeChunk(ChunkPos chunk) {
+        long chunkKey = chunk.toLong();
+        IntOpenHashSet contents = chunkContents.remove(chunkKey);
+        if (contents == null) return;
+
+        for (IntIterator iterator = contents.iterator(); iterator.hasNext(); ) {
+            int id = iterator.nextInt();
+            Long2ObjectOpenHashMap<LongOpenHashSet> perChunk = buckets.get(id);
+            perChunk.remove(chunkKey);
+            if (perChunk.isEmpty()) {
+                buckets.remove(id);
+            }
+        }
+    }
+
+    public boolean hasChunk(ChunkPos chunk) {
+        return chunkContents.containsKey(chunk.toLong());
+    }
+
+    public int getChunkCount() {
+        return chunkContents.size();
+    }
+
+    public void add(Block block, BlockPos pos) {
+        int id = getId(block);
+        long chunkKey = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+        chunkContents.computeIfAbsent(chunkKey, c -> new IntOpenHashSet()).add(id);
+        buckets.computeIfAbsent(id, b -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(chunkKey, c -> new LongOpenHashSet())
+                .add(pos.asLong());
+    }
+
+    /**
+     * Removes a position, whatever block we had recorded there.
+     */
+    public void remove(BlockPos pos) {
+        long chunkKey = ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4);
+        IntOpenHashSet contents = chunkContents.get(chunkKey);
+        if (contents == null) return;
+
+        long packed = pos.asLong();
+        for (IntIterator iterator = contents.iterator(); iterator.hasNext(); ) {
+            int id = iterator.nextInt();
+            Long2ObjectOpenHashMap<LongOpenHashSet> perChunk = buckets.get(id);
+            LongOpenHashSet positions = perChunk.get(chunkKey);
+            if (positions.remove(packed) && positions.isEmpty()) {
+                iterator.remove();
+                perChunk.remove(chunkKey);
+                if (perChunk.isEmpty()) {
+                    buckets.remove(id);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        buckets.clear();
+        chunkContents.clear();
+    }
+
+    public boolean contains(Block block, long packed) {
+        Long2ObjectOpenHashMap<LongOpenHashSet> perChunk = buckets.get(getId(block));
+        if (perChunk == null) return false;
+
+        LongOpenHashSet positions = perChunk.get(ChunkPos.toLong(BlockPos.unpackLongX(packed) >> 4, BlockPos.unpackLongZ(packed) >> 4));
+        return positions != null && positions.contains(packed);
+    }
+
+    public void collect(Block block, List<BlockPos> result) {
+        Long2ObjectOpenHashMap<LongOpenHashSet> perChunk = buckets.get(getId(block));
+        if (perChunk == null) return;
+
+        for (LongOpenHashSet positions : perChunk.values()) {
+            for (LongIterator iterator = positions.iterator(); iterator.hasNext(); ) {
+                result.add(BlockPos.fromLong(iterator.nextLong()));
+            }
+        }
+    }
+
+    public boolean anyMatch(Block block, LongPredicate accept) {
+        Long2ObjectOpenHashMap<LongOpenHashSet> perChunk = buckets.get(getId(block));
+        if (perChunk == null) return false;
+
+        for (LongOpenHashSet positions : perChunk.values()) {
+            for (LongIterator iterator = positions.iterator(); iterator.hasNext(); ) {
+                if (accept.test(iterator.nextLong())) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the position with the lowest generic heuristic from `from`.
+     *
+     * @param from        Where to measure from
+     * @param maxDistance Positions further than this (straight line) are ignored
+     * @param accept      Only run for positions that would beat the current best
+     * @param blocks      Block types to look through
+     * @return the closest accepted position packed as a long, or {@link Long#MAX_VALUE} if there is none
+     */
+    public long findNearest(Vec3d from, double maxDistance, LongPredicate accept, Block... blocks) {
+        double maxDistanceSq = maxDistance * maxDistance;
+        List<Bucket> candidates = new ArrayList<>();
+
+        for (Block block : blocks) {
+            Long2ObjectOpenHashMap<LongOpenHashSet> perChunk = buckets.get(getId(block));
+            if (perChunk == null) continue;
+
+            for (Long2ObjectMap.Entry<LongOpenHashSet> entry : perChunk.long2ObjectEntrySet()) {
+                long chunkKey = entry.getLongKey();
+                // Distance to the closest point this chunk could hold
+                double dx = axisDistance(from.x, ChunkPos.getPackedX(chunkKey) << 4);
+                double dz = axisDistance(from.z, ChunkPos.getPackedZ(chunkKey) << 4);
+                if (dx * dx + dz * dz > maxDistanceSq) continue;
+
+                // Same y, so only the horizontal part of the heuristic counts. That never overestimates.
+                double bound = BaritoneHelper.calculateGenericHeuristic(from.x, from.y, from.z, from.x + dx, from.y, from.z + dz);
+                candidates.add(new Bucket(bound, entry.getValue()));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Bucket::bound));
+
+        long best = Long.MAX_VALUE;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (Bucket bucket : candidates) {
+            if (bucket.bound >= bestCost) break;
+
+            for (LongIterator iterator = bucket.positions.iterator(); iterator.hasNext(); ) {
+                long packed = iterator.nextLong();
+                int x = BlockPos.unpackLongX(packed);
+                int y = BlockPos.unpackLongY(packed);
+                int z = BlockPos.unpackLongZ(packed);
+
+                double cost = BaritoneHelper.calculateGenericHeuristic(from.x, from.y, from.z, x + 0.5, y + 0.5, z + 0.5);
+                if (cost >= bestCost) continue;
+                double distX = x - from.x, distY = y - from.y, distZ = z - from.z;
+                if (distX * distX + distY * distY + distZ * distZ >= maxDistanceSq) continue;
+                if (!accept.test(packed)) continue;
+
+                best = packed;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private static double axisDistance(double coord, int chunkStart) {
+        // Loose enough to hold for both block corners and block centers
+        if (coord < chunkStart) return chunkStart - coord;
+        if (coord > chunkStart + 16) return coord - (chunkStart + 16);
+        return 0;
+    }
+
+    private record Bucket(double bound, LongOpenHashSet positions) {
+    }
+}
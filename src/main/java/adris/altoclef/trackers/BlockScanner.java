@@ -3,53 +3,114 @@ package adris.altoclef.trackers;
 import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
 import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.BlockBrokenEvent;
 import adris.altoclef.eventbus.events.BlockPlaceEvent;
+import adris.altoclef.eventbus.events.BlockUpdateEvent;
+import adris.altoclef.eventbus.events.ChunkLoadEvent;
+import adris.altoclef.eventbus.events.ChunkUnloadEvent;
 import adris.altoclef.multiversion.blockpos.BlockPosVer;
 import adris.altoclef.trackers.blacklisting.WorldLocateBlacklist;
 import adris.altoclef.util.Dimension;
 import adris.altoclef.util.helpers.BaritoneHelper;
 import adris.altoclef.util.helpers.WorldHelper;
-import adris.altoclef.util.time.TimerGame;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
 import net.minecraft.world.chunk.WorldChunk;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 
+/**
+ * Keeps an index of where blocks are in the loaded world.
+ * <p>
+ * A chunk is scanned once when it loads and dropped when it unloads. In between, the index is kept up to date
+ * from block change events, so we never have to walk the whole render distance again.
+ */
 public class BlockScanner {
 
     private static final boolean LOG = false;
-    private static final int RESCAN_TICK_DELAY = 4 * 20;
-    private static final int CACHED_POSITIONS_PER_BLOCK = 40;
+    // The cube around the player we always keep an eye on
+    private static final int CLOSE_RADIUS = 8;
+    // Chunks this close to the player have every block indexed
+    private static final int PRIORITY_CHUNK_DISTANCE = 2;
+    // Further away, blocks that fill more than this much of a section (stone, dirt, water...) are only sampled
+    private static final int COMMON_BLOCK_SECTION_COUNT = 1024;
+    // How many spots of each common block we keep per section, enough to still find far away water, lava or sand
+    private static final int COMMON_BLOCK_SAMPLES = 8;
+    // Step between the blocks we look at when sampling. Odd and not a multiple of 16, so the spots spread over every row and column
+    private static final int COMMON_BLOCK_SAMPLE_STEP = 17;
+    private static final LongOpenHashSet EMPTY = new LongOpenHashSet();
 
 
     private final AltoClef mod;
-    private final TimerGame rescanTimer = new TimerGame(1);
 
-    private final HashMap<Block, HashSet<BlockPos>> trackedBlocks = new HashMap<>();
-    private final HashMap<Block, HashSet<BlockPos>> scannedBlocks = new HashMap<>();
-    private final HashMap<ChunkPos, Long> scannedChunks = new HashMap<>();
+    // Only touched from the game thread.
+    private final BlockIndex index = new BlockIndex();
+    // Blocks right around the player that the index can't vouch for yet. Block id -> packed positions
+    private final Int2ObjectOpenHashMap<LongOpenHashSet> closeBlocks = new Int2ObjectOpenHashMap<>();
+    // Chunks whose index entry holds every block, common ones included
+    private final LongOpenHashSet fullyIndexedChunks = new LongOpenHashSet();
+    private final BlockPos.Mutable closeScanPos = new BlockPos.Mutable();
+    private final LongPredicate outsideCloseBox = this::isOutsideCloseBox;
+    // Center of the cube closeBlocks currently covers, null if it covers nothing
+    private BlockPos closeCenter = null;
     private final WorldLocateBlacklist blacklist = new WorldLocateBlacklist();
-    // used while scanning
-    private HashMap<Block, HashSet<BlockPos>> cachedScannedBlocks = new HashMap<>();
+
+    // Chunks waiting for a scan
+    private final LinkedHashSet<ChunkPos> pendingChunks = new LinkedHashSet<>();
+    // Chunks being scanned right now
+    private final HashMap<ChunkPos, InFlightScan> scanningChunks = new HashMap<>();
+    // Finished scans, newest first. Workers push onto it, the game thread swaps the whole list out at once.
+    // Once published, a worker never touches a scan again.
+    private final AtomicReference<FinishedScan> finishedScans = new AtomicReference<>();
+    // Finished scans taken off the list above that didn't fit into a tick's budget yet, close chunks first
+    private final ArrayDeque<ChunkScan> scansToMerge = new ArrayDeque<>();
+    // Bumped on reset so scans from a previous world stop early and get thrown away
+    private final AtomicInteger scanGeneration = new AtomicInteger();
+
+    private ExecutorService scanExecutor = null;
+    private int maxScansInFlight = 0;
+
     private Dimension scanDimension = Dimension.OVERWORLD;
     private World scanWorld = null;
-
-    private boolean scanning = false;
-    private boolean forceStop = false;
+    private ChunkPos lastPlayerChunk = null;
 
 
     public BlockScanner(AltoClef mod) {
         this.mod = mod;
 
-        EventBus.subscribe(BlockPlaceEvent.class, evt -> addBlock(evt.blockState.getBlock(), evt.blockPos));
+        EventBus.subscribe(BlockPlaceEvent.class, evt -> onBlockChanged(evt.blockPos, evt.blockState));
+        EventBus.subscribe(BlockBrokenEvent.class, evt -> {
+            if (evt.player.getWorld() == mod.getWorld()) {
+                onBlockChanged(evt.blockPos, Blocks.AIR.getDefaultState());
+            }
+        });
+        EventBus.subscribe(BlockUpdateEvent.class, evt -> onBlockChanged(evt.blockPos, evt.newState));
+        EventBus.subscribe(ChunkLoadEvent.class, evt -> {
+            if (evt.chunk != null) {
+                queueChunk(evt.chunk.getPos());
+            }
+        });
+        EventBus.subscribe(ChunkUnloadEvent.class, evt -> dropChunk(evt.chunkPos));
     }
 
 
@@ -59,14 +120,7 @@ public class BlockScanner {
             return;
         }
 
-        if (trackedBlocks.containsKey(block)) {
-            trackedBlocks.get(block).add(pos);
-        } else {
-            HashSet<BlockPos> set = new HashSet<>();
-            set.add(pos);
-
-            trackedBlocks.put(block, set);
-        }
+        index.add(block, pos);
     }
 
 
@@ -88,9 +142,14 @@ public class BlockScanner {
         List<BlockPos> locations = new LinkedList<>();
 
         for (Block block : blocks) {
-            if (!trackedBlocks.containsKey(block)) continue;
-
-            locations.addAll(trackedBlocks.get(block));
+            index.collect(block, locations);
+            // Anything close by that the index doesn't have yet
+            for (LongIterator iterator = closeBlocks.getOrDefault(BlockIndex.getId(block), EMPTY).iterator(); iterator.hasNext(); ) {
+                long packed = iterator.nextLong();
+                if (!index.contains(block, packed)) {
+                    locations.add(BlockPos.fromLong(packed));
+                }
+            }
         }
         locations.removeIf(this::isUnreachable);
 
@@ -105,11 +164,7 @@ public class BlockScanner {
      * @param blocks What blocks to check for
      */
     public Optional<BlockPos> getNearestWithinRange(Vec3d pos, double range, Block... blocks) {
-        Optional<BlockPos> nearest = getNearestBlock(pos, blocks);
-
-        if (nearest.isEmpty() || nearest.get().isWithinDistance(pos, range)) return nearest;
-
-        return Optional.empty();
+        return findNearest(pos, range, p -> true, blocks);
     }
 
     public Optional<BlockPos> getNearestWithinRange(BlockPos pos, double range, Block... blocks) {
@@ -124,11 +179,14 @@ public class BlockScanner {
 
     public boolean anyFound(Predicate<BlockPos> isValidTest, Block... blocks) {
         for (Block block : blocks) {
-            if (!trackedBlocks.containsKey(block)) continue;
-
-            for (BlockPos pos : trackedBlocks.get(block)) {
-                if (isValidTest.test(pos) && mod.getWorld().getBlockState(pos).getBlock().equals(block) && !this.isUnreachable(pos))
-                    return true;
+            LongPredicate accept = packed -> {
+                BlockPos pos = BlockPos.fromLong(packed);
+                return isValidTest.test(pos) && mod.getWorld().getBlockState(pos).getBlock().equals(block) && !this.isUnreachable(pos);
+            };
+            if (index.anyMatch(block, accept)) return true;
+
+            for (LongIterator iterator = closeBlocks.getOrDefault(BlockIndex.getId(block), EMPTY).iterator(); iterator.hasNext(); ) {
+                if (accept.test(iterator.nextLong())) return true;
             }
         }
 
@@ -149,22 +207,7 @@ public class BlockScanner {
     }
 
     public Optional<BlockPos> getNearestBlock(Vec3d pos, Predicate<BlockPos> isValidTest, Block... blocks) {
-        Optional<BlockPos> closest = Optional.empty();
-
-        for (Block block : blocks) {
-            Optional<BlockPos> p = getNearestBlock(block, isValidTest, pos);
-
-            if (p.isPresent()) {
-                if (closest.isEmpty()) closest = p;
-                else {
-                    if (BaritoneHelper.calculateGenericHeuristic(pos, WorldHelper.toVec3d(closest.get())) > BaritoneHelper.calculateGenericHeuristic(pos, WorldHelper.toVec3d(p.get()))) {
-                        closest = p;
-                    }
-                }
-            }
-        }
-
-        return closest;
+        return findNearest(pos, Double.POSITIVE_INFINITY, isValidTest, blocks);
     }
 
     public Optional<BlockPos> getNearestBlock(Block block, Vec3d fromPos) {
@@ -172,27 +215,7 @@ public class BlockScanner {
     }
 
     public Optional<BlockPos> getNearestBlock(Block block, Predicate<BlockPos> isValidTest, Vec3d fromPos) {
-        BlockPos pos = null;
-        double nearest = Double.POSITIVE_INFINITY;
-
-        if (!trackedBlocks.containsKey(block)) {
-            return Optional.empty();
-        }
-
-        for (BlockPos p : trackedBlocks.get(block)) {
-            //ensure the block is there (can change upon rescan)
-            if (!mod.getWorld().getBlockState(p).getBlock().equals(block)) continue;
-            if (!isValidTest.test(p) || isUnreachable(p)) continue;
-
-            double dist = BaritoneHelper.calculateGenericHeuristic(fromPos, WorldHelper.toVec3d(p));
-
-            if (dist < nearest) {
-                nearest = dist;
-                pos = p;
-            }
-        }
-
-        return pos != null ? Optional.of(pos) : Optional.empty();
+        return findNearest(fromPos, Double.POSITIVE_INFINITY, isValidTest, block);
     }
 
     public boolean anyFoundWithinDistance(double distance, Block... blocks) {
@@ -200,8 +223,7 @@ public class BlockScanner {
     }
 
     public boolean anyFoundWithinDistance(Vec3d pos, double distance, Block... blocks) {
-        Optional<BlockPos> blockPos = getNearestBlock(blocks);
-        return blockPos.map(value -> value.isWithinDistance(pos, distance)).orElse(false);
+        return findNearest(pos, distance, p -> true, blocks).isPresent();
     }
 
     public double distanceToClosest(Block... blocks) {
@@ -209,10 +231,49 @@ public class BlockScanner {
     }
 
     public double distanceToClosest(Vec3d pos, Block... blocks) {
-        Optional<BlockPos> blockPos = getNearestBlock(blocks);
+        Optional<BlockPos> blockPos = findNearest(pos, Double.POSITIVE_INFINITY, p -> true, blocks);
         return blockPos.map(value ->  Math.sqrt(BlockPosVer.getSquaredDistance(value, pos))).orElse(Double.POSITIVE_INFINITY);
     }
 
+    /**
+     * Closest (by baritone's heuristic) tracked position of any of `blocks` that is still there and passes `isValidTest`.
+     */
+    private Optional<BlockPos> findNearest(Vec3d from, double maxDistance, Predicate<BlockPos> isValidTest, Block... blocks) {
+        //ensure the block is there (the index can lag behind the world by a tick)
+        LongPredicate accept = packed -> {
+            BlockPos p = BlockPos.fromLong(packed);
+            return isValidTest.test(p) && !isUnreachable(p) && isAnyOf(mod.getWorld().getBlockState(p).getBlock(), blocks);
+        };
+
+        long nearest = index.findNearest(from, maxDistance, accept, blocks);
+        double nearestCost = nearest == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : getCost(from, nearest);
+
+        for (Block block : blocks) {
+            for (LongIterator iterator = closeBlocks.getOrDefault(BlockIndex.getId(block), EMPTY).iterator(); iterator.hasNext(); ) {
+                long packed = iterator.nextLong();
+                double cost = getCost(from, packed);
+                if (cost >= nearestCost || !BlockPos.fromLong(packed).isWithinDistance(from, maxDistance) || !accept.test(packed)) continue;
+
+                nearest = packed;
+                nearestCost = cost;
+            }
+        }
+
+        return nearest == Long.MAX_VALUE ? Optional.empty() : Optional.of(BlockPos.fromLong(nearest));
+    }
+
+    private static double getCost(Vec3d from, long packed) {
+        return BaritoneHelper.calculateGenericHeuristic(from.x, from.y, from.z,
+                BlockPos.unpackLongX(packed) + 0.5, BlockPos.unpackLongY(packed) + 0.5, BlockPos.unpackLongZ(packed) + 0.5);
+    }
+
+    private static boolean isAnyOf(Block block, Block[] blocks) {
+        for (Block b : blocks) {
+            if (b == block) return true;
+        }
+        return false;
+    }
+
     // Checks if 'pos' one of 'blocks' block
     // Returns false if incorrect or undetermined/unsure
     public boolean isBlockAtPosition(BlockPos pos, Block... blocks) {
@@ -246,19 +307,24 @@ public class BlockScanner {
     }
 
     public void reset() {
-        trackedBlocks.clear();
-        scannedBlocks.clear();
-        scannedChunks.clear();
-        rescanTimer.forceElapse();
+        index.clear();
+        closeBlocks.clear();
+        fullyIndexedChunks.clear();
+        closeCenter = null;
+        pendingChunks.clear();
+        scanGeneration.incrementAndGet();
+        for (InFlightScan scan : scanningChunks.values()) {
+            scan.future.cancel(false);
+        }
+        scanningChunks.clear();
+        finishedScans.set(null);
+        scansToMerge.clear();
+        lastPlayerChunk = null;
         blacklist.clear();
-        forceStop = true;
     }
 
     public void tick() {
         if (mod.getWorld() == null || mod.getPlayer() == null) return;
-        //be maximally aware of the closest blocks around you
-        scanCloseBlocks();
-        if (!rescanTimer.elapsed() || scanning) return;
 
         if (scanDimension != WorldHelper.getCurrentDimension() || mod.getWorld() != scanWorld) {
             if (LOG) {
@@ -267,198 +333,395 @@ public class BlockScanner {
             reset();
             scanWorld = mod.getWorld();
             scanDimension = WorldHelper.getCurrentDimension();
-            return;
-        }
-
-        cachedScannedBlocks = new HashMap<>(scannedBlocks.size());
-        for (Map.Entry<Block, HashSet<BlockPos>> entry : scannedBlocks.entrySet()) {
-            cachedScannedBlocks.put(entry.getKey(), (HashSet<BlockPos>) entry.getValue().clone());
+            // Chunks may have loaded before we noticed the new world
+            for (ChunkPos pos : mod.getChunkTracker().getLoadedChunks()) {
+                queueChunk(pos);
+            }
         }
 
-        if (LOG) {
-            mod.log("Updating BlockScanner.. size: " + trackedBlocks.size() + " : " + cachedScannedBlocks.size());
+        ChunkPos playerChunk = mod.getPlayer().getChunkPos();
+        if (!playerChunk.equals(lastPlayerChunk)) {
+            onPlayerChunkChanged(lastPlayerChunk, playerChunk);
+            lastPlayerChunk = playerChunk;
         }
 
-        scanning = true;
-        forceStop = false;
-        new Thread(() -> {
-            try {
-                rescan(Integer.MAX_VALUE, Integer.MAX_VALUE);
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                rescanTimer.reset();
-                scanning = false;
-            }
-        }).start();
+        //be maximally aware of the closest blocks around you
+        scanCloseBlocks();
     }
 
-    private void scanCloseBlocks() {
-        for (Map.Entry<Block, HashSet<BlockPos>> entry : cachedScannedBlocks.entrySet()) {
-            if (!trackedBlocks.containsKey(entry.getKey())) {
-                trackedBlocks.put(entry.getKey(), new HashSet<>());
-            }
-            trackedBlocks.get(entry.getKey()).clear();
+    /**
+     * Merges finished scans into the index and hands out new ones, stopping at `deadlineNanos`.
+     * Nothing here is urgent, what doesn't fit is done next time.
+     */
+    public void runBackgroundWork(long deadlineNanos) {
+        if (mod.getWorld() == null || mod.getPlayer() == null) return;
+
+        mergeFinishedScans(deadlineNanos);
 
-            trackedBlocks.get(entry.getKey()).addAll(entry.getValue());
+        if (!pendingChunks.isEmpty()) {
+            submitScans();
         }
+    }
 
-        HashMap<Block, HashSet<BlockPos>> map = new HashMap<>();
+    private void queueChunk(ChunkPos pos) {
+        pendingChunks.add(pos);
+    }
 
-        BlockPos pos = mod.getPlayer().getBlockPos();
-        World world = mod.getPlayer().getWorld();
+    private void dropChunk(ChunkPos pos) {
+        pendingChunks.remove(pos);
+        index.removeChunk(pos);
+        fullyIndexedChunks.remove(pos.toLong());
+    }
 
-        for (int x = pos.getX() - 8; x <= pos.getX() + 8; x++) {
-            for (int y = pos.getY() - 8; y < pos.getY() + 8; y++) {
-                for (int z = pos.getZ() - 8; z <= pos.getZ() + 8; z++) {
-                    BlockPos p = new BlockPos(x, y, z);
-                    BlockState state = world.getBlockState(p);
-                    if (world.getBlockState(p).isAir()) continue;
+    /**
+     * Keeps the index in line with a single block change.
+     */
+    private void onBlockChanged(BlockPos pos, BlockState state) {
+        ChunkPos chunkPos = new ChunkPos(pos);
 
-                    Block block = state.getBlock();
+        // The scan in flight may have read the block before it changed, redo it once the scan lands.
+        InFlightScan inFlight = scanningChunks.get(chunkPos);
+        if (inFlight != null) {
+            inFlight.changedWhileScanning.add(pos.toImmutable());
+        }
 
-                    if (map.containsKey(block)) {
-                        map.get(block).add(p);
-                    } else {
-                        HashSet<BlockPos> set = new HashSet<>();
-                        set.add(p);
-                        map.put(block, set);
-                    }
-                }
+        if (closeCenter != null && !isOutsideCloseBox(pos.asLong())) {
+            removeFromCloseBlocks(pos.asLong());
+            if (!state.isAir() && !fullyIndexedChunks.contains(chunkPos.toLong())) {
+                closeBlocks.computeIfAbsent(BlockIndex.getId(state.getBlock()), id -> new LongOpenHashSet()).add(pos.asLong());
             }
         }
 
-        for (Map.Entry<Block, HashSet<BlockPos>> entry : map.entrySet()) {
-            getFirstFewPositions(entry.getValue(),mod.getPlayer().getPos());
+        // Not indexed yet, the chunk scan will pick it up
+        if (!index.hasChunk(chunkPos)) return;
 
-            if (!trackedBlocks.containsKey(entry.getKey())) {
-                trackedBlocks.put(entry.getKey(), new HashSet<>());
-            }
-
-            trackedBlocks.get(entry.getKey()).addAll(entry.getValue());
+        index.remove(pos);
+        if (!state.isAir()) {
+            index.add(state.getBlock(), pos);
         }
     }
 
-    private void rescan(int maxCount, int cutOffRadius) {
-        long ms = System.currentTimeMillis();
-
-        ChunkPos playerChunkPos = mod.getPlayer().getChunkPos();
-        Vec3d playerPos = mod.getPlayer().getPos();
+    // Chunks that moved in or out of the priority radius need their common blocks filled in or sampled down again
+    private void onPlayerChunkChanged(ChunkPos previous, ChunkPos current) {
+        if (previous == null) return;
 
-        HashSet<ChunkPos> visited = new HashSet<>();
-        Queue<Node> queue = new ArrayDeque<>();
-        queue.add(new Node(playerChunkPos, 0));
+        for (int dx = -PRIORITY_CHUNK_DISTANCE; dx <= PRIORITY_CHUNK_DISTANCE; dx++) {
+            int range = PRIORITY_CHUNK_DISTANCE - Math.abs(dx);
+            for (int dz = -range; dz <= range; dz++) {
+                ChunkPos entering = new ChunkPos(current.x + dx, current.z + dz);
+                if (!isPriorityChunk(entering, previous) && wasScanned(entering)) {
+                    queueChunk(entering);
+                }
+                ChunkPos leaving = new ChunkPos(previous.x + dx, previous.z + dz);
+                if (!isPriorityChunk(leaving, current) && wasScanned(leaving)) {
+                    queueChunk(leaving);
+                }
+            }
+        }
+    }
 
-        while (!queue.isEmpty() && visited.size() < maxCount && !forceStop) {
-            Node node = queue.poll();
+    // Indexed or being scanned right now, either way with the old priority.
+    // Chunks still waiting in pendingChunks don't count, they get their priority when submitted.
+    private boolean wasScanned(ChunkPos pos) {
+        return index.hasChunk(pos) || scanningChunks.containsKey(pos);
+    }
 
-            if (node.distance > cutOffRadius || visited.contains(node.pos) || !mod.getWorld().getChunkManager().isChunkLoaded(node.pos.x, node.pos.z))
-                continue;
+    private void submitScans() {
+        if (scanExecutor == null) {
+            createScanExecutor();
+        }
+        ChunkPos playerChunk = mod.getPlayer().getChunkPos();
+
+        // Closest chunks first
+        List<ChunkPos> toScan = new ArrayList<>(pendingChunks);
+        toScan.sort(Comparator.comparingInt(pos -> getChunkDist(pos, playerChunk)));
+
+        int generation = scanGeneration.get();
+        int submitted = 0;
+        for (ChunkPos pos : toScan) {
+            // Keep the executor queue short, so chunks that load later can still jump ahead of far away ones
+            if (scanningChunks.size() >= maxScansInFlight) break;
+            // Already being scanned, try again once that one lands
+            if (scanningChunks.containsKey(pos)) continue;
+
+            pendingChunks.remove(pos);
+            if (!mod.getChunkTracker().isChunkLoaded(pos)) continue;
+
+            WorldChunk chunk = mod.getWorld().getChunk(pos.x, pos.z);
+            boolean priority = isPriorityChunk(pos, playerChunk);
+            Future<?> future = scanExecutor.submit(() -> runScan(chunk, priority, generation));
+            scanningChunks.put(pos, new InFlightScan(future, new ArrayList<>()));
+            submitted++;
+        }
 
-            boolean isPriorityChunk = getChunkDist(node.pos, playerChunkPos) <= 2;
-            if (!isPriorityChunk && scannedChunks.containsKey(node.pos) && mod.getWorld().getTime() - scannedChunks.get(node.pos) < RESCAN_TICK_DELAY)
-                continue;
+        if (LOG && submitted > 0) {
+            mod.log("Updating BlockScanner.. indexed: " + index.getChunkCount() + " chunks, scanning " + submitted);
+        }
+    }
 
-            visited.add(node.pos);
-            scanChunk(node.pos, playerChunkPos);
+    // Runs on a scanner thread
+    private void runScan(WorldChunk chunk, boolean priority, int generation) {
+        if (scanGeneration.get() != generation) return;
 
-            queue.add(new Node(new ChunkPos(node.pos.x + 1, node.pos.z + 1), node.distance + 1));
-            queue.add(new Node(new ChunkPos(node.pos.x - 1, node.pos.z + 1), node.distance + 1));
-            queue.add(new Node(new ChunkPos(node.pos.x - 1, node.pos.z - 1), node.distance + 1));
-            queue.add(new Node(new ChunkPos(node.pos.x + 1, node.pos.z - 1), node.distance + 1));
-        }
-        if (forceStop) {
-            // reset again, might have changed some values from the time forceStop was called
-            reset();
-            forceStop = false;
-            return;
+        Int2ObjectOpenHashMap<LongOpenHashSet> blocks = null;
+        try {
+            blocks = scanChunk(chunk, priority, generation);
+        } catch (Exception e) {
+            e.printStackTrace();
         }
+        // Always publish, even a failed scan, so the game thread knows the chunk is no longer in flight
+        ChunkScan scan = new ChunkScan(chunk.getPos(), generation, priority, blocks);
+        finishedScans.updateAndGet(head -> new FinishedScan(scan, head));
+    }
 
-        for (Iterator<ChunkPos> iterator = scannedChunks.keySet().iterator(); iterator.hasNext(); ) {
-            ChunkPos pos = iterator.next();
-            int distance = getChunkDist(pos, playerChunkPos);
+    private void createScanExecutor() {
+        int threads = mod.getModSettings() != null ? mod.getModSettings().getBlockScannerThreads() : 0;
+        if (threads <= 0) {
+            // Leave cores for the game and baritone
+            threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        }
+        maxScansInFlight = threads * 4;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        scanExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "AltoClef Block Scanner #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
 
-            if (distance > cutOffRadius) {
-                iterator.remove();
+    private void mergeFinishedScans(long deadlineNanos) {
+        for (FinishedScan finished = finishedScans.getAndSet(null); finished != null; finished = finished.next) {
+            // Chunks next to the player matter the most
+            if (finished.scan.priority) {
+                scansToMerge.addFirst(finished.scan);
+            } else {
+                scansToMerge.addLast(finished.scan);
             }
         }
 
-        for (HashSet<BlockPos> set : scannedBlocks.values()) {
-            if (set.size() < CACHED_POSITIONS_PER_BLOCK) {
+        int generation = scanGeneration.get();
+        boolean first = true;
+        while (!scansToMerge.isEmpty()) {
+            // Always merge at least one, so we keep up even when every tick is over budget
+            if (!first && mod.getTickScheduler().isPast(deadlineNanos)) break;
+            first = false;
+
+            ChunkScan scan = scansToMerge.pollFirst();
+            if (scan.generation != generation) continue;
+
+            InFlightScan inFlight = scanningChunks.remove(scan.pos);
+            if (scan.blocks == null) {
+                // Failed, give it another go
+                queueChunk(scan.pos);
                 continue;
             }
+            // Unloaded while we were scanning it
+            if (!mod.getChunkTracker().isChunkLoaded(scan.pos)) continue;
+
+            index.putChunk(scan.pos, scan.blocks);
+            if (scan.priority) {
+                // The index has all of it now, the close scan doesn't need to cover for it anymore
+                long chunkKey = scan.pos.toLong();
+                fullyIndexedChunks.add(chunkKey);
+                removeFromCloseBlocks(packed -> ChunkPos.toLong(BlockPos.unpackLongX(packed) >> 4, BlockPos.unpackLongZ(packed) >> 4) == chunkKey);
+            } else {
+                fullyIndexedChunks.remove(scan.pos.toLong());
+            }
 
-            getFirstFewPositions(set, playerPos);
+            if (inFlight != null) {
+                for (BlockPos pos : inFlight.changedWhileScanning) {
+                    onBlockChanged(pos, mod.getWorld().getBlockState(pos));
+                }
+            }
         }
+    }
 
-        if (LOG) {
-            mod.log("Rescanned in: " + (System.currentTimeMillis() - ms) + " ms; visited: " + visited.size() + " chunks");
+    /**
+     * Keeps track of every block in a cube around the player, for chunks the index doesn't fully cover yet
+     * (common blocks in chunks that just became close, before their rescan lands).
+     * <p>
+     * Only the slabs that enter the cube get scanned when the player crosses a block boundary.
+     * Standing still costs nothing.
+     */
+    private void scanCloseBlocks() {
+        BlockPos center = mod.getPlayer().getBlockPos();
+        if (center.equals(closeCenter)) return;
+
+        BlockPos previous = closeCenter;
+        closeCenter = center.toImmutable();
+
+        int minX = center.getX() - CLOSE_RADIUS, maxX = center.getX() + CLOSE_RADIUS;
+        int minY = center.getY() - CLOSE_RADIUS, maxY = center.getY() + CLOSE_RADIUS - 1;
+        int minZ = center.getZ() - CLOSE_RADIUS, maxZ = center.getZ() + CLOSE_RADIUS;
+
+        if (previous == null
+                || Math.abs(previous.getX() - center.getX()) > CLOSE_RADIUS
+                || Math.abs(previous.getY() - center.getY()) > CLOSE_RADIUS
+                || Math.abs(previous.getZ() - center.getZ()) > CLOSE_RADIUS) {
+            // Teleported (or first scan), nothing to reuse
+            for (LongOpenHashSet set : closeBlocks.values()) {
+                set.clear();
+            }
+            scanCloseBox(minX, maxX, minY, maxY, minZ, maxZ);
+            return;
         }
-    }
 
-    private int getChunkDist(ChunkPos pos1, ChunkPos pos2) {
-        return Math.abs(pos1.x - pos2.x) + Math.abs(pos1.z - pos2.z);
+        removeFromCloseBlocks(outsideCloseBox);
+
+        int dx = center.getX() - previous.getX();
+        int dy = center.getY() - previous.getY();
+        int dz = center.getZ() - previous.getZ();
+
+        // The new cube minus the old one, as (up to) three slabs that don't overlap
+        int keptMinX = Math.max(minX, previous.getX() - CLOSE_RADIUS), keptMaxX = Math.min(maxX, previous.getX() + CLOSE_RADIUS);
+        int keptMinY = Math.max(minY, previous.getY() - CLOSE_RADIUS), keptMaxY = Math.min(maxY, previous.getY() + CLOSE_RADIUS - 1);
+        if (dx > 0) scanCloseBox(keptMaxX + 1, maxX, minY, maxY, minZ, maxZ);
+        if (dx < 0) scanCloseBox(minX, keptMinX - 1, minY, maxY, minZ, maxZ);
+        if (dy > 0) scanCloseBox(keptMinX, keptMaxX, keptMaxY + 1, maxY, minZ, maxZ);
+        if (dy < 0) scanCloseBox(keptMinX, keptMaxX, minY, keptMinY - 1, minZ, maxZ);
+        if (dz > 0) scanCloseBox(keptMinX, keptMaxX, keptMinY, keptMaxY, previous.getZ() + CLOSE_RADIUS + 1, maxZ);
+        if (dz < 0) scanCloseBox(keptMinX, keptMaxX, keptMinY, keptMaxY, minZ, previous.getZ() - CLOSE_RADIUS - 1);
     }
 
+    private void scanCloseBox(int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        World world = mod.getWorld();
 
-    //TODO rename
-    private void getFirstFewPositions(HashSet<BlockPos> set, Vec3d playerPos) {
-        Queue<BlockPos> queue = new PriorityQueue<>(Comparator.comparingDouble((pos) -> -BaritoneHelper.calculateGenericHeuristic(playerPos, WorldHelper.toVec3d(pos))));
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                // The index already has everything in this column
+                if (fullyIndexedChunks.contains(ChunkPos.toLong(x >> 4, z >> 4))) continue;
 
-        for (BlockPos pos : set) {
-            queue.add(pos);
+                for (int y = minY; y <= maxY; y++) {
+                    BlockState state = world.getBlockState(closeScanPos.set(x, y, z));
+                    if (state.isAir()) continue;
 
-            if (queue.size() > CACHED_POSITIONS_PER_BLOCK) {
-                queue.poll();
+                    closeBlocks.computeIfAbsent(BlockIndex.getId(state.getBlock()), id -> new LongOpenHashSet()).add(BlockPos.asLong(x, y, z));
+                }
             }
         }
+    }
 
-        set.clear();
+    private boolean isOutsideCloseBox(long packed) {
+        int x = BlockPos.unpackLongX(packed), y = BlockPos.unpackLongY(packed), z = BlockPos.unpackLongZ(packed);
+        return Math.abs(x - closeCenter.getX()) > CLOSE_RADIUS
+                || y < closeCenter.getY() - CLOSE_RADIUS || y > closeCenter.getY() + CLOSE_RADIUS - 1
+                || Math.abs(z - closeCenter.getZ()) > CLOSE_RADIUS;
+    }
 
-        for (int i = 0; i < CACHED_POSITIONS_PER_BLOCK && !queue.isEmpty(); i++) {
-            set.add(queue.poll());
+    private void removeFromCloseBlocks(long packed) {
+        for (LongOpenHashSet set : closeBlocks.values()) {
+            set.remove(packed);
         }
     }
 
-    /**
-     * scans a chunk and adds block positions corresponding to a specific block in a list
-     *
-     * @param chunkPos position of the scanned chunk
-     */
-    private void scanChunk(ChunkPos chunkPos, ChunkPos playerChunkPos) {
-        World world = mod.getWorld();
-        WorldChunk chunk = mod.getWorld().getChunk(chunkPos.x, chunkPos.z);
-        scannedChunks.put(chunkPos, world.getTime());
+    private void removeFromCloseBlocks(LongPredicate shouldRemove) {
+        for (Iterator<LongOpenHashSet> iterator = closeBlocks.values().iterator(); iterator.hasNext(); ) {
+            LongOpenHashSet set = iterator.next();
+            if (set.removeIf(shouldRemove) && set.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
 
-        boolean isPriorityChunk = getChunkDist(chunkPos, playerChunkPos) <= 2;
+    private boolean isPriorityChunk(ChunkPos pos, ChunkPos playerChunkPos) {
+        return getChunkDist(pos, playerChunkPos) <= PRIORITY_CHUNK_DISTANCE;
+    }
 
-        for (int x = chunkPos.getStartX(); x <= chunkPos.getEndX(); x++) {
-            for (int y = world.getBottomY(); y < world.getTopY(); y++) {
-                for (int z = chunkPos.getStartZ(); z <= chunkPos.getEndZ(); z++) {
-                    BlockPos p = new BlockPos(x, y, z);
-                    if (this.isUnreachable(p) || world.isOutOfHeightLimit(p)) continue;
+    private int getChunkDist(ChunkPos pos1, ChunkPos pos2) {
+        return Math.abs(pos1.x - pos2.x) + Math.abs(pos1.z - pos2.z);
+    }
 
-                    BlockState state = chunk.getBlockState(p);
-                    if (state.isAir()) continue;
 
-                    Block block = state.getBlock();
-                    if (scannedBlocks.containsKey(block)) {
-                        HashSet<BlockPos> set = scannedBlocks.get(block);
+    /**
+     * scans a chunk and returns the positions of every block we track in it
+     * <p>
+     * Each section's palette is checked first, so sections that can't contain anything we track are skipped
+     * without touching a single block. Runs on a scanner thread, so it must not touch the index.
+     *
+     * @param chunk      the chunk to scan
+     * @param priority   whether the chunk is close to the player, in which case common blocks are included in full, not just sampled
+     * @param generation stops early once this is outdated, the result would be thrown away anyway
+     */
+    private Int2ObjectOpenHashMap<LongOpenHashSet> scanChunk(WorldChunk chunk, boolean priority, int generation) {
+        Int2ObjectOpenHashMap<LongOpenHashSet> result = new Int2ObjectOpenHashMap<>();
+        // state -> block id, for the states we track in the current section
+        Reference2IntOpenHashMap<BlockState> tracked = new Reference2IntOpenHashMap<>();
+        tracked.defaultReturnValue(-1);
+        // same, for the common states we only sample
+        Reference2IntOpenHashMap<BlockState> common = new Reference2IntOpenHashMap<>();
+        common.defaultReturnValue(-1);
+        // common state -> how many spots of it we kept in the current section
+        Reference2IntOpenHashMap<BlockState> sampled = new Reference2IntOpenHashMap<>();
+
+        int startX = chunk.getPos().getStartX();
+        int startZ = chunk.getPos().getStartZ();
+        ChunkSection[] sections = chunk.getSectionArray();
+        for (int i = 0; i < sections.length; i++) {
+            if (scanGeneration.get() != generation) break;
+
+            ChunkSection section = sections[i];
+            if (section == null || section.isEmpty()) continue;
+
+            //#if MC >= 11701
+            PalettedContainer<BlockState> states = section.getBlockStateContainer();
+            int bottomY = chunk.sectionIndexToCoord(i) << 4;
+            //#else
+            //$$ PalettedContainer<BlockState> states = section.getContainer();
+            //$$ int bottomY = section.getYOffset();
+            //#endif
+
+            // count() still reads every block in the section, but as a tight loop over the packed storage with no lookups.
+            // Knowing which states are there (and how many) lets us skip most sections and only sample the common blocks.
+            tracked.clear();
+            common.clear();
+            states.count((state, count) -> {
+                if (state.isAir()) return;
+                if (priority || count <= COMMON_BLOCK_SECTION_COUNT) {
+                    tracked.put(state, BlockIndex.getId(state.getBlock()));
+                } else {
+                    common.put(state, BlockIndex.getId(state.getBlock()));
+                }
+            });
 
-                        if ((set.size() > CACHED_POSITIONS_PER_BLOCK * 750 && !isPriorityChunk)) continue;
+            if (!tracked.isEmpty()) {
+                for (int y = 0; y < 16; y++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int x = 0; x < 16; x++) {
+                            int id = tracked.getInt(states.get(x, y, z));
+                            if (id == -1) continue;
 
-                        set.add(p);
-                    } else {
-                        HashSet<BlockPos> set = new HashSet<>();
-                        set.add(p);
-                        scannedBlocks.put(block, set);
+                            result.computeIfAbsent(id, b -> new LongOpenHashSet()).add(BlockPos.asLong(startX + x, bottomY + y, startZ + z));
+                        }
                     }
                 }
             }
+
+            // Common blocks fill at least a quarter of the section, so a sparse walk is enough to find a few spots of each
+            if (!common.isEmpty()) {
+                sampled.clear();
+                for (int index = 0; index < 16 * 16 * 16; index += COMMON_BLOCK_SAMPLE_STEP) {
+                    int x = index & 15, z = (index >> 4) & 15, y = index >> 8;
+                    BlockState state = states.get(x, y, z);
+                    int id = common.getInt(state);
+                    if (id == -1 || sampled.addTo(state, 1) >= COMMON_BLOCK_SAMPLES) continue;
+
+                    result.computeIfAbsent(id, b -> new LongOpenHashSet()).add(BlockPos.asLong(startX + x, bottomY + y, startZ + z));
+                }
+            }
         }
+        return result;
+    }
+
+    private record InFlightScan(Future<?> future, List<BlockPos> changedWhileScanning) {
+    }
+
+    // blocks is null if the scan failed
+    private record ChunkScan(ChunkPos pos, int generation, boolean priority, Int2ObjectOpenHashMap<LongOpenHashSet> blocks) {
     }
 
-    private record Node(ChunkPos pos, int distance) {
+    private record FinishedScan(ChunkScan scan, FinishedScan next) {
     }
 
 
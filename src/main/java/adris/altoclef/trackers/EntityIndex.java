@@ -0,0 +1,373 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.util.helpers.BaritoneHelper;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.ItemEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Entities in the world, bucketed per type (and per item for dropped items) and per chunk section.
+ * <p>
+ * Filled from entity add/remove events instead of being rebuilt every tick.
+ * Entities that crossed a section border get moved, and the ones that died or got removed without telling us get dropped:
+ * every tick for the ones near the player ({@link #refreshNear}), a slice at a time for everything else ({@link #refresh()}).
+ * So far away entries can be a few ticks behind, queries still check the real position and whether it's alive.
+ * <p>
+ * Every list uses swap-removal (each entry remembers where it sits), so adding and removing are O(1)
+ * even with thousands of dropped items lying around.
+ * <p>
+ * Not thread safe, only use it from one thread.
+ */
+@SuppressWarnings("rawtypes")
+public class EntityIndex {
+
+    // Where an entry sits in each list it's part of
+    private static final int SLOT_TYPE = 0;
+    private static final int SLOT_TYPE_SECTION = 1;
+    private static final int SLOT_ITEM = 2;
+    private static final int SLOT_ITEM_SECTION = 3;
+    private static final int SLOT_SECTION = 4;
+    private static final int SLOT_SWEEP = 5;
+
+    // Every entry gets looked at at least once every this many ticks
+    private static final int SWEEP_TICKS = 5;
+    // Also refresh entries filed this far outside the near radius, in case they're on their way in
+    private static final double NEAR_MARGIN = 16;
+
+    // entity id -> entry
+    private final Int2ObjectOpenHashMap<Entry> entries = new Int2ObjectOpenHashMap<>();
+    private final HashMap<Class, Bucket> byType = new HashMap<>();
+    // Only for item entities, keyed by the item they hold
+    private final HashMap<Item, Bucket> byItem = new HashMap<>();
+    // section -> every entity in it, whatever the type
+    private final Long2ObjectOpenHashMap<ArrayList<Entry>> sections = new Long2ObjectOpenHashMap<>();
+    // Every entry again, in no particular order, for the sliced sweep
+    private final ArrayList<Entry> sweep = new ArrayList<>();
+    private int sweepCursor = 0;
+
+    // Reused by refreshNear
+    private final ArrayList<ArrayList<Entry>> nearSections = new ArrayList<>();
+    private final ArrayList<Entry> nearEntries = new ArrayList<>();
+
+    private static long getSection(Entity entity) {
+        return ChunkSectionPos.asLong(entity.getBlockX() >> 4, entity.getBlockY() >> 4, entity.getBlockZ() >> 4);
+    }
+
+    private static Item getItem(Entity entity) {
+        if (!(entity instanceof ItemEntity itemEntity)) return null;
+        Item item = itemEntity.getStack().getItem();
+        // The stack is synced after the entity spawns, it's empty until then
+        return item == Items.AIR ? null : item;
+    }
+
+    public void add(Entity entity, Class type) {
+        remove(entity.getId());
+
+        Entry entry = new Entry(entity, type, getSection(entity), getItem(entity));
+        entries.put(entity.getId(), entry);
+        insert(sweep, entry, SLOT_SWEEP);
+        link(entry);
+    }
+
+    public void remove(int entityId) {
+        Entry entry = entries.remove(entityId);
+        if (entry != null) {
+            removeAt(sweep, entry, SLOT_SWEEP);
+            unlink(entry);
+        }
+    }
+
+    public boolean contains(Entity entity) {
+        Entry entry = entries.get(entity.getId());
+        return entry != null && entry.entity == entity;
+    }
+
+    public void clear() {
+        entries.clear();
+        byType.clear();
+        byItem.clear();
+        sections.clear();
+        sweep.clear();
+        sweepCursor = 0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Catches up on a slice of all entries, so each one is looked at every {@link #SWEEP_TICKS} calls.
+     * Call once a tick.
+     */
+    public void refresh() {
+        int count = (sweep.size() + SWEEP_TICKS - 1) / SWEEP_TICKS;
+        for (int i = 0; i < count && !sweep.isEmpty(); i++) {
+            if (sweepCursor >= sweep.size()) sweepCursor = 0;
+            // A dropped entry gets the last one swapped into its place, look at that next
+            if (refresh(sweep.get(sweepCursor))) {
+                sweepCursor++;
+            }
+        }
+    }
+
+    /**
+     * Catches up on every entry filed around `center`, so {@link #collectNear} with the same radius is up to date.
+     */
+    public void refreshNear(Vec3d center, double radius) {
+        collectSectionsNear(center, radius + NEAR_MARGIN, nearSections);
+        // Copied out first, refreshing moves entries between the section lists
+        for (ArrayList<Entry> section : nearSections) {
+            nearEntries.addAll(section);
+        }
+        nearSections.clear();
+        for (Entry entry : nearEntries) {
+            refresh(entry);
+        }
+        nearEntries.clear();
+    }
+
+    /**
+     * Moved entities get re-filed under their new section, dropped items get filed under the item they (now) hold
+     * and removed or dead entities are dropped.
+     *
+     * @return false if the entry got dropped
+     */
+    private boolean refresh(Entry entry) {
+        // isRemoved() doesn't exist before 1.17, and dead entities never come back anyway
+        if (!entry.entity.isAlive()) {
+            remove(entry.entity.getId());
+            return false;
+        }
+
+        long section = getSection(entry.entity);
+        Item item = entry.type == ItemEntity.class ? getItem(entry.entity) : null;
+        if (section != entry.section || item != entry.item) {
+            unlink(entry);
+            entry.section = section;
+            entry.item = item;
+            link(entry);
+        }
+        return true;
+    }
+
+    List<Entry> getOfType(Class type) {
+        Bucket bucket = byType.get(type);
+        return bucket == null ? Collections.emptyList() : bucket.all;
+    }
+
+    List<Entry> getWithItem(Item item) {
+        Bucket bucket = byItem.get(item);
+        return bucket == null ? Collections.emptyList() : bucket.all;
+    }
+
+    /**
+     * Runs a query, filling its results.
+     * <p>
+     * Sections are visited closest first, and the search stops as soon as no remaining section could hold
+     * anything that beats the results we already have.
+     *
+     * @param accept Extra test on top of the query's own filter, only run for entities that would make it into the results
+     */
+    public void find(EntityQuery query, Predicate<Entity> accept) {
+        query.clearResults();
+        EntityQuery.SectionOrder order = query.sections;
+        order.clear();
+
+        Vec3d from = query.origin;
+        double maxDistanceSq = query.maxDistance * query.maxDistance;
+        for (Class type : query.types) {
+            addSections(query, byType.get(type));
+        }
+        for (Item item : query.items) {
+            addSections(query, byItem.get(item));
+        }
+        it.unimi.dsi.fastutil.Arrays.quickSort(0, order.size(), order, order);
+
+        for (int i = 0; i < order.size(); i++) {
+            if (query.isFull() && order.bounds[i] >= query.getWorstCost()) break;
+
+            List<Entry> section = order.lists.get(i);
+            for (int j = 0; j < section.size(); j++) {
+                Entity entity = section.get(j).entity;
+                double distanceSq = entity.squaredDistanceTo(from);
+                if (distanceSq > maxDistanceSq) continue;
+
+                double cost = query.byPathCost
+                        ? BaritoneHelper.calculateGenericHeuristic(from.x, from.y, from.z, entity.getX(), entity.getY(), entity.getZ())
+                        : distanceSq;
+                if (query.isFull() && cost >= query.getWorstCost()) continue;
+                if (!entity.isAlive()) continue;
+                if (!query.items.isEmpty() && !query.items.contains(((ItemEntity) entity).getStack().getItem())) continue;
+                if (!accept.test(entity)) continue;
+                if (query.filter != null && !query.filter.test(entity)) continue;
+
+                query.offer(entity, cost);
+            }
+        }
+        order.clear();
+        query.sortResults();
+    }
+
+    private static void addSections(EntityQuery query, Bucket bucket) {
+        if (bucket == null) return;
+
+        Vec3d from = query.origin;
+        double maxDistanceSq = query.maxDistance * query.maxDistance;
+        for (Long2ObjectMap.Entry<ArrayList<Entry>> section : bucket.sections.long2ObjectEntrySet()) {
+            long key = section.getLongKey();
+            // Distance to the closest point this section could hold, a bit loose since entities can stick out of their section
+            double dx = axisDistance(from.x, ChunkSectionPos.unpackX(key));
+            double dy = axisDistance(from.y, ChunkSectionPos.unpackY(key));
+            double dz = axisDistance(from.z, ChunkSectionPos.unpackZ(key));
+            double distanceSq = dx * dx + dy * dy + dz * dz;
+            if (distanceSq > maxDistanceSq) continue;
+
+            // Same y for the path heuristic, going up and down cost differently. The horizontal part never overestimates.
+            double bound = query.byPathCost
+                    ? BaritoneHelper.calculateGenericHeuristic(0, 0, 0, dx, 0, dz)
+                    : distanceSq;
+            query.sections.add(section.getValue(), bound);
+        }
+    }
+
+    private static double axisDistance(double coord, int sectionCoord) {
+        int start = sectionCoord << 4;
+        if (coord < start) return Math.max(0, start - coord - 1);
+        if (coord > start + 16) return Math.max(0, coord - (start + 16) - 1);
+        return 0;
+    }
+
+    /**
+     * Adds every entity in the sections that touch the cube around `center`.
+     * Callers still need to check the actual distance.
+     */
+    public void collectNear(Vec3d center, double radius, List<Entity> result) {
+        collectSectionsNear(center, radius, nearSections);
+        for (ArrayList<Entry> section : nearSections) {
+            for (int i = 0; i < section.size(); i++) {
+                result.add(section.get(i).entity);
+            }
+        }
+        nearSections.clear();
+    }
+
+    private void collectSectionsNear(Vec3d center, double radius, List<ArrayList<Entry>> result) {
+        int minX = MathHelper.floor(center.x - radius) >> 4, maxX = MathHelper.floor(center.x + radius) >> 4;
+        int minY = MathHelper.floor(center.y - radius) >> 4, maxY = MathHelper.floor(center.y + radius) >> 4;
+        int minZ = MathHelper.floor(center.z - radius) >> 4, maxZ = MathHelper.floor(center.z + radius) >> 4;
+
+        long cubeSections = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        if (cubeSections > sections.size()) {
+            // Fewer occupied sections than sections in the cube, look at those instead
+            for (Long2ObjectMap.Entry<ArrayList<Entry>> section : sections.long2ObjectEntrySet()) {
+                long key = section.getLongKey();
+                int x = ChunkSectionPos.unpackX(key), y = ChunkSectionPos.unpackY(key), z = ChunkSectionPos.unpackZ(key);
+                if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) continue;
+                result.add(section.getValue());
+            }
+            return;
+        }
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = minY; y <= maxY; y++) {
+                    ArrayList<Entry> section = sections.get(ChunkSectionPos.asLong(x, y, z));
+                    if (section != null) {
+                        result.add(section);
+                    }
+                }
+            }
+        }
+    }
+
+    private void link(Entry entry) {
+        byType.computeIfAbsent(entry.type, type -> new Bucket()).add(entry, SLOT_TYPE, SLOT_TYPE_SECTION);
+        if (entry.item != null) {
+            byItem.computeIfAbsent(entry.item, item -> new Bucket()).add(entry, SLOT_ITEM, SLOT_ITEM_SECTION);
+        }
+        insert(sections.computeIfAbsent(entry.section, section -> new ArrayList<>()), entry, SLOT_SECTION);
+    }
+
+    private void unlink(Entry entry) {
+        Bucket typeBucket = byType.get(entry.type);
+        if (typeBucket.remove(entry, SLOT_TYPE, SLOT_TYPE_SECTION)) {
+            byType.remove(entry.type);
+        }
+        if (entry.item != null) {
+            Bucket itemBucket = byItem.get(entry.item);
+            if (itemBucket.remove(entry, SLOT_ITEM, SLOT_ITEM_SECTION)) {
+                byItem.remove(entry.item);
+            }
+        }
+        ArrayList<Entry> section = sections.get(entry.section);
+        if (removeAt(section, entry, SLOT_SECTION)) {
+            sections.remove(entry.section);
+        }
+    }
+
+    private static void insert(ArrayList<Entry> list, Entry entry, int slot) {
+        entry.slots[slot] = list.size();
+        list.add(entry);
+    }
+
+    /**
+     * @return whether the list is empty now
+     */
+    private static boolean removeAt(ArrayList<Entry> list, Entry entry, int slot) {
+        Entry last = list.remove(list.size() - 1);
+        if (last != entry) {
+            int index = entry.slots[slot];
+            list.set(index, last);
+            last.slots[slot] = index;
+        }
+        return list.isEmpty();
+    }
+
+    static final class Entry {
+        final Entity entity;
+        final Class type;
+        final int[] slots = new int[6];
+        long section;
+        Item item;
+
+        private Entry(Entity entity, Class type, long section, Item item) {
+            this.entity = entity;
+            this.type = type;
+            this.section = section;
+            this.item = item;
+        }
+    }
+
+    private static final class Bucket {
+        final ArrayList<Entry> all = new ArrayList<>();
+        final Long2ObjectOpenHashMap<ArrayList<Entry>> sections = new Long2ObjectOpenHashMap<>();
+
+        void add(Entry entry, int slot, int sectionSlot) {
+            insert(all, entry, slot);
+            insert(sections.computeIfAbsent(entry.section, section -> new ArrayList<>()), entry, sectionSlot);
+        }
+
+        /**
+         * @return whether the bucket is empty now
+         */
+        boolean remove(Entry entry, int slot, int sectionSlot) {
+            if (removeAt(sections.get(entry.section), entry, sectionSlot)) {
+                sections.remove(entry.section);
+            }
+            return removeAt(all, entry, slot);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package adris.altoclef.trackers;
+
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import net.minecraft.entity.Entity;
+import net.minecraft.item.Item;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * A reusable "what's closest to me" question for {@link EntityTracker#find(EntityQuery)}.
+ * <p>
+ * Set up what you're looking for once (types or dropped items, range, how many), then only update the origin
+ * before each search. The query keeps its results and scratch space around, so asking every tick doesn't allocate.
+ * <p>
+ * Example: {@code new EntityQuery().ofTypes(ZombieEntity.class).within(10).limit(3)}
+ */
+@SuppressWarnings("rawtypes")
+public class EntityQuery {
+
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    // What to look for
+    final ArrayList<Class> types = new ArrayList<>();
+    final ArrayList<Item> items = new ArrayList<>();
+    Vec3d origin = Vec3d.ZERO;
+    double maxDistance = Double.POSITIVE_INFINITY;
+    int limit = 1;
+    boolean byPathCost = false;
+    boolean includeUnreachable = false;
+    Predicate<Entity> filter = null;
+
+    // Results, closest first once a search is done. While searching they're a max-heap on cost, so the worst is
+    // always at 0 and each offer is O(log limit) instead of shifting a sorted list around.
+    final ArrayList<Entity> results = new ArrayList<>();
+    final DoubleArrayList resultCosts = new DoubleArrayList();
+    private final IntComparator resultOrder = (a, b) -> Double.compare(resultCosts.getDouble(a), resultCosts.getDouble(b));
+    private final Swapper resultSwapper = this::swapResults;
+
+    // Section scratch space, sorted by how close each section could possibly be
+    final SectionOrder sections = new SectionOrder();
+
+    /**
+     * Back to a blank query (nothing to look for, no range, one result).
+     */
+    public EntityQuery reset() {
+        types.clear();
+        items.clear();
+        origin = Vec3d.ZERO;
+        maxDistance = Double.POSITIVE_INFINITY;
+        limit = 1;
+        byPathCost = false;
+        includeUnreachable = false;
+        filter = null;
+        clearResults();
+        return this;
+    }
+
+    /**
+     * Look for entities of these (squashed) types. Replaces any types or items set before.
+     */
+    public EntityQuery ofTypes(Class... types) {
+        this.types.clear();
+        this.items.clear();
+        for (Class type : types) {
+            // Asking twice would return the same entities twice
+            if (!this.types.contains(type)) {
+                this.types.add(type);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Look for dropped items holding any of these items. Replaces any types or items set before.
+     */
+    public EntityQuery ofItems(Item... items) {
+        this.types.clear();
+        this.items.clear();
+        return addItems(items);
+    }
+
+    public EntityQuery addItems(Item... items) {
+        for (Item item : items) {
+            if (!this.items.contains(item)) {
+                this.items.add(item);
+            }
+        }
+        return this;
+    }
+
+    public EntityQuery from(Vec3d origin) {
+        this.origin = origin;
+        return this;
+    }
+
+    /**
+     * Ignore anything further away than this (straight line distance).
+     */
+    public EntityQuery within(double maxDistance) {
+        this.maxDistance = maxDistance;
+        return this;
+    }
+
+    /**
+     * How many entities to return at most. Defaults to 1.
+     */
+    public EntityQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Rank results by baritone's generic path heuristic instead of straight line distance.
+     */
+    public EntityQuery byPathCost() {
+        this.byPathCost = true;
+        return this;
+    }
+
+    /**
+     * Also return entities we gave up on reaching. Useful for threats, which can still reach us.
+     */
+    public EntityQuery includeUnreachable() {
+        this.includeUnreachable = true;
+        return this;
+    }
+
+    /**
+     * Only accept entities that pass this test. Only runs for entities that would make it into the results.
+     */
+    public EntityQuery filter(Predicate<Entity> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Results of the last search, closest first.
+     */
+    public List<Entity> getResults() {
+        return results;
+    }
+
+    public Optional<Entity> getClosest() {
+        return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
+    }
+
+    boolean isFull() {
+        return results.size() >= limit;
+    }
+
+    // Only valid while searching
+    double getWorstCost() {
+        return resultCosts.getDouble(0);
+    }
+
+    void offer(Entity entity, double cost) {
+        if (isFull()) {
+            if (cost >= getWorstCost()) return;
+            // Replace the worst one
+            results.set(0, entity);
+            resultCosts.set(0, cost);
+            siftDown(0);
+            return;
+        }
+
+        results.add(entity);
+        resultCosts.add(cost);
+        siftUp(results.size() - 1);
+    }
+
+    /**
+     * Puts the results in order, closest first. Called once the search is done.
+     */
+    void sortResults() {
+        it.unimi.dsi.fastutil.Arrays.quickSort(0, results.size(), resultOrder, resultSwapper);
+    }
+
+    void clearResults() {
+        results.clear();
+        resultCosts.clear();
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (resultCosts.getDouble(parent) >= resultCosts.getDouble(index)) return;
+            swapResults(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int size = results.size();
+        while (true) {
+            int worst = index;
+            int left = index * 2 + 1, right = left + 1;
+            if (left < size && resultCosts.getDouble(left) > resultCosts.getDouble(worst)) worst = left;
+            if (right < size && resultCosts.getDouble(right) > resultCosts.getDouble(worst)) worst = right;
+            if (worst == index) return;
+            swapResults(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swapResults(int a, int b) {
+        Collections.swap(results, a, b);
+        double cost = resultCosts.getDouble(a);
+        resultCosts.set(a, resultCosts.getDouble(b));
+        resultCosts.set(b, cost);
+    }
+
+    static final class SectionOrder implements IntComparator, Swapper {
+        final ArrayList<List<EntityIndex.Entry>> lists = new ArrayList<>();
+        double[] bounds = new double[16];
+
+        void clear() {
+            lists.clear();
+        }
+
+        int size() {
+            return lists.size();
+        }
+
+        void add(List<EntityIndex.Entry> list, double bound) {
+            if (lists.size() == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[lists.size()] = bound;
+            lists.add(list);
+        }
+
+        @Override
+        public int compare(int a, int b) {
+            return Double.compare(bounds[a], bounds[b]);
+        }
+
+        @Override
+        public void swap(int a, int b) {
+            double bound = bounds[a];
+            bounds[a] = bounds[b];
+            bounds[b] = bound;
+            Collections.swap(lists, a, b);
+        }
+    }
+}
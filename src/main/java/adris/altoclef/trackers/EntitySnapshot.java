@@ -0,0 +1,250 @@
+package adris.altoclef.trackers;
+
+import adris.altoclef.util.baritone.CachedProjectile;
+import adris.altoclef.util.helpers.ProjectileSimulator;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.player.PlayerEntity;
+
+import java.util.*;
+
+/**
+ * What the entity tracker saw in one tick, frozen. See {@link EntityTracker#getSnapshot()}.
+ * <p>
+ * Never changes once built (the next tick builds a new one), so any thread can read it without locking
+ * and always gets a consistent view, even if the tracker moves on halfway through.
+ * <p>
+ * Entities close enough to matter are kept as flat arrays: index i is the same entity in all of them.
+ * Positions, velocities and types are copies, safe to read from anywhere.
+ * The entities themselves (and the lists of them) are live game objects, only poke at those from the client thread.
+ */
+public final class EntitySnapshot {
+
+    public static final EntitySnapshot EMPTY = new Builder(0).build();
+
+    // What an entity counted as this tick, see getFlags
+    public static final int CLOSE = 1;
+    public static final int HOSTILE = 1 << 1;
+    public static final int PROJECTILE = 1 << 2;
+
+    // How far ahead getProjectileSimulation looks. Slow thrown things (potions) take about this long to cross our range.
+    private static final int PROJECTILE_SIMULATION_TICKS = 40;
+
+    private final int size;
+    private final int[] ids;
+    private final double[] x, y, z;
+    private final double[] velocityX, velocityY, velocityZ;
+    private final Class<?>[] types;
+    private final int[] flags;
+    private final Entity[] entities;
+
+    private final List<Entity> closeEntities;
+    private final List<LivingEntity> hostiles;
+    private final List<CachedProjectile> projectiles;
+    private final Map<String, PlayerEntity> players;
+
+    // Made the first time someone asks, the worst a race does is simulate twice
+    private volatile ProjectileSimulator projectileSimulation;
+
+    private EntitySnapshot(Builder builder) {
+        size = builder.size;
+        ids = Arrays.copyOf(builder.ids, size);
+        x = Arrays.copyOf(builder.x, size);
+        y = Arrays.copyOf(builder.y, size);
+        z = Arrays.copyOf(builder.z, size);
+        velocityX = Arrays.copyOf(builder.velocityX, size);
+        velocityY = Arrays.copyOf(builder.velocityY, size);
+        velocityZ = Arrays.copyOf(builder.velocityZ, size);
+        types = Arrays.copyOf(builder.types, size);
+        flags = Arrays.copyOf(builder.flags, size);
+        entities = Arrays.copyOf(builder.entities, size);
+
+        closeEntities = Collections.unmodifiableList(builder.closeEntities);
+        hostiles = Collections.unmodifiableList(builder.hostiles);
+        projectiles = Collections.unmodifiableList(builder.projectiles);
+        players = Collections.unmodifiableMap(builder.players);
+    }
+
+    /**
+     * How many entities are in the flat arrays.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getZ(int i) {
+        return z[i];
+    }
+
+    public double getVelocityX(int i) {
+        return velocityX[i];
+    }
+
+    public double getVelocityY(int i) {
+        return velocityY[i];
+    }
+
+    public double getVelocityZ(int i) {
+        return velocityZ[i];
+    }
+
+    public Class<?> getType(int i) {
+        return types[i];
+    }
+
+    /**
+     * Some combination of {@link #CLOSE}, {@link #HOSTILE} and {@link #PROJECTILE}.
+     */
+    public int getFlags(int i) {
+        return flags[i];
+    }
+
+    public boolean hasFlag(int i, int flag) {
+        return (flags[i] & flag) != 0;
+    }
+
+    /**
+     * The live entity, client thread only.
+     */
+    public Entity getEntity(int i) {
+        return entities[i];
+    }
+
+    public double squaredDistanceTo(int i, double x, double y, double z) {
+        double dx = this.x[i] - x, dy = this.y[i] - y, dz = this.z[i] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Entities within our interact range.
+     */
+    public List<Entity> getCloseEntities() {
+        return closeEntities;
+    }
+
+    public List<LivingEntity> getHostiles() {
+        return hostiles;
+    }
+
+    /**
+     * Projectiles that could hit us, already copied out so any thread can use them.
+     */
+    public List<CachedProjectile> getProjectiles() {
+        return projectiles;
+    }
+
+    /**
+     * Where the projectiles from {@link #getProjectiles()} are headed, in the same order.
+     */
+    public ProjectileSimulator getProjectileSimulation() {
+        ProjectileSimulator simulation = projectileSimulation;
+        if (simulation == null) {
+            simulation = new ProjectileSimulator(projectiles, PROJECTILE_SIMULATION_TICKS);
+            projectileSimulation = simulation;
+        }
+        return simulation;
+    }
+
+    /**
+     * Loaded players by username.
+     */
+    public Map<String, PlayerEntity> getPlayers() {
+        return players;
+    }
+
+    static final class Builder {
+        private int size;
+        private int[] ids;
+        private double[] x, y, z;
+        private double[] velocityX, velocityY, velocityZ;
+        private Class<?>[] types;
+        private int[] flags;
+        private Entity[] entities;
+
+        private final List<Entity> closeEntities = new ArrayList<>();
+        private final List<LivingEntity> hostiles = new ArrayList<>();
+        private final List<CachedProjectile> projectiles = new ArrayList<>();
+        private final HashMap<String, PlayerEntity> players = new HashMap<>();
+
+        Builder(int expectedSize) {
+            allocate(expectedSize);
+        }
+
+        private void allocate(int capacity) {
+            ids = new int[capacity];
+            x = new double[capacity];
+            y = new double[capacity];
+            z = new double[capacity];
+            velocityX = new double[capacity];
+            velocityY = new double[capacity];
+            velocityZ = new double[capacity];
+            types = new Class<?>[capacity];
+            flags = new int[capacity];
+            entities = new Entity[capacity];
+        }
+
+        private void grow() {
+            int capacity = Math.max(16, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+            velocityX = Arrays.copyOf(velocityX, capacity);
+            velocityY = Arrays.copyOf(velocityY, capacity);
+            velocityZ = Arrays.copyOf(velocityZ, capacity);
+            types = Arrays.copyOf(types, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            entities = Arrays.copyOf(entities, capacity);
+        }
+
+        /**
+         * Adds the entity to the flat arrays, plus the close/hostile lists if flagged as such.
+         * Projectiles go in with {@link #addProjectile(CachedProjectile)} on top of this.
+         */
+        void add(Entity entity, int entityFlags) {
+            if (size == ids.length) grow();
+            ids[size] = entity.getId();
+            x[size] = entity.getX();
+            y[size] = entity.getY();
+            z[size] = entity.getZ();
+            velocityX[size] = entity.getVelocity().x;
+            velocityY[size] = entity.getVelocity().y;
+            velocityZ[size] = entity.getVelocity().z;
+            types[size] = entity.getClass();
+            flags[size] = entityFlags;
+            entities[size] = entity;
+            size++;
+
+            if ((entityFlags & CLOSE) != 0) {
+                closeEntities.add(entity);
+            }
+            if ((entityFlags & HOSTILE) != 0) {
+                hostiles.add((LivingEntity) entity);
+            }
+        }
+
+        void addProjectile(CachedProjectile projectile) {
+            projectiles.add(projectile);
+        }
+
+        void addPlayer(String name, PlayerEntity player) {
+            players.put(name, player);
+        }
+
+        EntitySnapshot build() {
+            return new EntitySnapshot(this);
+        }
+    }
+}
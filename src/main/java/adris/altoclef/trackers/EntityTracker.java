@@ -2,16 +2,19 @@ package adris.altoclef.trackers;
 
 import adris.altoclef.Debug;
 import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.EntityAddedEvent;
+import adris.altoclef.eventbus.events.EntityRemovedEvent;
 import adris.altoclef.eventbus.events.PlayerCollidedWithEntityEvent;
 import adris.altoclef.mixins.PersistentProjectileEntityAccessor;
 import adris.altoclef.trackers.blacklisting.EntityLocateBlacklist;
 import adris.altoclef.util.ItemTarget;
 import adris.altoclef.util.baritone.CachedProjectile;
-import adris.altoclef.util.helpers.BaritoneHelper;
 import adris.altoclef.util.helpers.EntityHelper;
 import adris.altoclef.util.helpers.ProjectileHelper;
 import adris.altoclef.util.helpers.WorldHelper;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.ItemEntity;
 import net.minecraft.entity.LivingEntity;
@@ -30,22 +33,40 @@ import java.util.function.Predicate;
 
 /**
  * Keeps track of entities so we can search/grab them.
+ * <p>
+ * Entities are indexed as they get added to/removed from the world, every tick only updates
+ * what actually changes per tick (hostiles, projectiles, what's in reach) for entities close enough to matter.
+ * <p>
+ * The per-tick part is published as an {@link EntitySnapshot}, which any thread can read.
+ * Everything else (queries, the index) is client thread only.
  */
 @SuppressWarnings("rawtypes")
 public class EntityTracker extends Tracker {
 
-    private final HashMap<Item, List<ItemEntity>> itemDropLocations = new HashMap<>();
-    private final HashMap<Class, List<Entity>> entityMap = new HashMap<>();
+    // Mobs further away than this aren't considered a threat
+    private static final double HOSTILE_RANGE = 26;
+    // Projectiles further away than this can't reach us any time soon
+    private static final double PROJECTILE_RANGE = 64;
 
-    private final List<Entity> closeEntities = new ArrayList<>();
-    private final List<LivingEntity> hostiles = new ArrayList<>();
+    private final EntityIndex index = new EntityIndex();
+    // World the index was filled from
+    private ClientWorld indexedWorld = null;
+    // Reused every tick
+    private final List<Entity> nearbyEntities = new ArrayList<>();
 
-    private final List<CachedProjectile> projectiles = new ArrayList<>();
+    // Replaced whole every update, so whoever got the last one can keep reading it
+    private volatile EntitySnapshot snapshot = EntitySnapshot.EMPTY;
 
-    private final HashMap<String, PlayerEntity> playerMap = new HashMap<>();
     private final HashMap<String, Vec3d> playerLastCoordinates = new HashMap<>();
 
     private final EntityLocateBlacklist entityBlacklist = new EntityLocateBlacklist();
+    private final Predicate<Entity> isReachable = entity -> !entityBlacklist.unreachable(entity);
+    private final Predicate<Entity> isPickupable = entity -> !entityBlacklist.unreachable(entity) && isGrounded((ItemEntity) entity);
+    private final Predicate<Entity> isGroundedDrop = entity -> isGrounded((ItemEntity) entity);
+
+    // Backs the one-off lookups below, so they don't need a query of their own
+    private final EntityQuery sharedQuery = new EntityQuery();
+    private boolean sharedQueryInUse = false;
 
     private final HashMap<PlayerEntity, List<Entity>> entitiesCollidingWithPlayerAccumulator = new HashMap<>();
     private final HashMap<PlayerEntity, HashSet<Entity>> entitiesCollidingWithPlayer = new HashMap<>();
@@ -55,6 +76,14 @@ public class EntityTracker extends Tracker {
 
         // Listen for player collisions
         EventBus.subscribe(PlayerCollidedWithEntityEvent.class, evt -> registerPlayerCollision(evt.player, evt.other));
+
+        // Keep the index up to date as entities come and go
+        EventBus.subscribe(EntityAddedEvent.class, evt -> onEntityAdded(evt.entity));
+        EventBus.subscribe(EntityRemovedEvent.class, evt -> {
+            if (evt.entity.getWorld() == indexedWorld) {
+                index.remove(evt.entity.getId());
+            }
+        });
     }
 
     /**
@@ -72,6 +101,33 @@ public class EntityTracker extends Tracker {
         return type;
     }
 
+    /**
+     * Whether a dropped item is somewhere we can grab it. Items still flying through the air don't count.
+     */
+    private static boolean isGrounded(ItemEntity entity) {
+        return entity.isOnGround() || entity.isTouchingWater() || WorldHelper.isSolidBlock(entity.getBlockPos().down(2)) || WorldHelper.isSolidBlock(entity.getBlockPos().down(3));
+    }
+
+    private void onEntityAdded(Entity entity) {
+        // Don't catalogue our own player.
+        if (entity instanceof ClientPlayerEntity) return;
+
+        if (entity.getWorld() != indexedWorld) {
+            // A new world, the next update fills the index from scratch
+            return;
+        }
+        index.add(entity, squashType(entity.getClass()));
+    }
+
+    private void reindex(ClientWorld world) {
+        index.clear();
+        indexedWorld = world;
+        for (Entity entity : world.getEntities()) {
+            if (entity instanceof ClientPlayerEntity) continue;
+            index.add(entity, squashType(entity.getClass()));
+        }
+    }
+
     private void registerPlayerCollision(PlayerEntity player, Entity entity) {
         if (!entitiesCollidingWithPlayerAccumulator.containsKey(player)) {
             entitiesCollidingWithPlayerAccumulator.put(player, new ArrayList<>());
@@ -104,43 +160,40 @@ public class EntityTracker extends Tracker {
     }
 
     public Optional<ItemEntity> getClosestItemDrop(Vec3d position, Predicate<ItemEntity> acceptPredicate, Item... items) {
-        ensureUpdated();
-        ItemTarget[] tempTargetList = new ItemTarget[items.length];
-        for (int i = 0; i < items.length; ++i) {
-            tempTargetList[i] = new ItemTarget(items[i], 9999999);
+        EntityQuery query = borrowQuery();
+        try {
+            query.ofItems(items).byPathCost().from(position).filter(entity -> acceptPredicate.test((ItemEntity) entity));
+            return getClosestItemDrop(query);
+        } finally {
+            releaseQuery(query);
         }
-        return getClosestItemDrop(position, acceptPredicate, tempTargetList);
     }
 
     public Optional<ItemEntity> getClosestItemDrop(Vec3d position, Predicate<ItemEntity> acceptPredicate, ItemTarget... targets) {
-        ensureUpdated();
         if (targets.length == 0) {
             Debug.logError("You asked for the drop position of zero items... Most likely a typo.");
             return Optional.empty();
         }
-        if (!itemDropped(targets)) {
-            return Optional.empty();
-        }
 
-        ItemEntity closestEntity = null;
-        float minCost = Float.POSITIVE_INFINITY;
-        for (ItemTarget target : targets) {
-            for (Item item : target.getMatches()) {
-                if (!itemDropped(item)) continue;
-                for (ItemEntity entity : itemDropLocations.get(item)) {
-                    if (entityBlacklist.unreachable(entity)) continue;
-                    if (!entity.getStack().getItem().equals(item)) continue;
-                    if (!acceptPredicate.test(entity)) continue;
-
-                    float cost = (float) BaritoneHelper.calculateGenericHeuristic(position, entity.getPos());
-                    if (cost < minCost) {
-                        minCost = cost;
-                        closestEntity = entity;
-                    }
-                }
+        EntityQuery query = borrowQuery();
+        try {
+            for (ItemTarget target : targets) {
+                query.addItems(target.getMatches());
             }
+            query.byPathCost().from(position).filter(entity -> acceptPredicate.test((ItemEntity) entity));
+            return getClosestItemDrop(query);
+        } finally {
+            releaseQuery(query);
         }
-        return Optional.ofNullable(closestEntity);
+    }
+
+    /**
+     * Closest dropped item for a query set up with {@link EntityQuery#ofItems(Item...)}.
+     * Only counts items we can actually grab (not blacklisted, not mid-air).
+     */
+    public Optional<ItemEntity> getClosestItemDrop(EntityQuery query) {
+        List<Entity> results = find(query);
+        return results.isEmpty() ? Optional.empty() : Optional.of((ItemEntity) results.get(0));
     }
 
     public Optional<Entity> getClosestEntity(Class... entityTypes) {
@@ -148,7 +201,7 @@ public class EntityTracker extends Tracker {
     }
 
     public Optional<Entity> getClosestEntity(Vec3d position, Class... entityTypes) {
-        return this.getClosestEntity(position, (entity) -> true, entityTypes);
+        return this.getClosestEntity(position, (Predicate<Entity>) null, entityTypes);
     }
 
     public Optional<Entity> getClosestEntity(Predicate<Entity> acceptPredicate, Class... entityTypes) {
@@ -156,36 +209,54 @@ public class EntityTracker extends Tracker {
     }
 
     public Optional<Entity> getClosestEntity(Vec3d position, Predicate<Entity> acceptPredicate, Class... entityTypes) {
-        Entity closestEntity = null;
-        double minCost = Float.POSITIVE_INFINITY;
-        for (Class toFind : entityTypes) {
-            synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-                if (entityMap.containsKey(toFind)) {
-                    for (Entity entity : entityMap.get(toFind)) {
-                        // Don't accept entities that no longer exist
-                        if (entityBlacklist.unreachable(entity)) continue;
-                        if (!entity.isAlive()) continue;
-                        if (!acceptPredicate.test(entity)) continue;
-                        double cost = entity.squaredDistanceTo(position);
-                        if (cost < minCost) {
-                            minCost = cost;
-                            closestEntity = entity;
-                        }
-                    }
-                }
-            }
+        EntityQuery query = borrowQuery();
+        try {
+            return getClosestEntity(query.ofTypes(entityTypes).from(position).filter(acceptPredicate));
+        } finally {
+            releaseQuery(query);
+        }
+    }
+
+    public Optional<Entity> getClosestEntity(EntityQuery query) {
+        List<Entity> results = find(query);
+        return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
+    }
+
+    /**
+     * Runs a query against everything we track. Dead entities are never returned, blacklisted ones only when asked for,
+     * and item queries only return items that landed somewhere.
+     *
+     * @return the query's results, closest first. Owned by the query, so only valid until it runs again.
+     */
+    public List<Entity> find(EntityQuery query) {
+        ensureUpdated();
+        Predicate<Entity> accept = query.items.isEmpty()
+                ? (query.includeUnreachable ? entity -> true : isReachable)
+                : (query.includeUnreachable ? isGroundedDrop : isPickupable);
+        index.find(query, accept);
+        return query.getResults();
+    }
+
+    private EntityQuery borrowQuery() {
+        // A filter can look something else up while the shared query is busy
+        if (sharedQueryInUse) return new EntityQuery();
+        sharedQueryInUse = true;
+        return sharedQuery.reset();
+    }
+
+    private void releaseQuery(EntityQuery query) {
+        if (query == sharedQuery) {
+            sharedQueryInUse = false;
         }
-        return Optional.ofNullable(closestEntity);
     }
 
     public boolean itemDropped(Item... items) {
         ensureUpdated();
         for (Item item : items) {
-            if (itemDropLocations.containsKey(item)) {
-                // Find a non-blacklisted item
-                for (ItemEntity entity : itemDropLocations.get(item)) {
-                    if (!entityBlacklist.unreachable(entity)) return true;
-                }
+            // Find a non-blacklisted item
+            for (EntityIndex.Entry entry : index.getWithItem(item)) {
+                ItemEntity entity = (ItemEntity) entry.entity;
+                if (entity.isAlive() && !entityBlacklist.unreachable(entity) && isGrounded(entity)) return true;
             }
         }
         return false;
@@ -201,20 +272,22 @@ public class EntityTracker extends Tracker {
 
     public List<ItemEntity> getDroppedItems() {
         ensureUpdated();
-        return itemDropLocations.values().stream().reduce(new ArrayList<>(), (result, drops) -> {
-            result.addAll(drops);
-            return result;
-        });
+        List<ItemEntity> result = new ArrayList<>();
+        for (EntityIndex.Entry entry : index.getOfType(ItemEntity.class)) {
+            ItemEntity entity = (ItemEntity) entry.entity;
+            if (entity.isAlive() && isGrounded(entity)) {
+                result.add(entity);
+            }
+        }
+        return result;
     }
 
     public boolean entityFound(Predicate<Entity> shouldAccept, Class... types) {
         ensureUpdated();
         for (Class type : types) {
-            synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-                for (Entity entity : entityMap.getOrDefault(type, Collections.emptyList())) {
-                    if (shouldAccept.test(entity))
-                        return true;
-                }
+            for (EntityIndex.Entry entry : index.getOfType(type)) {
+                if (entry.entity.isAlive() && shouldAccept.test(entry.entity))
+                    return true;
             }
         }
         return false;
@@ -226,40 +299,44 @@ public class EntityTracker extends Tracker {
 
     public <T extends Entity> List<T> getTrackedEntities(Class<T> type) {
         ensureUpdated();
-        if (!entityFound(type)) {
-            return Collections.emptyList();
+        List<T> result = new ArrayList<>();
+        for (EntityIndex.Entry entry : index.getOfType(type)) {
+            if (entry.entity.isAlive()) {
+                //noinspection unchecked
+                result.add((T) entry.entity);
+            }
         }
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            //noinspection unchecked
-            return (List<T>) entityMap.get(type);
+        return result;
+    }
+
+    /**
+     * Everything we worked out this tick. Safe to call from any thread, only the client thread brings it up to date.
+     */
+    public EntitySnapshot getSnapshot() {
+        if (MinecraftClient.getInstance().isOnThread()) {
+            ensureUpdated();
         }
+        return snapshot;
     }
 
     /**
      * Gets all entities that are within our interact range
      */
     public List<Entity> getCloseEntities() {
-        ensureUpdated();
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            return closeEntities;
-        }
+        return getSnapshot().getCloseEntities();
     }
 
     /**
      * Gets a list of projectiles that we've cached/stored information about.
+     * <p>
+     * The list never changes once returned (the next update makes a new one), so it's safe to hand to other threads.
      */
     public List<CachedProjectile> getProjectiles() {
-        ensureUpdated();
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            return projectiles;
-        }
+        return getSnapshot().getProjectiles();
     }
 
     public List<LivingEntity> getHostiles() {
-        ensureUpdated();
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            return hostiles;
-        }
+        return getSnapshot().getHostiles();
     }
 
     /**
@@ -268,10 +345,7 @@ public class EntityTracker extends Tracker {
      * @param name Username on a multiplayer server
      */
     public boolean isPlayerLoaded(String name) {
-        ensureUpdated();
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            return playerMap.containsKey(name);
-        }
+        return getSnapshot().getPlayers().containsKey(name);
     }
 
     /**
@@ -281,9 +355,7 @@ public class EntityTracker extends Tracker {
      */
     public Optional<Vec3d> getPlayerMostRecentPosition(String name) {
         ensureUpdated();
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            return Optional.ofNullable(playerLastCoordinates.getOrDefault(name, null));
-        }
+        return Optional.ofNullable(playerLastCoordinates.getOrDefault(name, null));
     }
 
     /**
@@ -292,12 +364,7 @@ public class EntityTracker extends Tracker {
      * @param name Username on a multiplayer server.
      */
     public Optional<PlayerEntity> getPlayerEntity(String name) {
-        if (isPlayerLoaded(name)) {
-            synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-                return Optional.of(playerMap.get(name));
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(getSnapshot().getPlayers().get(name));
     }
 
     /**
@@ -315,97 +382,101 @@ public class EntityTracker extends Tracker {
     }
 
     @Override
-    protected synchronized void updateState() {
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            itemDropLocations.clear();
-            entityMap.clear();
-            closeEntities.clear();
-            projectiles.clear();
-            hostiles.clear();
-            playerMap.clear();
-            if (MinecraftClient.getInstance().world == null) return;
-
-            // Store/Register All accumulated player collisions for this frame.
-            entitiesCollidingWithPlayer.clear();
-            for (Map.Entry<PlayerEntity, List<Entity>> collisions : entitiesCollidingWithPlayerAccumulator.entrySet()) {
-                entitiesCollidingWithPlayer.put(collisions.getKey(), new HashSet<>());
-                entitiesCollidingWithPlayer.get(collisions.getKey()).addAll(collisions.getValue());
-            }
-            entitiesCollidingWithPlayerAccumulator.clear();
-
-            // Loop through all entities and track 'em
-            for (Entity entity : MinecraftClient.getInstance().world.getEntities()) {
+    protected void updateState() {
+        ClientWorld world = MinecraftClient.getInstance().world;
+        if (world == null) {
+            index.clear();
+            indexedWorld = null;
+            snapshot = EntitySnapshot.EMPTY;
+            return;
+        }
 
-                // Catalogue based on type. Some types may get "squashed" or combined into one.
-                Class type = entity.getClass();
-                type = squashType(type);
+        // Store/Register All accumulated player collisions for this frame.
+        entitiesCollidingWithPlayer.clear();
+        for (Map.Entry<PlayerEntity, List<Entity>> collisions : entitiesCollidingWithPlayerAccumulator.entrySet()) {
+            entitiesCollidingWithPlayer.put(collisions.getKey(), new HashSet<>());
+            entitiesCollidingWithPlayer.get(collisions.getKey()).addAll(collisions.getValue());
+        }
+        entitiesCollidingWithPlayerAccumulator.clear();
 
-                //noinspection ConstantConditions
-                if (entity == null || !entity.isAlive()) continue;
+        if (world != indexedWorld) {
+            reindex(world);
+        }
+        index.refresh();
+
+        // Only entities close to us can be in reach, be a threat or hit us soon.
+        nearbyEntities.clear();
+        if (mod.getPlayer() != null) {
+            Vec3d playerPos = mod.getPlayer().getPos();
+            double nearbyRange = Math.max(PROJECTILE_RANGE, Math.max(HOSTILE_RANGE, mod.getModSettings().getEntityReachRange()));
+            index.refreshNear(playerPos, nearbyRange);
+            index.collectNear(playerPos, nearbyRange, nearbyEntities);
+        }
+        EntitySnapshot.Builder builder = new EntitySnapshot.Builder(nearbyEntities.size());
+
+        for (EntityIndex.Entry entry : index.getOfType(PlayerEntity.class)) {
+            PlayerEntity player = (PlayerEntity) entry.entity;
+            if (!player.isAlive()) continue;
+            String name = player.getName().getString();
+            builder.addPlayer(name, player);
+            playerLastCoordinates.put(name, player.getPos());
+        }
 
-                // Don't catalogue our own player.
-                if (type == PlayerEntity.class && entity.equals(mod.getPlayer())) continue;
+        for (Entity entity : nearbyEntities) {
+            if (!entity.isAlive()) continue;
 
-                if (!entityMap.containsKey(type)) {
-                    entityMap.put(type, new ArrayList<>());
-                }
-                entityMap.get(type).add(entity);
+            int flags = 0;
+            if (mod.getControllerExtras().inRange(entity)) {
+                flags |= EntitySnapshot.CLOSE;
+            }
 
-                if (mod.getControllerExtras().inRange(entity)) {
-                    closeEntities.add(entity);
-                }
+            if (entity instanceof MobEntity) {
+                if (EntityHelper.isAngryAtPlayer(mod, entity)) {
 
-                if (entity instanceof ItemEntity ientity) {
-                    Item droppedItem = ientity.getStack().getItem();
+                    // Check if the mob is facing us or is close enough
+                    boolean closeEnough = entity.isInRange(mod.getPlayer(), HOSTILE_RANGE);
 
-                    // Only cared about GROUNDED item entities
-                    if (ientity.isOnGround() || ientity.isTouchingWater() || WorldHelper.isSolidBlock(ientity.getBlockPos().down(2)) || WorldHelper.isSolidBlock(ientity.getBlockPos().down(3))) {
-                        if (!itemDropLocations.containsKey(droppedItem)) {
-                            itemDropLocations.put(droppedItem, new ArrayList<>());
-                        }
-                        itemDropLocations.get(droppedItem).add(ientity);
+                    //Debug.logInternal("TARGET: " + hostile.is);
+                    if (closeEnough) {
+                        flags |= EntitySnapshot.HOSTILE;
                     }
                 }
-                if (entity instanceof MobEntity) {
-                    if (EntityHelper.isAngryAtPlayer(mod, entity)) {
-
-                        // Check if the mob is facing us or is close enough
-                        boolean closeEnough = entity.isInRange(mod.getPlayer(), 26);
-
-                        //Debug.logInternal("TARGET: " + hostile.is);
-                        if (closeEnough) {
-                            hostiles.add((LivingEntity) entity);
-                        }
-                    }
-                } else if (entity instanceof ProjectileEntity projEntity) {
-                    if (!mod.getBehaviour().shouldAvoidDodgingProjectile(entity)) {
-                        CachedProjectile proj = new CachedProjectile();
-
-                        boolean inGround = false;
-                        // Get projectile "inGround" variable
-                        if (entity instanceof PersistentProjectileEntity) {
-                            inGround = ((PersistentProjectileEntityAccessor) entity).isInGround();
-                        }
-
-                        // Ignore some of the harlmess projectiles
-                        if (projEntity instanceof FishingBobberEntity || projEntity instanceof EnderPearlEntity || projEntity instanceof ExperienceBottleEntity)
-                            continue;
-
-                        if (!inGround) {
-                            proj.position = projEntity.getPos();
-                            proj.velocity = projEntity.getVelocity();
-                            proj.gravity = ProjectileHelper.hasGravity(projEntity) ? ProjectileHelper.ARROW_GRAVITY_ACCEL : 0;
-                            proj.projectileType = projEntity.getClass();
-                            projectiles.add(proj);
-                        }
-                    }
-                } else if (entity instanceof PlayerEntity player) {
-                    String name = player.getName().getString();
-                    playerMap.put(name, player);
-                    playerLastCoordinates.put(name, player.getPos());
+            } else if (entity instanceof ProjectileEntity projEntity) {
+                CachedProjectile proj = cacheProjectile(projEntity);
+                if (proj != null) {
+                    flags |= EntitySnapshot.PROJECTILE;
+                    builder.addProjectile(proj);
                 }
             }
+
+            builder.add(entity, flags);
+        }
+
+        snapshot = builder.build();
+    }
+
+    /**
+     * @return null if this projectile can't hurt us (too far, harmless, or stuck in the ground)
+     */
+    private CachedProjectile cacheProjectile(ProjectileEntity projEntity) {
+        if (!projEntity.isInRange(mod.getPlayer(), PROJECTILE_RANGE)) return null;
+        // Ignore some of the harlmess projectiles
+        if (projEntity instanceof FishingBobberEntity || projEntity instanceof EnderPearlEntity || projEntity instanceof ExperienceBottleEntity)
+            return null;
+        if (mod.getBehaviour().shouldAvoidDodgingProjectile(projEntity)) return null;
+
+        // Get projectile "inGround" variable
+        if (projEntity instanceof PersistentProjectileEntity && ((PersistentProjectileEntityAccessor) projEntity).isInGround()) {
+            return null;
         }
+
+        CachedProjectile proj = new CachedProjectile();
+        proj.position = projEntity.getPos();
+        proj.velocity = projEntity.getVelocity();
+        proj.gravity = ProjectileHelper.getGravity(projEntity);
+        proj.drag = ProjectileHelper.getDrag(projEntity);
+        proj.projectileType = projEntity.getClass();
+        return proj;
     }
 
     @Override
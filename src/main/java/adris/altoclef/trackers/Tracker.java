@@ -1,12 +1,14 @@
 package adris.altoclef.trackers;
 
 import adris.altoclef.AltoClef;
+import adris.altoclef.util.profiler.TickProfiler;
 
 public abstract class Tracker {
 
     protected AltoClef mod;
     // Needs to update
     private boolean dirty = true;
+    private final String updateLabel = TickProfiler.labelOf(getClass()) + ".updateState";
 
     public Tracker(TrackerManager manager) {
         manager.addTracker(this);
@@ -23,7 +25,12 @@ public abstract class Tracker {
 
     protected void ensureUpdated() {
         if (isDirty()) {
-            updateState();
+            TickProfiler.push(updateLabel);
+            try {
+                updateState();
+            } finally {
+                TickProfiler.pop();
+            }
             dirty = false;
         }
     }
@@ -7,7 +7,9 @@ import net.minecraft.screen.FurnaceScreenHandler;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.util.math.BlockPos;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 public class ContainerCache {
@@ -16,8 +18,10 @@ public class ContainerCache {
     private final Dimension dimension;
     private final ContainerType containerType;
 
-    private final HashMap<Item, Integer> itemCounts = new HashMap<>();
+    private HashMap<Item, Integer> itemCounts = new HashMap<>();
     private int _emptySlots;
+    // World time we last had it open
+    private long lastSeenTime;
 
     public ContainerCache(Dimension dimension, BlockPos blockPos, ContainerType containerType) {
         this.dimension = dimension;
@@ -25,9 +29,12 @@ public class ContainerCache {
         this.containerType = containerType;
     }
 
-    public void update(ScreenHandler screenHandler, Consumer<ItemStack> onStack) {
-        itemCounts.clear();
-        _emptySlots = 0;
+    /**
+     * @return Whether the contents are any different from what we had
+     */
+    public boolean update(ScreenHandler screenHandler, long worldTime, Consumer<ItemStack> onStack) {
+        HashMap<Item, Integer> newCounts = new HashMap<>();
+        int emptySlots = 0;
         int start = 0;
         int end = screenHandler.slots.size() - (4 * 9); // subtract by player inventory
         // do NOT count the furnace output slot as an empty slot, it cannot be used.
@@ -40,15 +47,34 @@ public class ContainerCache {
             if (stack.isEmpty()) {
                 // Ignore furnace output slot
                 if (!(isFurnace && i == 2)) {
-                    _emptySlots++;
+                    emptySlots++;
                 }
             } else {
                 Item item = stack.getItem();
                 int count = stack.getCount();
-                itemCounts.put(item, itemCounts.getOrDefault(item, 0) + count);
+                newCounts.put(item, newCounts.getOrDefault(item, 0) + count);
                 onStack.accept(stack);
             }
         }
+
+        lastSeenTime = worldTime;
+        boolean changed = emptySlots != _emptySlots || !newCounts.equals(itemCounts);
+        itemCounts = newCounts;
+        _emptySlots = emptySlots;
+        return changed;
+    }
+
+    /**
+     * Puts back contents we saved earlier, see {@link ContainerCacheStore}.
+     */
+    void restore(Map<Item, Integer> counts, int emptySlots, long lastSeenTime) {
+        itemCounts = new HashMap<>(counts);
+        _emptySlots = emptySlots;
+        this.lastSeenTime = lastSeenTime;
+    }
+
+    Map<Item, Integer> getItemCounts() {
+        return Collections.unmodifiableMap(itemCounts);
     }
 
     public int getItemCount(Item... items) {
@@ -86,4 +112,11 @@ public class ContainerCache {
     public Dimension getDimension() {
         return dimension;
     }
+
+    /**
+     * The world time we last saw inside this container. Might be from a previous session.
+     */
+    public long getLastSeenTime() {
+        return lastSeenTime;
+    }
 }
@@ -0,0 +1,259 @@
+package adris.altoclef.trackers.storage;
+
+import adris.altoclef.Debug;
+import adris.altoclef.util.Dimension;
+import adris.altoclef.util.helpers.ConfigHelper;
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps container caches on disk, one file per server/world, so relogging doesn't forget what's in our chests.
+ * <p>
+ * The file is a log: every change gets appended as a record (a container's new contents, or it being gone) and loading
+ * replays it, later records winning. A crash halfway through a write only loses that last record.
+ * Once the log is mostly outdated records, loading rewrites it with just the live ones.
+ * <p>
+ * Record layout (big endian):
+ * <pre>
+ * int   length of everything below
+ * byte  RECORD_PUT or RECORD_REMOVE
+ * byte  dimension ordinal
+ * long  block position, see BlockPos#asLong
+ * -- puts only:
+ * byte  container type ordinal
+ * long  last seen world time
+ * int   empty slots
+ * short item entries, each: short id length, id bytes (UTF-8), int count
+ * </pre>
+ */
+class ContainerCacheStore {
+
+    private static final String FOLDER = "container_cache";
+    private static final int MAGIC = 0x41434343;
+    // Bump whenever the layout (or the Dimension/ContainerType enums) change, old files then get started over
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    // Compact once there are this many times more records than containers
+    private static final int COMPACT_RATIO = 4;
+    private static final int COMPACT_MIN_RECORDS = 256;
+
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+    private static final ContainerType[] CONTAINER_TYPES = ContainerType.values();
+
+    private final Path path;
+    private DataOutputStream out;
+
+    ContainerCacheStore(String worldKey) {
+        path = ConfigHelper.getConfigFile(FOLDER + "/" + worldKey.replaceAll("[^a-zA-Z0-9._-]", "_") + ".bin").toPath();
+    }
+
+    /**
+     * Replays the file into `caches` and gets it ready for appending.
+     * If anything goes wrong we just start without the saved caches (and without saving new ones).
+     */
+    void load(HashMap<Dimension, HashMap<BlockPos, ContainerCache>> caches) {
+        int records = 0;
+        long validEnd = 0;
+        boolean usable = false;
+        try {
+            Files.createDirectories(path.getParent());
+            if (Files.exists(path)) {
+                ByteBuffer buffer;
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = readFully(channel);
+                }
+                if (buffer.remaining() >= HEADER_BYTES && buffer.getInt() == MAGIC && buffer.getInt() == FORMAT_VERSION) {
+                    usable = true;
+                    validEnd = HEADER_BYTES;
+                    while (buffer.remaining() >= 4) {
+                        int length = buffer.getInt();
+                        // Torn write from a crash, everything before it is fine
+                        if (length <= 0 || length > buffer.remaining())
+                            break;
+                        int end = buffer.position() + length;
+                        try {
+                            readRecord(buffer.slice().limit(length), caches);
+                        } catch (RuntimeException e) {
+                            // Garbled record (cut short, bad id, ...), but we know where the next one starts
+                        }
+                        buffer.position(end);
+                        validEnd = end;
+                        records++;
+                    }
+                } else {
+                    Debug.logWarning("Container cache at " + path + " is from another version, starting over.");
+                }
+            }
+
+            int live = 0;
+            for (HashMap<BlockPos, ContainerCache> dimCaches : caches.values()) {
+                live += dimCaches.size();
+            }
+            if (!usable || records > Math.max(COMPACT_MIN_RECORDS, live * COMPACT_RATIO)) {
+                rewrite(caches);
+            } else if (validEnd < Files.size(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validEnd);
+                }
+            }
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.APPEND)));
+        } catch (IOException | RuntimeException e) {
+            Debug.logWarning("Failed to load container cache at " + path + ", containers won't be remembered this session: " + e);
+            close();
+        }
+    }
+
+    // Read into memory rather than mapped: Windows won't truncate or replace a file while a mapping of it is still around,
+    // and a mapping only goes away once the GC gets to it
+    private static ByteBuffer readFully(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("file is too big (" + size + " bytes)");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading
+        }
+        return buffer.flip();
+    }
+
+    private static void readRecord(ByteBuffer record, HashMap<Dimension, HashMap<BlockPos, ContainerCache>> caches) {
+        byte kind = record.get();
+        int dimensionIndex = record.get();
+        BlockPos pos = BlockPos.fromLong(record.getLong());
+        if (dimensionIndex < 0 || dimensionIndex >= DIMENSIONS.length)
+            return;
+        Dimension dimension = DIMENSIONS[dimensionIndex];
+        if (kind == RECORD_REMOVE) {
+            caches.get(dimension).remove(pos);
+            return;
+        }
+        if (kind != RECORD_PUT)
+            return;
+
+        int typeIndex = record.get();
+        if (typeIndex < 0 || typeIndex >= CONTAINER_TYPES.length)
+            return;
+        long lastSeenTime = record.getLong();
+        int emptySlots = record.getInt();
+        int entries = Short.toUnsignedInt(record.getShort());
+        HashMap<Item, Integer> counts = new HashMap<>(entries);
+        for (int i = 0; i < entries; ++i) {
+            byte[] idBytes = new byte[Short.toUnsignedInt(record.getShort())];
+            record.get(idBytes);
+            int count = record.getInt();
+            Identifier id = Identifier.tryParse(new String(idBytes, StandardCharsets.UTF_8));
+            // Items from a mod that's gone now
+            if (id != null && Registries.ITEM.containsId(id)) {
+                counts.merge(Registries.ITEM.get(id), count, Integer::sum);
+            }
+        }
+        ContainerCache cache = new ContainerCache(dimension, pos, CONTAINER_TYPES[typeIndex]);
+        cache.restore(counts, emptySlots, lastSeenTime);
+        caches.get(dimension).put(pos, cache);
+    }
+
+    // Replaces the file with one PUT per live container
+    private void rewrite(HashMap<Dimension, HashMap<BlockPos, ContainerCache>> caches) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            tempOut.writeInt(MAGIC);
+            tempOut.writeInt(FORMAT_VERSION);
+            for (HashMap<BlockPos, ContainerCache> dimCaches : caches.values()) {
+                for (ContainerCache cache : dimCaches.values()) {
+                    writeRecord(tempOut, putRecord(cache));
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    void put(ContainerCache cache) {
+        append(putRecord(cache));
+    }
+
+    void remove(Dimension dimension, BlockPos pos) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(10);
+        DataOutputStream record = new DataOutputStream(bytes);
+        try {
+            record.writeByte(RECORD_REMOVE);
+            record.writeByte(dimension.ordinal());
+            record.writeLong(pos.asLong());
+        } catch (IOException e) {
+            // Writing to memory, can't happen
+            throw new UncheckedIOException(e);
+        }
+        append(bytes.toByteArray());
+    }
+
+    private static byte[] putRecord(ContainerCache cache) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream record = new DataOutputStream(bytes);
+        try {
+            record.writeByte(RECORD_PUT);
+            record.writeByte(cache.getDimension().ordinal());
+            record.writeLong(cache.getBlockPos().asLong());
+            record.writeByte(cache.getContainerType().ordinal());
+            record.writeLong(cache.getLastSeenTime());
+            record.writeInt(cache.getEmptySlotCount());
+            Collection<Map.Entry<Item, Integer>> entries = cache.getItemCounts().entrySet();
+            record.writeShort(entries.size());
+            for (Map.Entry<Item, Integer> entry : entries) {
+                byte[] id = Registries.ITEM.getId(entry.getKey()).toString().getBytes(StandardCharsets.UTF_8);
+                record.writeShort(id.length);
+                record.write(id);
+                record.writeInt(entry.getValue());
+            }
+        } catch (IOException e) {
+            // Writing to memory, can't happen
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(DataOutputStream to, byte[] record) throws IOException {
+        to.writeInt(record.length);
+        to.write(record);
+    }
+
+    private void append(byte[] record) {
+        if (out == null)
+            return;
+        try {
+            writeRecord(out, record);
+            // One record at a time, so a crash loses at most the one being written
+            out.flush();
+        } catch (IOException e) {
+            Debug.logWarning("Failed to save container cache to " + path + ", containers won't be remembered for the rest of this session: " + e);
+            close();
+        }
+    }
+
+    void close() {
+        if (out == null)
+            return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+}
@@ -1,21 +1,29 @@
 package adris.altoclef.trackers.storage;
 
+import adris.altoclef.AltoClef;
 import adris.altoclef.Debug;
 import adris.altoclef.eventbus.EventBus;
 import adris.altoclef.eventbus.events.BlockInteractEvent;
 import adris.altoclef.eventbus.events.ScreenOpenEvent;
 import adris.altoclef.multiversion.blockpos.BlockPosVer;
+import adris.altoclef.tasksystem.TickScheduler;
 import adris.altoclef.trackers.Tracker;
 import adris.altoclef.trackers.TrackerManager;
 import adris.altoclef.util.Dimension;
 import adris.altoclef.util.helpers.WorldHelper;
+import adris.altoclef.util.time.TimerReal;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.block.*;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.screen.ingame.*;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.item.Item;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.util.Pair;
+import net.minecraft.util.WorldSavePath;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
@@ -25,6 +33,8 @@ import java.util.function.Predicate;
 
 /**
  * Keeps track of items in containers
+ * <p>
+ * What we learn gets saved per server/world (see {@link ContainerCacheStore}), so it's still there after relogging.
  */
 public class ContainerSubTracker extends Tracker {
 
@@ -34,6 +44,17 @@ public class ContainerSubTracker extends Tracker {
     private Block lastBlockInteraction;
     private ContainerCache enderChestCache;
     private boolean hasSentError;
+    // Containers left to check in the current pruning sweep
+    private final ArrayDeque<BlockPos> pruneQueue = new ArrayDeque<>();
+    private final TimerReal pruneTimer = new TimerReal(1);
+    // item raw id -> every cached container with some of it, so item lookups skip the containers that can't have it
+    private final Int2ObjectOpenHashMap<ObjectOpenHashSet<ContainerCache>> containersByItem = new Int2ObjectOpenHashMap<>();
+    private ContainerCacheStore store;
+    private String storeKey;
+    // The world the store was picked for, so we only work out which file to use when the world changes
+    private ClientWorld storeWorld;
+    // Whether we saved the open container at least once, so its last seen time gets saved even if nothing changed
+    private boolean savedOpenContainer;
 
     public ContainerSubTracker(TrackerManager manager) {
         super(manager);
@@ -81,6 +102,7 @@ public class ContainerSubTracker extends Tracker {
 
     private void onScreenClose() {
         containerOpen = false;
+        savedOpenContainer = false;
         lastBlockPosInteraction = null;
         lastBlockInteraction = null;
         hasSentError = false;
@@ -89,6 +111,10 @@ public class ContainerSubTracker extends Tracker {
     public void onServerTick() {
         if (MinecraftClient.getInstance().player == null)
             return;
+        if (mod.getWorld() != storeWorld) {
+            storeWorld = mod.getWorld();
+            openStore();
+        }
         // If we haven't registered interacting with a block, try the currently "looking at" block
         if (containerOpen && lastBlockPosInteraction == null && lastBlockInteraction == null) {
             if (MinecraftClient.getInstance().crosshairTarget instanceof BlockHitResult bhit) {
@@ -113,7 +139,7 @@ public class ContainerSubTracker extends Tracker {
                         Debug.logMessage("Mismatched container screen at " + containerPos.toShortString() + ", will overwrite container data: " + handler.getType() + " ?=> " + currentType);
                         hasSentError = true;
                     }
-                    dimCache.remove(containerPos);
+                    removeCache(WorldHelper.getCurrentDimension(), containerPos);
                 }
             }
 
@@ -122,17 +148,142 @@ public class ContainerSubTracker extends Tracker {
                 Block containerBlock = lastBlockInteraction;
                 ContainerType interactType = ContainerType.getFromBlock(containerBlock);
                 ContainerCache newCache = new ContainerCache(WorldHelper.getCurrentDimension(), containerPos, interactType);
-                dimCache.put(containerPos, newCache);
-                // Special ender chest cache
-                if (interactType == ContainerType.ENDER_CHEST) {
-                    enderChestCache = newCache;
-                }
+                putCache(newCache);
             }
 
             ContainerCache toUpdate = dimCache.get(containerPos);
-            toUpdate.update(handler, stack -> {
+            unindex(toUpdate);
+            boolean changed = toUpdate.update(handler, mod.getWorld().getTime(), stack -> {
 
             });
+            index(toUpdate);
+            if (store != null && (changed || !savedOpenContainer)) {
+                store.put(toUpdate);
+                savedOpenContainer = true;
+            }
+        }
+    }
+
+    private static String getWorldKey() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client.isInSingleplayer() && client.getServer() != null) {
+            // The save folder, display names don't have to be unique
+            return "singleplayer_" + client.getServer().getSavePath(WorldSavePath.ROOT).normalize().getFileName();
+        }
+        ServerInfo server = client.getCurrentServerEntry();
+        return server != null ? "server_" + server.address : null;
+    }
+
+    // Switches to the current world's saved caches, if it's a different world than before
+    private void openStore() {
+        String key = getWorldKey();
+        // Same server, just another dimension
+        if (Objects.equals(key, storeKey))
+            return;
+        closeStore();
+        storeKey = key;
+        if (key == null)
+            return;
+        store = new ContainerCacheStore(key);
+        store.load(containerCaches);
+        for (HashMap<BlockPos, ContainerCache> dimCache : containerCaches.values()) {
+            for (ContainerCache cache : dimCache.values()) {
+                index(cache);
+                if (cache.getContainerType() == ContainerType.ENDER_CHEST) {
+                    enderChestCache = cache;
+                }
+            }
+        }
+    }
+
+    private void closeStore() {
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+        storeKey = null;
+        for (HashMap<BlockPos, ContainerCache> dimCache : containerCaches.values()) {
+            dimCache.clear();
+        }
+        containersByItem.clear();
+        enderChestCache = null;
+    }
+
+    private void putCache(ContainerCache cache) {
+        containerCaches.get(cache.getDimension()).put(cache.getBlockPos(), cache);
+        index(cache);
+        // Special ender chest cache
+        if (cache.getContainerType() == ContainerType.ENDER_CHEST) {
+            enderChestCache = cache;
+        }
+    }
+
+    private void removeCache(Dimension dimension, BlockPos pos) {
+        ContainerCache removed = containerCaches.get(dimension).remove(pos);
+        if (removed == null)
+            return;
+        unindex(removed);
+        if (store != null) {
+            store.remove(dimension, pos);
+        }
+    }
+
+    private void index(ContainerCache cache) {
+        for (Item item : cache.getItemCounts().keySet()) {
+            containersByItem.computeIfAbsent(Item.getRawId(item), id -> new ObjectOpenHashSet<>()).add(cache);
+        }
+    }
+
+    private void unindex(ContainerCache cache) {
+        for (Item item : cache.getItemCounts().keySet()) {
+            ObjectOpenHashSet<ContainerCache> withItem = containersByItem.get(Item.getRawId(item));
+            if (withItem != null) {
+                withItem.remove(cache);
+                if (withItem.isEmpty())
+                    containersByItem.remove(Item.getRawId(item));
+            }
+        }
+    }
+
+    /**
+     * Every cached container that has any of `items`, straight from the index. Might include caches that aren't valid anymore.
+     */
+    private Set<ContainerCache> getIndexedContainersWithItem(Item... items) {
+        if (items.length == 1) {
+            ObjectOpenHashSet<ContainerCache> withItem = containersByItem.get(Item.getRawId(items[0]));
+            return withItem != null ? withItem : Collections.emptySet();
+        }
+        Set<ContainerCache> result = new ObjectOpenHashSet<>();
+        for (Item item : items) {
+            ObjectOpenHashSet<ContainerCache> withItem = containersByItem.get(Item.getRawId(item));
+            if (withItem != null)
+                result.addAll(withItem);
+        }
+        return result;
+    }
+
+    /**
+     * Drops caches of containers that got broken or replaced, a few at a time until `deadlineNanos`.
+     * Queries would notice them too, this just keeps dead entries from piling up between queries.
+     */
+    public void pruneInvalidCaches(long deadlineNanos) {
+        if (!AltoClef.inGame()) return;
+
+        Dimension dimension = WorldHelper.getCurrentDimension();
+        HashMap<BlockPos, ContainerCache> dimCache = containerCaches.get(dimension);
+        if (pruneQueue.isEmpty()) {
+            // One sweep a second is plenty
+            if (!pruneTimer.elapsed()) return;
+            pruneTimer.reset();
+            pruneQueue.addAll(dimCache.keySet());
+        }
+        TickScheduler scheduler = mod.getTickScheduler();
+        while (!pruneQueue.isEmpty() && !scheduler.isPast(deadlineNanos)) {
+            BlockPos pos = pruneQueue.poll();
+            ContainerCache cache = dimCache.get(pos);
+            if (cache != null && !isContainerCacheValid(dimension, cache)) {
+                removeCache(dimension, pos);
+            }
         }
     }
 
@@ -152,7 +303,7 @@ public class ContainerSubTracker extends Tracker {
     public Optional<ContainerCache> getContainerAtPosition(Dimension dimension, BlockPos pos) {
         Optional<ContainerCache> cache = Optional.ofNullable(containerCaches.get(dimension).getOrDefault(pos, null));
         if (cache.isPresent() && !isContainerCacheValid(dimension, cache.get())) {
-            containerCaches.get(dimension).remove(pos);
+            removeCache(dimension, pos);
             return Optional.empty();
         }
         return cache;
@@ -181,7 +332,7 @@ public class ContainerSubTracker extends Tracker {
             }
         }
         for (Pair<Dimension, BlockPos> remove : toRemove) {
-            containerCaches.get(remove.getLeft()).remove(remove.getRight());
+            removeCache(remove.getLeft(), remove.getRight());
         }
         return result;
     }
@@ -213,7 +364,7 @@ public class ContainerSubTracker extends Tracker {
         }
         // Clear anything invalid
         for (BlockPos remove : toRemove) {
-            containerCaches.get(dim).remove(remove);
+            removeCache(dim, remove);
         }
         return Optional.ofNullable(bestCache);
     }
@@ -224,19 +375,51 @@ public class ContainerSubTracker extends Tracker {
     }
 
     public List<ContainerCache> getContainersWithItem(Item... items) {
-        return getCachedContainers(cache -> cache.hasItem(items));
+        List<ContainerCache> result = new ArrayList<>();
+        List<ContainerCache> toRemove = new ArrayList<>();
+        for (ContainerCache cache : getIndexedContainersWithItem(items)) {
+            if (isContainerCacheValid(cache.getDimension(), cache)) {
+                result.add(cache);
+            } else {
+                toRemove.add(cache);
+            }
+        }
+        for (ContainerCache remove : toRemove) {
+            removeCache(remove.getDimension(), remove.getBlockPos());
+        }
+        return result;
     }
 
     public Optional<ContainerCache> getClosestWithItem(Vec3d pos, Item... items) {
-        return getClosestTo(pos, cache -> cache.hasItem(items));
+        double bestDist = Double.POSITIVE_INFINITY;
+        Dimension dim = WorldHelper.getCurrentDimension();
+
+        List<ContainerCache> toRemove = new ArrayList<>();
+
+        ContainerCache bestCache = null;
+        for (ContainerCache cache : getIndexedContainersWithItem(items)) {
+            if (cache.getDimension() != dim)
+                continue;
+            if (!isContainerCacheValid(dim, cache)) {
+                toRemove.add(cache);
+                continue;
+            }
+            double dist = BlockPosVer.getSquaredDistance(cache.getBlockPos(), pos);
+            if (dist < bestDist) {
+                bestDist = dist;
+                bestCache = cache;
+            }
+        }
+        for (ContainerCache remove : toRemove) {
+            removeCache(dim, remove.getBlockPos());
+        }
+        return Optional.ofNullable(bestCache);
     }
 
     public boolean hasItem(Predicate<ContainerCache> accept, Item... items) {
-        for (HashMap<BlockPos, ContainerCache> map : containerCaches.values()) {
-            for (ContainerCache cache : map.values()) {
-                if (cache.hasItem(items) && accept.test(cache))
-                    return true;
-            }
+        for (ContainerCache cache : getIndexedContainersWithItem(items)) {
+            if (accept.test(cache))
+                return true;
         }
         return false;
     }
@@ -256,9 +439,10 @@ public class ContainerSubTracker extends Tracker {
 
     @Override
     protected void reset() {
-        for (Dimension key : containerCaches.keySet()) {
-            containerCaches.get(key).clear();
-        }
+        // Everything's saved as we go, we just let go of it
+        closeStore();
+        storeWorld = null;
+        pruneQueue.clear();
     }
 
 }
@@ -1,5 +1,8 @@
 package adris.altoclef.trackers.storage;
 
+import adris.altoclef.eventbus.EventBus;
+import adris.altoclef.eventbus.events.InventorySyncEvent;
+import adris.altoclef.eventbus.events.SlotClickChangedEvent;
 import adris.altoclef.trackers.Tracker;
 import adris.altoclef.trackers.TrackerManager;
 import adris.altoclef.util.helpers.ItemHelper;
@@ -17,24 +20,103 @@ import net.minecraft.item.Items;
 import net.minecraft.screen.ScreenHandler;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Keeps track of the player's inventory items
+ * <p>
+ * Nothing gets rescanned on its own: the server tells us which slots changed (and slot clicks tell us which slots we changed),
+ * so only those get updated, and a tick where nothing happened costs nothing. Every change bumps {@link #getInventoryVersion()}.
  */
 public class InventorySubTracker extends Tracker {
 
-    private final HashMap<Item, List<Slot>> itemToSlotPlayer = new HashMap<>();
-    private final HashMap<Item, List<Slot>> itemToSlotContainer = new HashMap<>();
-    private final HashMap<Item, Integer> itemCountsPlayer = new HashMap<>();
-    private final HashMap<Item, Integer> itemCountsContainer = new HashMap<>();
+    private final SlotItemIndex itemSlots = new SlotItemIndex();
+    // Window slots of the tracked handler. A null slot isn't tracked at all.
+    private Slot[] slots = new Slot[0];
+
+    private final BitSet dirtySlots = new BitSet();
+    private boolean rebuildAll = true;
+    private long version;
 
     private ScreenHandler _prevScreenHandler;
 
+    // What the player held last time we checked, see checkForUntrackedChanges
+    private int heldSelectedSlot = -1;
+    private Item heldItem = Items.AIR;
+    private int heldCount;
+    private Item offhandItem = Items.AIR;
+    private int offhandCount;
+
     public InventorySubTracker(TrackerManager manager) {
         super(manager);
+        EventBus.subscribe(SlotClickChangedEvent.class, evt -> markSlotDirty(evt.slot.getWindowSlot()));
+        EventBus.subscribe(InventorySyncEvent.class, this::onInventorySync);
+    }
+
+    private void onInventorySync(InventorySyncEvent evt) {
+        if (evt.syncId == InventorySyncEvent.CURSOR_SYNC_ID) {
+            // We always read the cursor directly, but whatever was worked out from it is stale now
+            version++;
+            return;
+        }
+        ScreenHandler handler = MinecraftClient.getInstance().player != null ? MinecraftClient.getInstance().player.currentScreenHandler : null;
+        if (handler != null && evt.syncId == handler.syncId && evt.slot != InventorySyncEvent.ALL_SLOTS) {
+            markSlotDirty(evt.slot);
+        } else {
+            // The whole handler, or the player inventory behind some other handler's back. Not worth mapping the slots over.
+            invalidateAll();
+        }
+    }
+
+    private void markSlotDirty(int windowSlot) {
+        if (windowSlot < 0) {
+            invalidateAll();
+            return;
+        }
+        dirtySlots.set(windowSlot);
+        version++;
+    }
+
+    /**
+     * Forget everything and rebuild from scratch next time we're asked.
+     */
+    public void invalidateAll() {
+        rebuildAll = true;
+        dirtySlots.clear();
+        version++;
+    }
+
+    /**
+     * Catches the changes no event tells us about.
+     */
+    private void checkForUntrackedChanges() {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        ScreenHandler handler = player != null ? player.currentScreenHandler : null;
+        if (handler != _prevScreenHandler) {
+            _prevScreenHandler = handler;
+            invalidateAll();
+        }
+        if (player == null)
+            return;
+        // Placing, eating and throwing are predicted on the client and only confirmed by the server a little later.
+        // All of them use up a held stack, so that's all we need to watch ourselves.
+        ItemStack mainHand = player.getMainHandStack();
+        ItemStack offHand = player.getOffHandStack();
+        int selected = player.getInventory().selectedSlot;
+        boolean changed = mainHand.getItem() != heldItem || mainHand.getCount() != heldCount
+                || offHand.getItem() != offhandItem || offHand.getCount() != offhandCount;
+        // Switching hotbar slots changes what we hold, not what we have
+        if (changed && selected == heldSelectedSlot) {
+            invalidateAll();
+        }
+        heldSelectedSlot = selected;
+        heldItem = mainHand.getItem();
+        heldCount = mainHand.getCount();
+        offhandItem = offHand.getItem();
+        offhandCount = offHand.getCount();
     }
 
     private static boolean shouldIgnoreSlotForContainer(Slot slot) {
@@ -64,9 +146,9 @@ public class InventorySubTracker extends Tracker {
             if (playerInventory && cursorStack.getItem().equals(item))
                 result += cursorStack.getCount();
             if (playerInventory)
-                result += itemCountsPlayer.getOrDefault(item, 0);
+                result += itemSlots.getCount(true, item);
             if (containerInventory)
-                result += itemCountsContainer.getOrDefault(item, 0);
+                result += itemSlots.getCount(false, item);
         }
         return result;
     }
@@ -77,9 +159,9 @@ public class InventorySubTracker extends Tracker {
         for (Item item : items) {
             if (cursorStack.getItem().equals(item))
                 return true;
-            if (itemCountsPlayer.containsKey(item))
+            if (itemSlots.hasSlots(true, item))
                 return true;
-            if (!playerInventoryOnly && itemCountsContainer.containsKey(item))
+            if (!playerInventoryOnly && itemSlots.hasSlots(false, item))
                 return true;
         }
         return false;
@@ -93,13 +175,30 @@ public class InventorySubTracker extends Tracker {
             if (playerInventory && cursorStack.getItem().equals(item))
                 result.add(CursorSlot.SLOT);
             if (playerInventory)
-                result.addAll(itemToSlotPlayer.getOrDefault(item, Collections.emptyList()));
+                addSlots(itemSlots.getSlots(true, item), result);
             if (containerInventory)
-                result.addAll(itemToSlotContainer.getOrDefault(item, Collections.emptyList()));
+                addSlots(itemSlots.getSlots(false, item), result);
         }
         return result;
     }
 
+    private void addSlots(BitSet windowSlots, List<Slot> result) {
+        if (windowSlots == null)
+            return;
+        for (int windowSlot = windowSlots.nextSetBit(0); windowSlot >= 0; windowSlot = windowSlots.nextSetBit(windowSlot + 1)) {
+            result.add(slots[windowSlot]);
+        }
+    }
+
+    /**
+     * Goes up whenever the player's inventory (cursor included) or the open container might have changed.
+     * The same version means whatever was worked out from the inventory last time is still good.
+     */
+    public long getInventoryVersion() {
+        checkForUntrackedChanges();
+        return version;
+    }
+
     public List<ItemStack> getInventoryStacks(boolean includeCursor) {
         ClientPlayerEntity player = MinecraftClient.getInstance().player;
         if (player == null || player.getInventory() == null)
@@ -116,113 +215,135 @@ public class InventorySubTracker extends Tracker {
         return result;
     }
 
-    private List<Slot> getSlotsThatCanFit(HashMap<Item, List<Slot>> list, ItemStack item, boolean acceptPartial) {
-        List<Slot> result = new ArrayList<>();
-        // First add fillable slots
-        for (Slot toCheckStackable : list.getOrDefault(item.getItem(), Collections.emptyList())) {
-            // Ignore cursor slot.
-            if (Slot.isCursor(toCheckStackable))
-                continue;
-            ItemStack stackToAddTo = StorageHelper.getItemStackInSlot(toCheckStackable);
-            // We must have SOME room left, then we decide whether we care about having ENOUGH
-            if (!stackToAddTo.isEmpty() && ItemHelper.canStackTogether(item, stackToAddTo)) {
-                int roomLeft = stackToAddTo.getMaxCount() - stackToAddTo.getCount();
-                if (acceptPartial || roomLeft > item.getCount()) {
-                    result.add(toCheckStackable);
+    /**
+     * Goes over the slots that can fit `item`, stacks we can add to first and then empty ones.
+     *
+     * @param result Where to put the slots. If null, stops at the first one and returns it.
+     */
+    private Slot findSlotsThatCanFit(boolean playerInventory, ItemStack item, boolean acceptPartial, List<Slot> result) {
+        BitSet stackable = itemSlots.getSlots(playerInventory, item.getItem());
+        if (stackable != null) {
+            for (int windowSlot = stackable.nextSetBit(0); windowSlot >= 0; windowSlot = stackable.nextSetBit(windowSlot + 1)) {
+                ItemStack stackToAddTo = StorageHelper.getItemStackInSlot(slots[windowSlot]);
+                // We must have SOME room left, then we decide whether we care about having ENOUGH
+                if (!stackToAddTo.isEmpty() && ItemHelper.canStackTogether(item, stackToAddTo)) {
+                    int roomLeft = stackToAddTo.getMaxCount() - stackToAddTo.getCount();
+                    if (acceptPartial || roomLeft > item.getCount()) {
+                        if (result == null)
+                            return slots[windowSlot];
+                        result.add(slots[windowSlot]);
+                    }
                 }
             }
         }
-        // Then add air slots that can insert our item
-        if (MinecraftClient.getInstance().player != null) {
+        // Then air slots that can insert our item
+        BitSet empty = itemSlots.getSlots(playerInventory, Items.AIR);
+        if (empty != null && MinecraftClient.getInstance().player != null) {
             ScreenHandler handler = MinecraftClient.getInstance().player.currentScreenHandler;
-            for (Slot airSlot : list.getOrDefault(Items.AIR, Collections.emptyList())) {
-                // Ignore cursor slot
-                if (airSlot.equals(CursorSlot.SLOT))
-                    continue;
-                int windowCheck = airSlot.getWindowSlot();
+            for (int windowSlot = empty.nextSetBit(0); windowSlot >= 0; windowSlot = empty.nextSetBit(windowSlot + 1)) {
                 // Special case: Armor/shield, we wish to ignore these if our inventory is not open.
-                if (windowCheck < handler.slots.size() && handler.getSlot(windowCheck).canInsert(item)) {
-                    result.add(airSlot);
+                if (windowSlot < handler.slots.size() && handler.getSlot(windowSlot).canInsert(item)) {
+                    if (result == null)
+                        return slots[windowSlot];
+                    result.add(slots[windowSlot]);
                 }
             }
         }
-        return result;
+        return null;
     }
 
     public List<Slot> getSlotsThatCanFit(boolean includePlayer, boolean includeContainer, ItemStack item, boolean acceptPartial) {
         ensureUpdated();
         final List<Slot> result = new ArrayList<>();
         if (includePlayer)
-            result.addAll(getSlotsThatCanFit(itemToSlotPlayer, item, acceptPartial));
+            findSlotsThatCanFit(true, item, acceptPartial, result);
         if (includeContainer)
-            result.addAll(getSlotsThatCanFit(itemToSlotContainer, item, acceptPartial));
+            findSlotsThatCanFit(false, item, acceptPartial, result);
         return result;
     }
 
+    /**
+     * The first of {@link #getSlotsThatCanFit(boolean, boolean, ItemStack, boolean)}, without building the whole list.
+     */
+    public Optional<Slot> getSlotThatCanFit(boolean includePlayer, boolean includeContainer, ItemStack item, boolean acceptPartial) {
+        ensureUpdated();
+        Slot result = null;
+        if (includePlayer)
+            result = findSlotsThatCanFit(true, item, acceptPartial, null);
+        if (result == null && includeContainer)
+            result = findSlotsThatCanFit(false, item, acceptPartial, null);
+        return Optional.ofNullable(result);
+    }
+
     public boolean hasEmptySlot(boolean playerInventoryOnly) {
         return hasItem(playerInventoryOnly, Items.AIR);
     }
 
-    private void registerItem(ItemStack stack, Slot slot, boolean isSlotPlayerInventory) {
-        Item item = stack.getItem();
-        int count = stack.getCount();
-        if (stack.isEmpty()) {
-            // If our cursor slot is empty, IGNORE IT as we don't want to treat it as a valid slot.
-            item = Items.AIR;
-            count = 0;
-        }
+    private void registerSlot(int windowSlot, boolean playerInventory) {
+        Slot slot = slots[windowSlot];
+        if (slot == null)
+            return;
+        itemSlots.register(windowSlot, playerInventory, StorageHelper.getItemStackInSlot(slot));
+    }
 
-        if (isSlotPlayerInventory) {
-            itemCountsPlayer.put(item, itemCountsPlayer.getOrDefault(item, 0) + count);
-        } else {
-            itemCountsContainer.put(item, itemCountsContainer.getOrDefault(item, 0) + count);
-        }
+    private void unregisterSlot(int windowSlot) {
+        if (slots[windowSlot] == null)
+            return;
+        itemSlots.unregister(windowSlot);
+    }
 
-        if (slot != null) {
-            HashMap<Item, List<Slot>> toAdd = isSlotPlayerInventory ? itemToSlotPlayer : itemToSlotContainer;
-            if (!toAdd.containsKey(item))
-                toAdd.put(item, new ArrayList<>());
-            toAdd.get(item).add(slot);
+    private void rebuild(ScreenHandler handler) {
+        int size = handler.slots.size();
+        itemSlots.reset(size);
+        if (slots.length != size) {
+            slots = new Slot[size];
+        }
+        for (int windowSlot = 0; windowSlot < size; ++windowSlot) {
+            Slot slot = Slot.getFromCurrentScreen(windowSlot);
+            slots[windowSlot] = shouldIgnoreSlotForContainer(slot) ? null : slot;
+            // Add separately if we're in a container vs player inventory.
+            registerSlot(windowSlot, slot.isSlotInPlayerInventory());
         }
     }
 
     @Override
     protected void updateState() {
-        _prevScreenHandler = MinecraftClient.getInstance().player != null ? MinecraftClient.getInstance().player.currentScreenHandler : null;
-
-        itemToSlotPlayer.clear();
-        itemToSlotContainer.clear();
-        itemCountsPlayer.clear();
-        itemCountsContainer.clear();
-        if (MinecraftClient.getInstance().player == null)
+        ScreenHandler handler = MinecraftClient.getInstance().player != null ? MinecraftClient.getInstance().player.currentScreenHandler : null;
+        if (handler == null) {
+            itemSlots.clear();
+            slots = new Slot[0];
+            dirtySlots.clear();
             return;
-        ScreenHandler handler = MinecraftClient.getInstance().player.currentScreenHandler;
-        if (handler == null)
+        }
+        if (rebuildAll) {
+            rebuildAll = false;
+            dirtySlots.clear();
+            rebuild(handler);
             return;
-        for (Slot slot : Slot.getCurrentScreenSlots()) {
-            // Ignore cursor slot, that's handled separately.
-            if (slot.equals(CursorSlot.SLOT))
-                continue;
-            ItemStack stack = StorageHelper.getItemStackInSlot(slot);
-            // Add separately if we're in a container vs player inventory.
-
-            if (!shouldIgnoreSlotForContainer(slot)) {
-                registerItem(stack, slot, slot.isSlotInPlayerInventory());
-            }
         }
+        for (int windowSlot = dirtySlots.nextSetBit(0); windowSlot >= 0; windowSlot = dirtySlots.nextSetBit(windowSlot + 1)) {
+            // The server can name slots our screen doesn't have
+            if (windowSlot >= slots.length)
+                break;
+            unregisterSlot(windowSlot);
+            registerSlot(windowSlot, itemSlots.isInPlayerInventory(windowSlot));
+        }
+        dirtySlots.clear();
     }
 
     @Override
     protected void reset() {
-        itemToSlotPlayer.clear();
-        itemToSlotContainer.clear();
-        itemCountsPlayer.clear();
-        itemCountsContainer.clear();
+        itemSlots.clear();
+        slots = new Slot[0];
+        _prevScreenHandler = null;
+        heldSelectedSlot = -1;
+        invalidateAll();
     }
 
     @Override
     protected boolean isDirty() {
-        ScreenHandler handler = MinecraftClient.getInstance().player != null ? MinecraftClient.getInstance().player.currentScreenHandler : null;
-        return super.isDirty() || handler != _prevScreenHandler;
+        // Don't care about the tracker manager marking us dirty every tick, we know exactly what changed
+        checkForUntrackedChanges();
+        return rebuildAll || !dirtySlots.isEmpty();
     }
 }
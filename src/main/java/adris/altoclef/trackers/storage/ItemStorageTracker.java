@@ -34,6 +34,12 @@ public class ItemStorageTracker extends Tracker {
         containerTrackerConsumer.accept(containers);
     }
 
+    // Count queries run many times a tick, so these don't get made fresh every time
+    private static final Slot[] FURNACE_CONVERSION_SLOTS = new Slot[]{FurnaceSlot.INPUT_SLOT_FUEL, FurnaceSlot.INPUT_SLOT_MATERIALS};
+    private static final Slot[] SMOKER_CONVERSION_SLOTS = new Slot[]{SmokerSlot.INPUT_SLOT_FUEL, SmokerSlot.INPUT_SLOT_MATERIALS};
+    private static final Slot[] BLAST_FURNACE_CONVERSION_SLOTS = new Slot[]{BlastFurnaceSlot.INPUT_SLOT_FUEL, BlastFurnaceSlot.INPUT_SLOT_MATERIALS};
+    private static final Slot[] NO_CONVERSION_SLOTS = new Slot[0];
+
     private static Slot[] getCurrentConversionSlots() {
         // TODO: Anvil input, anything else...
         if (StorageHelper.isPlayerInventoryOpen()) {
@@ -41,13 +47,13 @@ public class ItemStorageTracker extends Tracker {
         } else if (StorageHelper.isBigCraftingOpen()) {
             return CraftingTableSlot.INPUT_SLOTS;
         } else if (StorageHelper.isFurnaceOpen()) {
-            return new Slot[]{FurnaceSlot.INPUT_SLOT_FUEL, FurnaceSlot.INPUT_SLOT_MATERIALS};
+            return FURNACE_CONVERSION_SLOTS;
         } else if (StorageHelper.isSmokerOpen()) {
-            return new Slot[]{SmokerSlot.INPUT_SLOT_FUEL, SmokerSlot.INPUT_SLOT_MATERIALS};
+            return SMOKER_CONVERSION_SLOTS;
         } else if (StorageHelper.isBlastFurnaceOpen()) {
-            return new Slot[]{BlastFurnaceSlot.INPUT_SLOT_FUEL, BlastFurnaceSlot.INPUT_SLOT_MATERIALS};
+            return BLAST_FURNACE_CONVERSION_SLOTS;
         }
-        return new Slot[0];
+        return NO_CONVERSION_SLOTS;
     }
 
     /**
@@ -55,18 +61,22 @@ public class ItemStorageTracker extends Tracker {
      * (ex. crafting table slots/furnace input, stuff the player is use )
      */
     public int getItemCount(Item... items) {
-        int inConversionSlots = Arrays.stream(getCurrentConversionSlots()).mapToInt(slot -> {
+        int inConversionSlots = 0;
+        for (Slot slot : getCurrentConversionSlots()) {
             ItemStack stack = StorageHelper.getItemStackInSlot(slot);
             if (ArrayUtils.contains(items, stack.getItem())) {
-                return stack.getCount();
+                inConversionSlots += stack.getCount();
             }
-            return 0;
-        }).reduce(0, Integer::sum);
+        }
         return inventory.getItemCount(true, false, items) + inConversionSlots;
     }
 
     public int getItemCount(ItemTarget... targets) {
-        return Arrays.stream(targets).mapToInt(target -> getItemCount(target.getMatches())).reduce(0, Integer::sum);
+        int result = 0;
+        for (ItemTarget target : targets) {
+            result += getItemCount(target.getMatches());
+        }
+        return result;
     }
 
     /**
@@ -76,6 +86,13 @@ public class ItemStorageTracker extends Tracker {
         return inventory.getItemCount(true, true, items);
     }
 
+    /**
+     * @see InventorySubTracker#getInventoryVersion()
+     */
+    public long getInventoryVersion() {
+        return inventory.getInventoryVersion();
+    }
+
     /**
      * Gets the number of items STRICTLY in the player's inventory.
      * <p>
@@ -98,10 +115,12 @@ public class ItemStorageTracker extends Tracker {
      * (ex. crafting table slots/furnace input, stuff the player is use )
      */
     public boolean hasItem(Item... items) {
-        return Arrays.stream(getCurrentConversionSlots()).anyMatch(slot -> {
-            ItemStack stack = StorageHelper.getItemStackInSlot(slot);
-            return ArrayUtils.contains(items, stack.getItem());
-        }) || inventory.hasItem(true, items);
+        for (Slot slot : getCurrentConversionSlots()) {
+            if (ArrayUtils.contains(items, StorageHelper.getItemStackInSlot(slot).getItem())) {
+                return true;
+            }
+        }
+        return inventory.hasItem(true, items);
     }
 
     public boolean hasItem(boolean playerInventoryOnly, Item... items) {
@@ -118,7 +137,11 @@ public class ItemStorageTracker extends Tracker {
     }
 
     public boolean hasItem(ItemTarget... targets) {
-        return Arrays.stream(targets).anyMatch(target -> hasItem(target.getMatches()));
+        for (ItemTarget target : targets) {
+            if (hasItem(target.getMatches()))
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -184,13 +207,7 @@ public class ItemStorageTracker extends Tracker {
     }
 
     public Optional<Slot> getSlotThatCanFitInPlayerInventory(ItemStack stack, boolean acceptPartial) {
-        List<Slot> slots = getSlotsThatCanFitInPlayerInventory(stack, acceptPartial);
-        if (!slots.isEmpty()) {
-            for (Slot slot : slots) {
-                return Optional.ofNullable(slot);
-            }
-        }
-        return Optional.empty();
+        return inventory.getSlotThatCanFit(true, false, stack, acceptPartial);
     }
 
     /**
@@ -204,13 +221,7 @@ public class ItemStorageTracker extends Tracker {
     }
 
     public Optional<Slot> getSlotThatCanFitInOpenContainer(ItemStack stack, boolean acceptPartial) {
-        List<Slot> slots = getSlotsThatCanFitInOpenContainer(stack, acceptPartial);
-        if (!slots.isEmpty()) {
-            for (Slot slot : slots) {
-                return Optional.ofNullable(slot);
-            }
-        }
-        return Optional.empty();
+        return inventory.getSlotThatCanFit(false, true, stack, acceptPartial);
     }
 
     /**
@@ -228,7 +239,8 @@ public class ItemStorageTracker extends Tracker {
     }
 
     public void registerSlotAction() {
-        inventory.setDirty();
+        // Shift and double clicks can shuffle slots all over, just rescan
+        inventory.invalidateAll();
     }
 
     /**
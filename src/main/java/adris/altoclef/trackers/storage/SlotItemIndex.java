@@ -0,0 +1,121 @@
+package adris.altoclef.trackers.storage;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Which window slots hold which item, and how many of each item there are, split between the player's inventory and
+ * the open container. {@link InventorySubTracker} keeps one in sync with the open screen.
+ * <p>
+ * Empty slots are filed under air, that's how we find free space.
+ */
+public class SlotItemIndex {
+
+    // Indexed by item raw id, grown as we meet new items
+    private int[] itemCountsPlayer = new int[0];
+    private int[] itemCountsContainer = new int[0];
+    // Window slots holding each item. Made the first time we see the item, then reused so updates don't allocate.
+    private BitSet[] itemToSlotPlayer = new BitSet[0];
+    private BitSet[] itemToSlotContainer = new BitSet[0];
+
+    // What each window slot was registered as (item raw id and count)
+    private int[] slotItems = new int[0];
+    private int[] slotCounts = new int[0];
+    private boolean[] slotInPlayerInventory = new boolean[0];
+
+    /**
+     * Forgets every slot and makes room for `slotCount` of them.
+     */
+    public void reset(int slotCount) {
+        clear();
+        if (slotItems.length != slotCount) {
+            slotItems = new int[slotCount];
+            slotCounts = new int[slotCount];
+            slotInPlayerInventory = new boolean[slotCount];
+        }
+    }
+
+    /**
+     * Forgets every slot, keeping the room.
+     */
+    public void clear() {
+        Arrays.fill(itemCountsPlayer, 0);
+        Arrays.fill(itemCountsContainer, 0);
+        for (BitSet itemSlots : itemToSlotPlayer) {
+            if (itemSlots != null)
+                itemSlots.clear();
+        }
+        for (BitSet itemSlots : itemToSlotContainer) {
+            if (itemSlots != null)
+                itemSlots.clear();
+        }
+    }
+
+    /**
+     * Files `stack` under `windowSlot`. The slot must not be registered already, see {@link #unregister(int)}.
+     */
+    public void register(int windowSlot, boolean playerInventory, ItemStack stack) {
+        Item item = stack.getItem();
+        int count = stack.getCount();
+        if (stack.isEmpty()) {
+            item = Items.AIR;
+            count = 0;
+        }
+        int id = Item.getRawId(item);
+        slotItems[windowSlot] = id;
+        slotCounts[windowSlot] = count;
+        slotInPlayerInventory[windowSlot] = playerInventory;
+
+        ensureItemCapacity(id);
+        BitSet[] slotsByItem = playerInventory ? itemToSlotPlayer : itemToSlotContainer;
+        if (slotsByItem[id] == null)
+            slotsByItem[id] = new BitSet();
+        slotsByItem[id].set(windowSlot);
+        (playerInventory ? itemCountsPlayer : itemCountsContainer)[id] += count;
+    }
+
+    public void unregister(int windowSlot) {
+        int id = slotItems[windowSlot];
+        boolean playerInventory = slotInPlayerInventory[windowSlot];
+        (playerInventory ? itemToSlotPlayer : itemToSlotContainer)[id].clear(windowSlot);
+        (playerInventory ? itemCountsPlayer : itemCountsContainer)[id] -= slotCounts[windowSlot];
+    }
+
+    public boolean isInPlayerInventory(int windowSlot) {
+        return slotInPlayerInventory[windowSlot];
+    }
+
+    public int getCount(boolean playerInventory, Item item) {
+        int id = Item.getRawId(item);
+        int[] counts = playerInventory ? itemCountsPlayer : itemCountsContainer;
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    /**
+     * Window slots holding `item`, null if we never saw it. Don't modify.
+     */
+    public BitSet getSlots(boolean playerInventory, Item item) {
+        int id = Item.getRawId(item);
+        BitSet[] slotsByItem = playerInventory ? itemToSlotPlayer : itemToSlotContainer;
+        return id < slotsByItem.length ? slotsByItem[id] : null;
+    }
+
+    public boolean hasSlots(boolean playerInventory, Item item) {
+        BitSet itemSlots = getSlots(playerInventory, item);
+        return itemSlots != null && !itemSlots.isEmpty();
+    }
+
+    private void ensureItemCapacity(int id) {
+        if (id < itemCountsPlayer.length)
+            return;
+        int size = Math.max(id + 1, itemCountsPlayer.length * 2);
+        itemCountsPlayer = Arrays.copyOf(itemCountsPlayer, size);
+        itemCountsContainer = Arrays.copyOf(itemCountsContainer, size);
+        itemToSlotPlayer = Arrays.copyOf(itemToSlotPlayer, size);
+        itemToSlotContainer = Arrays.copyOf(itemToSlotContainer, size);
+    }
+}
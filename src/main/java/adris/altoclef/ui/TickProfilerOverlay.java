@@ -0,0 +1,103 @@
+package adris.altoclef.ui;
+
+import adris.altoclef.AltoClef;
+import adris.altoclef.multiversion.DrawContextWrapper;
+import adris.altoclef.util.profiler.TickProfiler;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.util.math.MatrixStack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Shows where the last tick's time went (as a tree, slowest first), the last tick's counters
+ * and which labels are the slowest over time, see {@link TickProfiler}.
+ */
+public class TickProfilerOverlay {
+
+    private static final int MAX_TREE_LINES = 24;
+    private static final int MAX_DEPTH = 8;
+    private static final int MAX_STAT_LINES = 10;
+    // Don't bother showing anything faster than this
+    private static final long MIN_SHOWN_NANOS = 50_000;
+
+    private final TextRenderer textRenderer;
+
+    // Percentiles only change once per tick, no need to sort them every frame
+    private List<TickProfiler.Stats> cachedStats = Collections.emptyList();
+    private long cachedStatsTick = -1;
+
+    public TickProfilerOverlay(TextRenderer textRenderer) {
+        this.textRenderer = textRenderer;
+    }
+
+    public void render(AltoClef mod, DrawContextWrapper context) {
+        if (TickProfiler.getTickCount() != cachedStatsTick) {
+            cachedStats = TickProfiler.getStats();
+            cachedStatsTick = TickProfiler.getTickCount();
+        }
+
+        List<String> lines = new ArrayList<>();
+        TickProfiler.Node root = TickProfiler.getLastTick();
+        lines.add("Last tick: " + formatMillis(root.getNanos()));
+        addTree(root, 1, lines);
+
+        List<String> counters = new ArrayList<>(TickProfiler.getLastTickCounts().keySet());
+        if (!counters.isEmpty()) {
+            Collections.sort(counters);
+            lines.add("");
+            lines.add("Counters (last tick)");
+            for (String counter : counters) {
+                lines.add("  " + counter + ": " + TickProfiler.getLastTickCounts().getLong(counter));
+            }
+        }
+
+        lines.add("");
+        lines.add("Slowest (p50 / p99 / max over " + TickProfiler.SAMPLE_WINDOW + " ticks)");
+        for (int i = 0; i < Math.min(MAX_STAT_LINES, cachedStats.size()); i++) {
+            TickProfiler.Stats stats = cachedStats.get(i);
+            lines.add(stats.label() + ": " + formatMillis(stats.p50Nanos()) + " / " + formatMillis(stats.p99Nanos()) + " / " + formatMillis(stats.maxNanos()));
+        }
+
+        MatrixStack matrices = context.getMatrices();
+        matrices.push();
+        matrices.scale(0.5f, 0.5f, 0.5f);
+
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, textRenderer.getWidth(line));
+        }
+        int lineHeight = textRenderer.fontHeight + 2;
+        int x = context.getScaledWindowWidth() * 2 - width - 10;
+        int y = 10;
+        context.fill(x - 2, y - 2, x + width + 2, y + lines.size() * lineHeight, 0x90505050);
+        for (String line : lines) {
+            context.drawText(textRenderer, line, x, y, 0xFFE9E9E9, true);
+            y += lineHeight;
+        }
+
+        matrices.pop();
+    }
+
+    private void addTree(TickProfiler.Node node, int depth, List<String> lines) {
+        if (depth > MAX_DEPTH) return;
+
+        List<TickProfiler.Node> children = new ArrayList<>(node.getChildren());
+        children.sort(Comparator.comparingLong(TickProfiler.Node::getNanos).reversed());
+        for (TickProfiler.Node child : children) {
+            if (lines.size() >= MAX_TREE_LINES) return;
+            if (child.getCalls() == 0 || child.getNanos() < MIN_SHOWN_NANOS) continue;
+
+            String calls = child.getCalls() > 1 ? " x" + child.getCalls() : "";
+            lines.add("  ".repeat(depth) + child.getLabel() + calls + ": " + formatMillis(child.getNanos())
+                    + " (self " + formatMillis(child.getSelfNanos()) + ")");
+            addTree(child, depth + 1, lines);
+        }
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.2f ms", nanos / 1_000_000.0);
+    }
+}
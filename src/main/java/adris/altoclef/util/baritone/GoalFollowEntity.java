@@ -23,11 +23,9 @@ public class GoalFollowEntity implements Goal {
 
     @Override
     public double heuristic(int x, int y, int z) {
-        //synchronized (BaritoneHelper.MINECRAFT_LOCK) {
         double xDiff = x - entity.getPos().getX();
         int yDiff = y - entity.getBlockPos().getY();
         double zDiff = z - entity.getPos().getZ();
         return GoalBlock.calculate(xDiff, yDiff, zDiff);
-        //}
     }
 }
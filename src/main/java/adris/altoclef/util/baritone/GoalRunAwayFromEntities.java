@@ -1,15 +1,17 @@
 package adris.altoclef.util.baritone;
 
 import adris.altoclef.AltoClef;
-import adris.altoclef.util.helpers.BaritoneHelper;
 import baritone.api.pathing.goals.Goal;
 import baritone.api.pathing.goals.GoalXZ;
 import baritone.api.pathing.goals.GoalYLevel;
 import net.minecraft.entity.Entity;
 
+import java.util.ArrayList;
 import java.util.List;
 
-public abstract class GoalRunAwayFromEntities implements Goal {
+public abstract class GoalRunAwayFromEntities implements Goal, TickRefreshedGoal {
+
+    private static final Threat[] NO_THREATS = new Threat[0];
 
     private final AltoClef mod;
     private final double distance;
@@ -21,6 +23,9 @@ public abstract class GoalRunAwayFromEntities implements Goal {
     // Too low: We will just run straight into the entity to go past it.
     private final double penaltyFactor;
 
+    // Where everything we're running from was as of the last refresh. Only ever swapped out whole, so the pather can read it without locking.
+    private volatile Threat[] threats = NO_THREATS;
+
     public GoalRunAwayFromEntities(AltoClef mod, double distance, boolean xzOnly, double penaltyFactor) {
         this.mod = mod;
         this.distance = distance;
@@ -28,22 +33,23 @@ public abstract class GoalRunAwayFromEntities implements Goal {
         this.penaltyFactor = penaltyFactor;
     }
 
+    @Override
+    public void refresh() {
+        List<Threat> snapshot = new ArrayList<>();
+        for (Entity entity : getEntities(mod)) {
+            if (entity == null || !entity.isAlive()) continue;
+            snapshot.add(new Threat(entity, getThreatWeight(entity)));
+        }
+        threats = snapshot.toArray(NO_THREATS);
+    }
+
     @Override
     public boolean isInGoal(int x, int y, int z) {
-        List<Entity> entities = getEntities(mod);
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            if (!entities.isEmpty()) {
-                for (Entity entity : entities) {
-                    if (entity == null || !entity.isAlive()) continue;
-                    double sqDistance;
-                    if (xzOnly) {
-                        sqDistance = entity.getPos().subtract(x, y, z).multiply(1, 0, 1).lengthSquared();
-                    } else {
-                        sqDistance = entity.squaredDistanceTo(x, y, z);
-                    }
-                    if (sqDistance < distance * distance) return false;
-                }
-            }
+        for (Threat threat : threats) {
+            double dx = threat.x - x,
+                    dy = xzOnly ? 0 : threat.y - y,
+                    dz = threat.z - z;
+            if (dx * dx + dy * dy + dz * dz < distance * distance) return false;
         }
         return true;
     }
@@ -51,42 +57,65 @@ public abstract class GoalRunAwayFromEntities implements Goal {
     @Override
     public double heuristic(int x, int y, int z) {
         // The lower the cost, the better.
+        Threat[] threats = this.threats;
+        if (threats.length == 0) return 0;
         double costSum = 0;
-        List<Entity> entities = getEntities(mod);
-        synchronized (BaritoneHelper.MINECRAFT_LOCK) {
-            int max = 10; // If we have 100 players, this will never calculate.
-            int counter = 0;
-            if (!entities.isEmpty()) {
-                for (Entity entity : entities) {
-                    counter++;
-                    if (entity == null || !entity.isAlive()) continue;
-                    double cost = getCostOfEntity(entity, x, y, z);
-                    if (cost != 0) {
-                        // We want the CLOSER entities to have a bigger weight than the further ones.
-                        costSum += 1 / cost;
-                    } else {
-                        // Bad >:(
-                        costSum += 1000;
-                    }
-                    if (counter >= max) break;
-                }
+        for (Threat threat : threats) {
+            double cost = getCostOfThreat(threat, x, y, z);
+            if (cost != 0) {
+                // We want the CLOSER entities to have a bigger weight than the further ones.
+                costSum += 1 / cost;
+            } else {
+                // Bad >:(
+                costSum += 1000;
             }
-            if (counter > 0) {
-                costSum /= counter;
-            }
-            return costSum * penaltyFactor;
         }
+        return costSum / threats.length * penaltyFactor;
     }
 
+    /**
+     * Runs on the client thread.
+     */
     protected abstract List<Entity> getEntities(AltoClef mod);
 
-    // Virtual
-    protected double getCostOfEntity(Entity entity, int x, int y, int z) {
+    /**
+     * Virtual. Runs on the client thread when snapshotting, so this is the place to look at the entity.
+     *
+     * @return Stored as {@link Threat#weight}
+     */
+    protected double getThreatWeight(Entity entity) {
+        return 1;
+    }
+
+    /**
+     * Virtual. Runs on the pathing thread, so only go off of what's in the snapshot. Lower is WORSE.
+     */
+    protected double getCostOfThreat(Threat threat, int x, int y, int z) {
         double heuristic = 0;
         if (!xzOnly) {
-            heuristic += GoalYLevel.calculate(entity.getBlockPos().getY(), y);
+            heuristic += GoalYLevel.calculate(threat.blockY, y);
+        }
+        heuristic += GoalXZ.calculate(threat.blockX - x, threat.blockZ - z);
+        return heuristic * threat.weight;
+    }
+
+    /**
+     * An entity we're running from, as of the last refresh.
+     */
+    protected static final class Threat {
+        public final double x, y, z;
+        public final int blockX, blockY, blockZ;
+        // Whatever the goal wants to scale this threat's cost by, see getThreatWeight
+        public final double weight;
+
+        private Threat(Entity entity, double weight) {
+            x = entity.getX();
+            y = entity.getY();
+            z = entity.getZ();
+            blockX = entity.getBlockX();
+            blockY = entity.getBlockY();
+            blockZ = entity.getBlockZ();
+            this.weight = weight;
         }
-        heuristic += GoalXZ.calculate(entity.getBlockPos().getX() - x, entity.getBlockPos().getZ() - z);
-        return heuristic; //entity.squaredDistanceTo(x, y, z);
     }
 }
@@ -0,0 +1,193 @@
+package adris.altoclef.util.baritone;
+
+import adris.altoclef.util.helpers.ProjectileSimulator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.List;
+
+/**
+ * Which nodes around the player some projectile is headed for, worked out once for {@link GoalDodgeProjectiles}.
+ * <p>
+ * The pather asks about every node it expands, so instead of going over every projectile each time, we go over
+ * each projectile's simulated path once and remember just the nodes in danger. Never changes after it's built,
+ * so the pathing thread can read it without locking.
+ * <p>
+ * Nodes outside the built area still get the right answer, just computed on the spot. Same for projectiles whose
+ * path would cover too many nodes to be worth remembering.
+ */
+public class ProjectileHazardField {
+
+    // How far (horizontally) from the player we precompute
+    private static final int RADIUS = 32;
+    // A projectile covering more nodes than this is left out of the map and checked on the spot instead,
+    // so a handful of long shots can't stall the client thread
+    private static final int MAX_NODES_PER_PROJECTILE = 4096;
+    // How far (in blocks) a projectile may be off from where we simulated it before the field counts as outdated
+    private static final double PREDICTION_TOLERANCE = 0.3;
+
+    private final ProjectileSimulator simulation;
+    private final long builtAt;
+    private final double distanceHorizontal;
+    private final double distanceVertical;
+    private final int centerX;
+    private final int centerZ;
+
+    // Every node some projectile gets too close to -> its penalty, see getPenalty
+    private final Long2DoubleOpenHashMap hazards = new Long2DoubleOpenHashMap();
+    // Projectiles left out of `hazards`, see MAX_NODES_PER_PROJECTILE
+    private final int[] unmapped;
+
+    /**
+     * @param builtAt World time the simulation starts at, see {@link #stillPredicts(List, long)}
+     */
+    public ProjectileHazardField(ProjectileSimulator simulation, long builtAt, BlockPos center, double distanceHorizontal, double distanceVertical) {
+        this.simulation = simulation;
+        this.builtAt = builtAt;
+        this.distanceHorizontal = distanceHorizontal;
+        this.distanceVertical = distanceVertical;
+        centerX = center.getX();
+        centerZ = center.getZ();
+
+        // A path can pass the same node on several segments, a projectile only counts once (at its closest)
+        Long2DoubleOpenHashMap closest = new Long2DoubleOpenHashMap();
+        IntArrayList unmapped = new IntArrayList();
+        for (int p = 0; p < simulation.getProjectileCount(); ++p) {
+            closest.clear();
+            if (!rasterize(p, closest)) {
+                unmapped.add(p);
+                continue;
+            }
+            for (Long2DoubleMap.Entry entry : closest.long2DoubleEntrySet()) {
+                hazards.addTo(entry.getLongKey(), entry.getDoubleValue());
+            }
+        }
+        this.unmapped = unmapped.toIntArray();
+    }
+
+    // Fills `closest` with every node this projectile gets too close to. False if that's more than MAX_NODES_PER_PROJECTILE.
+    private boolean rasterize(int p, Long2DoubleOpenHashMap closest) {
+        for (int t = 0; t < simulation.getTicks(); ++t) {
+            double fromX = simulation.getX(p, t), fromZ = simulation.getZ(p, t),
+                    toX = simulation.getX(p, t + 1), toZ = simulation.getZ(p, t + 1);
+            int minX = Math.max(centerX - RADIUS, (int) Math.floor(Math.min(fromX, toX) - distanceHorizontal)),
+                    maxX = Math.min(centerX + RADIUS, (int) Math.ceil(Math.max(fromX, toX) + distanceHorizontal)),
+                    minZ = Math.max(centerZ - RADIUS, (int) Math.floor(Math.min(fromZ, toZ) - distanceHorizontal)),
+                    maxZ = Math.min(centerZ + RADIUS, (int) Math.ceil(Math.max(fromZ, toZ) + distanceHorizontal));
+            for (int x = minX; x <= maxX; ++x) {
+                for (int z = minZ; z <= maxZ; ++z) {
+                    double s = closestPoint(p, t, x, z);
+                    double flatDistanceSq = flatDistanceSq(p, t, s, x, z);
+                    if (!isHorizontallyClose(flatDistanceSq)) continue;
+                    double height = heightAt(p, t, s);
+                    for (int y = (int) Math.floor(height - distanceVertical); y <= (int) Math.ceil(height + distanceVertical); ++y) {
+                        if (Math.abs(y - height) < distanceVertical) {
+                            long key = BlockPos.asLong(x, y, z);
+                            if (!closest.containsKey(key) || flatDistanceSq < closest.get(key)) {
+                                closest.put(key, flatDistanceSq);
+                            }
+                        }
+                    }
+                }
+            }
+            if (closest.size() > MAX_NODES_PER_PROJECTILE) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether this field still describes these projectiles at world time `now`: nothing new got fired, nothing
+     * disappeared and everything is where we simulated it to be. The field already covers where they go next,
+     * so there's no point building it again.
+     * <p>
+     * Gives up halfway through the simulation, so there's always a good stretch of path ahead.
+     */
+    public boolean stillPredicts(List<CachedProjectile> projectiles, long now) {
+        long elapsed = now - builtAt;
+        if (elapsed < 0 || elapsed > simulation.getTicks() / 2) return false;
+        return simulation.predicts(projectiles, (int) elapsed, PREDICTION_TOLERANCE);
+    }
+
+    private boolean isPrecomputed(int x, int z) {
+        return Math.abs(x - centerX) <= RADIUS && Math.abs(z - centerZ) <= RADIUS;
+    }
+
+    /**
+     * Whether no projectile comes close to this node.
+     */
+    public boolean isSafe(int x, int y, int z) {
+        if (isPrecomputed(x, z)) {
+            return !hazards.containsKey(BlockPos.asLong(x, y, z)) && Double.isNaN(computePenalty(x, y, z, true));
+        }
+        return Double.isNaN(computePenalty(x, y, z, false));
+    }
+
+    /**
+     * For every projectile that comes close to this node, how far the node is from its path (squared, horizontally), added up.
+     * 0 if none come close.
+     */
+    public double getPenalty(int x, int y, int z) {
+        double penalty;
+        if (isPrecomputed(x, z)) {
+            penalty = computePenalty(x, y, z, true);
+            double mapped = hazards.get(BlockPos.asLong(x, y, z));
+            return Double.isNaN(penalty) ? mapped : penalty + mapped;
+        }
+        penalty = computePenalty(x, y, z, false);
+        return Double.isNaN(penalty) ? 0 : penalty;
+    }
+
+    // NaN if no projectile comes close. Doesn't allocate, the pather calls this for every node.
+    private double computePenalty(int x, int y, int z, boolean unmappedOnly) {
+        double penalty = Double.NaN;
+        int count = unmappedOnly ? unmapped.length : simulation.getProjectileCount();
+        for (int i = 0; i < count; ++i) {
+            int p = unmappedOnly ? unmapped[i] : i;
+            if (!simulation.pathIntersects(p, x - distanceHorizontal, y - distanceVertical, z - distanceHorizontal,
+                    x + distanceHorizontal, y + distanceVertical, z + distanceHorizontal)) continue;
+            double closest = Double.NaN;
+            for (int t = 0; t < simulation.getTicks(); ++t) {
+                double s = closestPoint(p, t, x, z);
+                double flatDistanceSq = flatDistanceSq(p, t, s, x, z);
+                if (isHorizontallyClose(flatDistanceSq) && Math.abs(y - heightAt(p, t, s)) < distanceVertical
+                        && (Double.isNaN(closest) || flatDistanceSq < closest)) {
+                    closest = flatDistanceSq;
+                }
+            }
+            if (!Double.isNaN(closest)) {
+                penalty = (Double.isNaN(penalty) ? 0 : penalty) + closest;
+            }
+        }
+        return penalty;
+    }
+
+    /**
+     * Where one tick of a projectile's path gets horizontally closest to a column, as how far along the segment (0 to 1).
+     */
+    private double closestPoint(int projectile, int tick, double x, double z) {
+        double fromX = simulation.getX(projectile, tick), fromZ = simulation.getZ(projectile, tick);
+        double dx = simulation.getX(projectile, tick + 1) - fromX,
+                dz = simulation.getZ(projectile, tick + 1) - fromZ;
+        double lengthSq = dx * dx + dz * dz;
+        // Straight up/down shots don't move sideways, the whole segment is at its start
+        return lengthSq == 0 ? 0 : Math.max(0, Math.min(1, (dx * (x - fromX) + dz * (z - fromZ)) / lengthSq));
+    }
+
+    private double flatDistanceSq(int projectile, int tick, double s, double x, double z) {
+        double fromX = simulation.getX(projectile, tick), fromZ = simulation.getZ(projectile, tick);
+        double hitX = fromX + (simulation.getX(projectile, tick + 1) - fromX) * s,
+                hitZ = fromZ + (simulation.getZ(projectile, tick + 1) - fromZ) * s;
+        return (x - hitX) * (x - hitX) + (z - hitZ) * (z - hitZ);
+    }
+
+    private double heightAt(int projectile, int tick, double s) {
+        double fromY = simulation.getY(projectile, tick);
+        return fromY + (simulation.getY(projectile, tick + 1) - fromY) * s;
+    }
+
+    private boolean isHorizontallyClose(double flatDistanceSq) {
+        return flatDistanceSq < distanceHorizontal * distanceHorizontal;
+    }
+}
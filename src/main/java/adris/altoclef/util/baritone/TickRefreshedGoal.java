@@ -0,0 +1,11 @@
+package adris.altoclef.util.baritone;
+
+/**
+ * A goal that works out what it needs from the world once a tick, on the client thread,
+ * so the pather can ask it about nodes from its own thread without touching the world.
+ * <p>
+ * {@link adris.altoclef.tasks.movement.CustomBaritoneGoalTask} calls {@link #refresh()} every tick for you.
+ */
+public interface TickRefreshedGoal {
+    void refresh();
+}
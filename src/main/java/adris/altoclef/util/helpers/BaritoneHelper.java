@@ -5,11 +5,6 @@ import net.minecraft.util.math.Vec3d;
 
 public class BaritoneHelper {
 
-    /**
-     * Use whenever accessing Minecraft data (from ClientWorld or ClientPlayerEntity) in baritone
-     */
-    public static final Object MINECRAFT_LOCK = new Object();
-
     public static double calculateGenericHeuristic(Vec3d start, Vec3d target) {
         return calculateGenericHeuristic(start.x, start.y, start.z, target.x, target.y, target.z);
     }
@@ -31,7 +31,7 @@ public class ConfigHelper {
     // For reloading
     private static final HashMap<String, Runnable> loadedConfigs = new HashMap<>();
 
-    private static File getConfigFile(String path) {
+    public static File getConfigFile(String path) {
         return Paths.get(ALTO_FOLDER, path).toFile();
     }
 
@@ -25,7 +25,7 @@ public class EntityHelper {
     public static boolean isAngryAtPlayer(AltoClef mod, Entity mob) {
         boolean hostile = isProbablyHostileToPlayer(mod, mob);
         if (mob instanceof LivingEntity entity) {
-            return hostile && entity.canSee(mod.getPlayer());
+            return hostile && LookHelper.canSee(entity, mod.getPlayer());
         }
         return hostile;
     }
@@ -0,0 +1,92 @@
+package adris.altoclef.util.helpers;
+
+import adris.altoclef.util.profiler.TickProfiler;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
+
+import java.util.function.BiPredicate;
+
+/**
+ * Remembers line of sight checks between entities until the end of the tick, see {@link LookHelper#seesPlayer}.
+ * <p>
+ * Several chains ask whether the same mob sees us every tick, and each ask is a block raycast (or two).
+ * Nothing moves mid-tick, so the first answer is good for the rest of it.
+ * <p>
+ * Only caches on the client thread, anyone else gets a fresh raycast.
+ */
+public final class LineOfSightCache {
+
+    /**
+     * How far from `from`'s eyes the first block on the way to `to` is, infinite if there's none.
+     * `targetIndex` picks the point on `to` we're looking at, see {@link LookHelper#seesPlayer(Entity, Entity, double)}.
+     */
+    @FunctionalInterface
+    interface HitDistance {
+        double trace(Entity from, Entity to, int targetIndex);
+    }
+
+    private static final String HIT_LABEL = "LineOfSight.hit";
+    private static final String MISS_LABEL = "LineOfSight.miss";
+
+    // One map per target point. Range isn't part of the key, so asking with another range reuses the same trace.
+    private static final Long2DoubleOpenHashMap[] hitDistances = {new Long2DoubleOpenHashMap(), new Long2DoubleOpenHashMap()};
+    private static final Long2BooleanOpenHashMap canSee = new Long2BooleanOpenHashMap();
+
+    static {
+        for (Long2DoubleOpenHashMap results : hitDistances) {
+            results.defaultReturnValue(Double.NaN);
+        }
+    }
+
+    private LineOfSightCache() {
+    }
+
+    /**
+     * Forgets everything, called at the start of every client tick.
+     */
+    public static void clear() {
+        for (Long2DoubleOpenHashMap results : hitDistances) {
+            results.clear();
+        }
+        canSee.clear();
+    }
+
+    static double hitDistance(Entity from, Entity to, int targetIndex, HitDistance trace) {
+        if (!MinecraftClient.getInstance().isOnThread()) {
+            return trace.trace(from, to, targetIndex);
+        }
+        Long2DoubleOpenHashMap results = hitDistances[targetIndex];
+        long key = key(from, to);
+        double distance = results.get(key);
+        if (!Double.isNaN(distance)) {
+            TickProfiler.count(HIT_LABEL);
+            return distance;
+        }
+        TickProfiler.count(MISS_LABEL);
+        distance = trace.trace(from, to, targetIndex);
+        results.put(key, distance);
+        return distance;
+    }
+
+    static boolean canSee(LivingEntity from, Entity to, BiPredicate<LivingEntity, Entity> trace) {
+        if (!MinecraftClient.getInstance().isOnThread()) {
+            return trace.test(from, to);
+        }
+        long key = key(from, to);
+        if (canSee.containsKey(key)) {
+            TickProfiler.count(HIT_LABEL);
+            return canSee.get(key);
+        }
+        TickProfiler.count(MISS_LABEL);
+        boolean result = trace.test(from, to);
+        canSee.put(key, result);
+        return result;
+    }
+
+    private static long key(Entity from, Entity to) {
+        return ((long) from.getId() << 32) | (to.getId() & 0xFFFFFFFFL);
+    }
+}
@@ -11,6 +11,7 @@ import baritone.api.utils.RotationUtils;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.LivingEntity;
 import net.minecraft.entity.passive.MerchantEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.projectile.ProjectileUtil;
@@ -140,6 +141,7 @@ public interface LookHelper {
 
     /**
      * Determines if the given entity can see the player within the specified range.
+     * Each raycast is only done once per tick whatever the range, see {@link LineOfSightCache}.
      *
      * @param entity   the entity to check visibility from
      * @param player   the player entity to check visibility to
@@ -147,7 +149,10 @@ public interface LookHelper {
      * @return true if the player is visible within the specified range, false otherwise
      */
     static boolean seesPlayer(Entity entity, Entity player, double maxRange) {
-        return seesPlayer(entity, player, maxRange, new Vec3d(0, 0, 0), new Vec3d(0, 0, 0));
+        // Same as the offset version with no offsets: the eyes, then a block lower. A clean line within maxRange means
+        // the first block in the way (if any) is further than that.
+        return LineOfSightCache.hitDistance(entity, player, 0, LookHelper::blockHitDistance) > maxRange
+                || LineOfSightCache.hitDistance(entity, player, 1, LookHelper::blockHitDistance) > maxRange;
     }
 
     /**
@@ -423,6 +428,31 @@ public interface LookHelper {
         return cleanLineOfSight(entity, entityCameraPos, playerCameraPos, maxRange);
     }
 
+    /**
+     * How far from the entity's eyes the first block on the way to the target's eyes is, infinite if nothing's in the way.
+     *
+     * @param entity      The entity doing the looking.
+     * @param target      The entity being looked at.
+     * @param blocksBelow How far below the target's eyes to aim.
+     * @return The distance to the first block hit.
+     */
+    private static double blockHitDistance(Entity entity, Entity target, int blocksBelow) {
+        Vec3d start = getCameraPos(entity);
+        BlockHitResult hit = raycast(entity, start, getCameraPos(target).add(0, -blocksBelow, 0), Double.POSITIVE_INFINITY);
+        return hit.getType() == HitResult.Type.MISS ? Double.POSITIVE_INFINITY : hit.getPos().distanceTo(start);
+    }
+
+    /**
+     * Same as {@link LivingEntity#canSee(Entity)}, but only raycasts once per tick for each pair, see {@link LineOfSightCache}.
+     *
+     * @param entity The entity doing the looking.
+     * @param target The entity being looked at.
+     * @return True if the entity can see the target, false otherwise.
+     */
+    static boolean canSee(LivingEntity entity, Entity target) {
+        return LineOfSightCache.canSee(entity, target, LivingEntity::canSee);
+    }
+
     /**
      * Checks if the player is colliding with an interactable object.
      *
@@ -6,6 +6,8 @@ import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.projectile.ExplosiveProjectileEntity;
 import net.minecraft.entity.projectile.ProjectileEntity;
+import net.minecraft.entity.projectile.TridentEntity;
+import net.minecraft.entity.projectile.thrown.ThrownEntity;
 import net.minecraft.util.math.Vec3d;
 
 /**
@@ -15,12 +17,35 @@ public class ProjectileHelper {
 
     public static final double ARROW_GRAVITY_ACCEL = 0.05000000074505806;
     public static final double THROWN_ENTITY_GRAVITY_ACCEL = 0.03;
+    public static final double AIR_DRAG = 0.99;
+    public static final double ARROW_WATER_DRAG = 0.6;
+    public static final double THROWN_ENTITY_WATER_DRAG = 0.8;
 
     public static boolean hasGravity(ProjectileEntity entity) {
         if (entity instanceof ExplosiveProjectileEntity) return false;
         return !entity.hasNoGravity();
     }
 
+    /**
+     * How much a projectile's vertical velocity drops every tick.
+     */
+    public static double getGravity(ProjectileEntity entity) {
+        if (!hasGravity(entity)) return 0;
+        if (entity instanceof ThrownEntity) return THROWN_ENTITY_GRAVITY_ACCEL;
+        return ARROW_GRAVITY_ACCEL;
+    }
+
+    /**
+     * What a projectile's velocity gets multiplied by every tick, in whatever it's flying through right now.
+     */
+    public static double getDrag(ProjectileEntity entity) {
+        // Fireballs speed up to a top speed and then stay there, close enough to not slowing down at all
+        if (entity instanceof ExplosiveProjectileEntity) return 1;
+        if (!entity.isTouchingWater() || entity instanceof TridentEntity) return AIR_DRAG;
+        if (entity instanceof ThrownEntity) return THROWN_ENTITY_WATER_DRAG;
+        return ARROW_WATER_DRAG;
+    }
+
     // If we shoot on a 2d plane, what is the 2d point on that trajectory closest to our player pos?
     private static Vec3d getClosestPointOnFlatLine(double shootX, double shootZ, double velX, double velZ, double playerX, double playerZ) {
         double deltaX = playerX - shootX,
@@ -47,6 +72,8 @@ public class ProjectileHelper {
      * Calculates where we think an arrow will "hit" us, or at least where it will be at its closest.
      * Does so by figuring out the closest X-Z coordinate of the arrow's trajectory and then using the height
      * of the arrow when it reaches that point as the result's Y value.
+     * <p>
+     * Rough, ignores drag. For tracked projectiles {@link ProjectileSimulator} is both closer and cheaper.
      */
     public static Vec3d calculateArrowClosestApproach(Vec3d shootOrigin, Vec3d shootVelocity, double yGravity, Vec3d playerOrigin) {
         Vec3d flatEncounter = getClosestPointOnFlatLine(shootOrigin.x, shootOrigin.z, shootVelocity.x, shootVelocity.z, playerOrigin.x, playerOrigin.z);
@@ -0,0 +1,152 @@
+package adris.altoclef.util.helpers;
+
+import adris.altoclef.util.baritone.CachedProjectile;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.List;
+
+/**
+ * Where a batch of projectiles will be over the next few ticks, stepped the same way Minecraft moves them:
+ * every tick the position moves by the velocity, then the velocity gets multiplied by the drag and gravity gets taken off.
+ * <p>
+ * Everything lives in flat arrays and all projectiles are stepped together, one tick at a time, so dozens of arrows
+ * cost a few thousand multiplications and no allocations past the arrays themselves.
+ * Never changes once simulated, so any thread can query it.
+ * <p>
+ * A projectile's path is the line segments between its position at consecutive ticks.
+ * It doesn't know about blocks, a projectile keeps flying through walls (and stays in whatever it started in, air or water).
+ */
+public final class ProjectileSimulator {
+
+    private final int count;
+    private final int ticks;
+    // Position of projectile p at tick t is at [t * count + p], tick 0 is where it is now
+    private final double[] x, y, z;
+    // Per projectile bounds of the whole path
+    private final double[] minX, minY, minZ, maxX, maxY, maxZ;
+
+    /**
+     * @param ticks How far ahead to simulate
+     */
+    public ProjectileSimulator(List<CachedProjectile> projectiles, int ticks) {
+        this.count = projectiles.size();
+        this.ticks = ticks;
+        x = new double[(ticks + 1) * count];
+        y = new double[(ticks + 1) * count];
+        z = new double[(ticks + 1) * count];
+        minX = new double[count];
+        minY = new double[count];
+        minZ = new double[count];
+        maxX = new double[count];
+        maxY = new double[count];
+        maxZ = new double[count];
+
+        double[] velocityX = new double[count], velocityY = new double[count], velocityZ = new double[count];
+        double[] gravity = new double[count], drag = new double[count];
+        for (int p = 0; p < count; ++p) {
+            CachedProjectile projectile = projectiles.get(p);
+            x[p] = minX[p] = maxX[p] = projectile.position.x;
+            y[p] = minY[p] = maxY[p] = projectile.position.y;
+            z[p] = minZ[p] = maxZ[p] = projectile.position.z;
+            velocityX[p] = projectile.velocity.x;
+            velocityY[p] = projectile.velocity.y;
+            velocityZ[p] = projectile.velocity.z;
+            gravity[p] = projectile.gravity;
+            drag[p] = projectile.drag;
+        }
+
+        for (int t = 1; t <= ticks; ++t) {
+            int previous = (t - 1) * count, current = t * count;
+            for (int p = 0; p < count; ++p) {
+                double nextX = x[previous + p] + velocityX[p],
+                        nextY = y[previous + p] + velocityY[p],
+                        nextZ = z[previous + p] + velocityZ[p];
+                x[current + p] = nextX;
+                y[current + p] = nextY;
+                z[current + p] = nextZ;
+                velocityX[p] *= drag[p];
+                velocityY[p] = velocityY[p] * drag[p] - gravity[p];
+                velocityZ[p] *= drag[p];
+
+                minX[p] = Math.min(minX[p], nextX);
+                minY[p] = Math.min(minY[p], nextY);
+                minZ[p] = Math.min(minZ[p], nextZ);
+                maxX[p] = Math.max(maxX[p], nextX);
+                maxY[p] = Math.max(maxY[p], nextY);
+                maxZ[p] = Math.max(maxZ[p], nextZ);
+            }
+        }
+    }
+
+    public int getProjectileCount() {
+        return count;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public double getX(int projectile, int tick) {
+        return x[tick * count + projectile];
+    }
+
+    public double getY(int projectile, int tick) {
+        return y[tick * count + projectile];
+    }
+
+    public double getZ(int projectile, int tick) {
+        return z[tick * count + projectile];
+    }
+
+    /**
+     * Whether these are the same projectiles (in the same order) and each is within `tolerance` blocks of where we
+     * simulated it to be at `tick`. In other words nothing new was fired and nothing got knocked off course.
+     */
+    public boolean predicts(List<CachedProjectile> projectiles, int tick, double tolerance) {
+        if (projectiles.size() != count || tick < 0 || tick > ticks) return false;
+        double toleranceSq = tolerance * tolerance;
+        for (int p = 0; p < count; ++p) {
+            Vec3d position = projectiles.get(p).position;
+            double dx = position.x - getX(p, tick), dy = position.y - getY(p, tick), dz = position.z - getZ(p, tick);
+            if (dx * dx + dy * dy + dz * dz > toleranceSq) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the projectile's path passes through this box at all, a cheap check before anything per segment.
+     */
+    public boolean pathIntersects(int projectile, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return this.maxX[projectile] >= minX && this.minX[projectile] <= maxX
+                && this.maxY[projectile] >= minY && this.minY[projectile] <= maxY
+                && this.maxZ[projectile] >= minZ && this.minZ[projectile] <= maxZ;
+    }
+
+    /**
+     * The point on the projectile's path closest to a position.
+     *
+     * @param out Gets the closest point's x, y and z, then when (in ticks, fractional) the projectile gets there
+     * @return The squared distance from the position to that point
+     */
+    public double closestApproach(int projectile, double posX, double posY, double posZ, double[] out) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int t = 0; t < ticks; ++t) {
+            int from = t * count + projectile, to = from + count;
+            double startX = x[from], startY = y[from], startZ = z[from];
+            double dx = x[to] - startX, dy = y[to] - startY, dz = z[to] - startZ;
+            double lengthSq = dx * dx + dy * dy + dz * dz;
+            double s = lengthSq == 0 ? 0 : ((posX - startX) * dx + (posY - startY) * dy + (posZ - startZ) * dz) / lengthSq;
+            s = Math.max(0, Math.min(1, s));
+            double hitX = startX + dx * s, hitY = startY + dy * s, hitZ = startZ + dz * s;
+            double distanceSq = (posX - hitX) * (posX - hitX) + (posY - hitY) * (posY - hitY) + (posZ - hitZ) * (posZ - hitZ);
+            if (distanceSq < best) {
+                best = distanceSq;
+                out[0] = hitX;
+                out[1] = hitY;
+                out[2] = hitZ;
+                out[3] = t + s;
+            }
+        }
+        return best;
+    }
+}
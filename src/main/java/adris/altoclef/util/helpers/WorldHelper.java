@@ -490,8 +490,11 @@ public interface WorldHelper {
 
     // Function to check if the player is surrounded on two or more sides
     static boolean isSurrounded(List<LivingEntity> entities) {
-        ClientPlayerEntity player = AltoClef.getInstance().getPlayer();
+        return isSurrounded(AltoClef.getInstance().getPlayer(), entities);
+    }
 
+    // Same, around any entity
+    public static boolean isSurrounded(Entity player, List<LivingEntity> entities) {
         BlockPos playerPos = player.getBlockPos();
 
         // Minimum number of sides to consider the origin surrounded
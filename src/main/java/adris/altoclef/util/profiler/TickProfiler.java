@@ -0,0 +1,312 @@
+package adris.altoclef.util.profiler;
+
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMaps;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Times what happens during one client tick and keeps it as a call tree, like a flame graph of a single tick.
+ * <p>
+ * Wrap work with {@link #push(String)} / {@link #pop()}, nested pushes become children. On top of the tree of the last tick,
+ * every label keeps its last {@link #SAMPLE_WINDOW} per-tick times, so we can tell p50 from p99.
+ * Things that are better counted than timed (cache hits and the like) go through {@link #count(String)}.
+ * <p>
+ * Only records on the client thread between {@link #beginTick()} and {@link #endTick()}, and only while enabled.
+ * Otherwise every call is a single check. Labels should be constants (or cached), building a string per call defeats the point.
+ * <p>
+ * The clock can be swapped with {@link #setClock(LongSupplier)}, to replay ticks with made up (but repeatable) timings.
+ */
+public class TickProfiler {
+
+    // How many ticks of history a label keeps for percentiles
+    public static final int SAMPLE_WINDOW = 200;
+    // Nodes that haven't run for this many ticks get dropped from the tree
+    private static final int PRUNE_AFTER_TICKS = 100;
+
+    private static final ClassValue<String> classLabels = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            // Anonymous classes don't have a simple name
+            return type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+        }
+    };
+
+    private static final Node root = new Node("tick", null);
+    private static final HashMap<String, Samples> samples = new HashMap<>();
+    // Per tick scratch, a label can show up in several places in the tree
+    private static final Object2LongOpenHashMap<String> tickTotals = new Object2LongOpenHashMap<>();
+    private static final Object2LongOpenHashMap<String> tickCounts = new Object2LongOpenHashMap<>();
+    private static final Object2LongOpenHashMap<String> lastTickCounts = new Object2LongOpenHashMap<>();
+
+    private static LongSupplier clock = System::nanoTime;
+    private static boolean enabled = false;
+    private static boolean recording = false;
+    private static Thread tickThread;
+    private static Node current = root;
+    private static long tickCount = 0;
+
+    public static void setEnabled(boolean enabled) {
+        if (TickProfiler.enabled && !enabled) {
+            reset();
+        }
+        TickProfiler.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Where times come from, {@link System#nanoTime()} by default. Resets what was recorded so far.
+     */
+    public static void setClock(LongSupplier clock) {
+        TickProfiler.clock = clock;
+        reset();
+    }
+
+    /**
+     * A cached label for a class, so hot paths don't build strings.
+     */
+    public static String labelOf(Class<?> type) {
+        return classLabels.get(type);
+    }
+
+    /**
+     * How many ticks were recorded so far, handy to tell whether anything changed since last time.
+     */
+    public static long getTickCount() {
+        return tickCount;
+    }
+
+    public static void beginTick() {
+        if (!enabled) return;
+
+        recording = true;
+        tickThread = Thread.currentThread();
+        tickCount++;
+        tickCounts.clear();
+        root.clearTimes();
+        current = root;
+        root.start = clock.getAsLong();
+    }
+
+    public static void endTick() {
+        if (!recording) return;
+
+        // Close anything left open (an exception skipped a pop)
+        long now = clock.getAsLong();
+        while (current != root) {
+            current.stop(now);
+            current = current.parent;
+        }
+        root.stop(now);
+        root.lastRunTick = tickCount;
+        recording = false;
+
+        lastTickCounts.clear();
+        lastTickCounts.putAll(tickCounts);
+
+        tickTotals.clear();
+        root.prune(tickCount - PRUNE_AFTER_TICKS);
+        root.addTotals(tickTotals);
+        for (Object2LongOpenHashMap.Entry<String> total : tickTotals.object2LongEntrySet()) {
+            samples.computeIfAbsent(total.getKey(), label -> new Samples()).add(total.getLongValue());
+        }
+    }
+
+    /**
+     * Starts timing `label` as a child of whatever is being timed right now.
+     */
+    public static void push(String label) {
+        if (!recording || Thread.currentThread() != tickThread) return;
+
+        Node child = current.getChild(label);
+        child.lastRunTick = tickCount;
+        child.start = clock.getAsLong();
+        current = child;
+    }
+
+    /**
+     * Stops timing whatever the last {@link #push(String)} started.
+     */
+    public static void pop() {
+        if (!recording || Thread.currentThread() != tickThread) return;
+        if (current == root) return;
+
+        current.stop(clock.getAsLong());
+        current = current.parent;
+    }
+
+    /**
+     * Adds one to `label`'s counter for this tick.
+     */
+    public static void count(String label) {
+        if (!recording || Thread.currentThread() != tickThread) return;
+
+        tickCounts.addTo(label, 1);
+    }
+
+    /**
+     * Every counter from the last finished tick. Only read it from the client thread.
+     */
+    public static Object2LongMap<String> getLastTickCounts() {
+        return Object2LongMaps.unmodifiable(lastTickCounts);
+    }
+
+    /**
+     * The call tree of the last finished tick. Only read it from the client thread.
+     */
+    public static Node getLastTick() {
+        return root;
+    }
+
+    /**
+     * Every label with its rolling percentiles, slowest p99 first.
+     */
+    public static List<Stats> getStats() {
+        List<Stats> result = new ArrayList<>(samples.size());
+        for (var entry : samples.entrySet()) {
+            Samples sample = entry.getValue();
+            result.add(new Stats(entry.getKey(), sample.percentile(0.5), sample.percentile(0.99), sample.max()));
+        }
+        result.sort((a, b) -> Long.compare(b.p99Nanos, a.p99Nanos));
+        return result;
+    }
+
+    public static void reset() {
+        root.children.clear();
+        root.clearTimes();
+        samples.clear();
+        tickCounts.clear();
+        lastTickCounts.clear();
+        current = root;
+        recording = false;
+    }
+
+    public record Stats(String label, long p50Nanos, long p99Nanos, long maxNanos) {
+    }
+
+    public static final class Node {
+        private final String label;
+        private final Node parent;
+        private final List<Node> children = new ArrayList<>();
+        private long start;
+        private long nanos;
+        private int calls;
+        private long lastRunTick;
+
+        private Node(String label, Node parent) {
+            this.label = label;
+            this.parent = parent;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Total time spent in here last tick, children included.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Time spent in here last tick, minus the time spent in children.
+         */
+        public long getSelfNanos() {
+            long self = nanos;
+            for (Node child : children) {
+                self -= child.nanos;
+            }
+            return self;
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        private Node getChild(String label) {
+            for (int i = 0; i < children.size(); i++) {
+                Node child = children.get(i);
+                if (child.label.equals(label)) return child;
+            }
+            Node child = new Node(label, this);
+            children.add(child);
+            return child;
+        }
+
+        private void stop(long now) {
+            nanos += now - start;
+            calls++;
+        }
+
+        private void clearTimes() {
+            nanos = 0;
+            calls = 0;
+            for (Node child : children) {
+                child.clearTimes();
+            }
+        }
+
+        private void prune(long oldestTick) {
+            for (int i = children.size() - 1; i >= 0; i--) {
+                Node child = children.get(i);
+                if (child.lastRunTick < oldestTick) {
+                    children.remove(i);
+                } else {
+                    child.prune(oldestTick);
+                }
+            }
+        }
+
+        private void addTotals(Object2LongOpenHashMap<String> totals) {
+            if (calls > 0) {
+                totals.addTo(label, nanos);
+            }
+            for (Node child : children) {
+                child.addTotals(totals);
+            }
+        }
+    }
+
+    // Ring buffer of the last SAMPLE_WINDOW per-tick times of one label
+    private static final class Samples {
+        private final long[] values = new long[SAMPLE_WINDOW];
+        private final long[] sorted = new long[SAMPLE_WINDOW];
+        private int count;
+        private int next;
+        private boolean sortedValid;
+
+        void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            count = Math.min(count + 1, values.length);
+            sortedValid = false;
+        }
+
+        long percentile(double p) {
+            if (count == 0) return 0;
+            if (!sortedValid) {
+                System.arraycopy(values, 0, sorted, 0, count);
+                Arrays.sort(sorted, 0, count);
+                sortedValid = true;
+            }
+            return sorted[Math.min(count - 1, (int) Math.ceil(p * count) - 1)];
+        }
+
+        long max() {
+            return percentile(1);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package adris.altoclef.eventbus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Every test publishes its own event type, topics are global
+public class EventBusTest {
+
+    private final List<Subscription<?>> subscriptions = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        for (Subscription<?> subscription : subscriptions) {
+            EventBus.unsubscribe(subscription);
+        }
+        subscriptions.clear();
+    }
+
+    private <S extends Subscription<?>> S track(S subscription) {
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "timed out waiting for the event worker");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private record OrderEvent(int value) {
+    }
+
+    @Test
+    public void higherPriorityGoesFirstThenSubscriptionOrder() {
+        List<String> received = new ArrayList<>();
+        track(EventBus.subscribe(OrderEvent.class, evt -> received.add("default a")));
+        track(EventBus.subscribe(OrderEvent.class, 5, evt -> received.add("high")));
+        track(EventBus.subscribe(OrderEvent.class, evt -> received.add("default b")));
+        track(EventBus.subscribe(OrderEvent.class, -5, evt -> received.add("low")));
+
+        EventBus.publish(new OrderEvent(0));
+
+        assertEquals(List.of("high", "default a", "default b", "low"), received);
+    }
+
+    private record ChangeEvent(int value) {
+    }
+
+    @Test
+    public void subscriptionChangesDuringPublishApplyRightAway() {
+        List<String> received = new ArrayList<>();
+        Subscription<ChangeEvent>[] later = new Subscription[1];
+        track(EventBus.subscribe(ChangeEvent.class, 1, evt -> {
+            received.add("first " + evt.value());
+            if (evt.value() == 0) {
+                EventBus.unsubscribe(later[0]);
+                track(EventBus.subscribe(ChangeEvent.class, evt2 -> received.add("new " + evt2.value())));
+            }
+        }));
+        later[0] = track(EventBus.subscribe(ChangeEvent.class, evt -> received.add("later " + evt.value())));
+
+        EventBus.publish(new ChangeEvent(0));
+        // Deleted before its turn, and the new one waits for the next event
+        assertEquals(List.of("first 0"), received);
+
+        EventBus.publish(new ChangeEvent(1));
+        assertEquals(List.of("first 0", "first 1", "new 1"), received);
+    }
+
+    private record DropEvent(int value) {
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestEvents() {
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1), done = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        AsyncSubscription<DropEvent> subscription = track(EventBus.subscribe(DropEvent.class, AsyncDelivery.dropOldest(4), evt -> {
+            if (evt.value() == 0) {
+                // Hold the worker so the queue fills up behind us
+                started.countDown();
+                await(release);
+            }
+            received.add(evt.value());
+            if (evt.value() == 20) done.countDown();
+        }));
+
+        EventBus.publish(new DropEvent(0));
+        await(started);
+        for (int i = 1; i <= 20; ++i) {
+            EventBus.publish(new DropEvent(i));
+        }
+        release.countDown();
+        await(done);
+
+        assertEquals(List.of(0, 17, 18, 19, 20), received);
+        assertEquals(16, subscription.getDroppedCount());
+    }
+
+    private record KeyedEvent(String key, int value) {
+    }
+
+    @Test
+    public void coalesceKeepsTheLatestPerKey() {
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1), done = new CountDownLatch(3);
+        List<KeyedEvent> received = Collections.synchronizedList(new ArrayList<>());
+        AsyncSubscription<KeyedEvent> subscription = track(EventBus.subscribe(KeyedEvent.class, AsyncDelivery.coalesce(4, KeyedEvent::key), evt -> {
+            if (evt.key().equals("hold")) {
+                started.countDown();
+                await(release);
+            }
+            received.add(evt);
+            done.countDown();
+        }));
+
+        EventBus.publish(new KeyedEvent("hold", 0));
+        await(started);
+        EventBus.publish(new KeyedEvent("a", 1));
+        EventBus.publish(new KeyedEvent("b", 2));
+        EventBus.publish(new KeyedEvent("a", 3));
+        EventBus.publish(new KeyedEvent("a", 4));
+        release.countDown();
+        await(done);
+
+        // "a" keeps its place in line but delivers its latest value
+        assertEquals(List.of(new KeyedEvent("hold", 0), new KeyedEvent("a", 4), new KeyedEvent("b", 2)), received);
+        // Replaced events aren't dropped, they're superseded
+        assertEquals(0, subscription.getDroppedCount());
+    }
+
+    @Test
+    public void coalesceDropsTheOldestKeyWhenFull() {
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1), done = new CountDownLatch(3);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        record FullEvent(String key) {
+        }
+        AsyncSubscription<FullEvent> subscription = track(EventBus.subscribe(FullEvent.class, AsyncDelivery.coalesce(2, FullEvent::key), evt -> {
+            if (evt.key().equals("hold")) {
+                started.countDown();
+                await(release);
+            }
+            received.add(evt.key());
+            done.countDown();
+        }));
+
+        EventBus.publish(new FullEvent("hold"));
+        await(started);
+        EventBus.publish(new FullEvent("a"));
+        EventBus.publish(new FullEvent("b"));
+        EventBus.publish(new FullEvent("c"));
+        release.countDown();
+        await(done);
+
+        assertEquals(List.of("hold", "b", "c"), received);
+        assertEquals(1, subscription.getDroppedCount());
+    }
+
+    private record BlockEvent(int value) {
+    }
+
+    @Test
+    public void blockDeliversEverythingInOrder() {
+        int count = 50;
+        CountDownLatch done = new CountDownLatch(count);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        AsyncSubscription<BlockEvent> subscription = track(EventBus.subscribe(BlockEvent.class, AsyncDelivery.block(2), evt -> {
+            // Slower than we publish, so the queue is full most of the time
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(evt.value());
+            done.countDown();
+        }));
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            EventBus.publish(new BlockEvent(i));
+            expected.add(i);
+        }
+        await(done);
+
+        assertEquals(expected, received);
+        assertEquals(0, subscription.getDroppedCount());
+    }
+
+    private record DeleteEvent(int value) {
+    }
+
+    @Test
+    public void deletedAsyncSubscriptionGetsNothingQueued() {
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1), finished = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        AsyncSubscription<DeleteEvent> subscription = track(EventBus.subscribe(DeleteEvent.class, AsyncDelivery.dropOldest(8), evt -> {
+            if (evt.value() == 0) {
+                started.countDown();
+                await(release);
+            }
+            received.add(evt.value());
+            finished.countDown();
+        }));
+
+        EventBus.publish(new DeleteEvent(0));
+        await(started);
+        EventBus.publish(new DeleteEvent(1));
+        EventBus.publish(new DeleteEvent(2));
+        EventBus.unsubscribe(subscription);
+        release.countDown();
+        await(finished);
+
+        // Anything after this would come from the worker, give it a moment to misbehave
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        assertEquals(List.of(0), received);
+    }
+}
@@ -0,0 +1,172 @@
+package adris.altoclef.tasksystem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskRunnerTest {
+
+    // What every chain got asked to do, in order
+    private final List<String> calls = new ArrayList<>();
+    private TaskRunner runner;
+
+    @BeforeEach
+    public void setUp() {
+        calls.clear();
+        // The chain loop never touches the mod
+        runner = new TaskRunner(null);
+    }
+
+    private class StubChain extends TaskChain {
+        private final String name;
+        private float priority;
+        private float ceiling = Float.POSITIVE_INFINITY;
+        private boolean active = true;
+        private TaskChain interruptedBy;
+
+        StubChain(String name, float priority) {
+            super(runner);
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        protected void onPreTick() {
+            calls.add("pre " + name);
+        }
+
+        @Override
+        public float getPriority() {
+            calls.add("ask " + name);
+            return priority;
+        }
+
+        @Override
+        public float getPriorityCeiling() {
+            return ceiling;
+        }
+
+        @Override
+        protected void onTick() {
+            calls.add("tick " + name);
+        }
+
+        @Override
+        protected void onStop() {
+        }
+
+        @Override
+        public void onInterrupt(TaskChain other) {
+            interruptedBy = other;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    // Has to be a constant, the runner asks while the chain is still being constructed
+    private class SafetyChain extends StubChain {
+        SafetyChain(String name, float priority) {
+            super(name, priority);
+        }
+
+        @Override
+        public boolean isSafetyCritical() {
+            return true;
+        }
+    }
+
+    private List<String> callsStartingWith(String prefix) {
+        return calls.stream().filter(call -> call.startsWith(prefix)).toList();
+    }
+
+    @Test
+    public void safetyCriticalChainsAreAskedFirst() {
+        new StubChain("user", 1);
+        new SafetyChain("mobs", 1);
+        new StubChain("food", 1);
+        new SafetyChain("fall", 1);
+
+        runner.tickChains();
+
+        assertEquals(List.of("ask mobs", "ask fall", "ask user", "ask food"), callsStartingWith("ask"));
+    }
+
+    @Test
+    public void highestPriorityRunsAndSafetyCriticalWinsTies() {
+        new StubChain("user", 50);
+        new StubChain("food", 55);
+        new SafetyChain("mobs", 55);
+
+        runner.tickChains();
+
+        assertEquals(List.of("tick mobs"), callsStartingWith("tick"));
+        assertEquals("mobs", runner.getCurrentTaskChain().getName());
+    }
+
+    @Test
+    public void chainsThatCantBeatTheCurrentBestArentAsked() {
+        new SafetyChain("mobs", 80);
+        StubChain food = new StubChain("food", 55);
+        food.ceiling = 55;
+        new StubChain("other", 10);
+        // Exactly the best so far can't win either
+        StubChain tied = new StubChain("tied", 80);
+        tied.ceiling = 80;
+
+        runner.tickChains();
+
+        assertEquals(List.of("ask mobs", "ask other"), callsStartingWith("ask"));
+        assertEquals(List.of("tick mobs"), callsStartingWith("tick"));
+    }
+
+    @Test
+    public void skippedChainsStillGetTheirPreTick() {
+        new SafetyChain("mobs", 80);
+        StubChain food = new StubChain("food", 55);
+        food.ceiling = 55;
+
+        runner.tickChains();
+
+        // Every pre tick comes before any asking
+        assertEquals(List.of("pre mobs", "pre food", "ask mobs", "tick mobs"), calls);
+    }
+
+    @Test
+    public void inactiveChainsAreLeftAlone() {
+        StubChain idle = new StubChain("idle", 100);
+        idle.active = false;
+        new StubChain("user", 50);
+
+        runner.tickChains();
+
+        assertEquals(List.of("pre user", "ask user", "tick user"), calls);
+    }
+
+    @Test
+    public void theLastWinnerIsInterruptedWhenAnotherTakesOver() {
+        StubChain user = new StubChain("user", 50);
+        StubChain food = new StubChain("food", Float.NEGATIVE_INFINITY);
+
+        runner.tickChains();
+        assertSame(user, runner.getCurrentTaskChain());
+
+        food.priority = 55;
+        runner.tickChains();
+
+        assertSame(food, runner.getCurrentTaskChain());
+        assertSame(food, user.interruptedBy);
+        assertNull(food.interruptedBy);
+    }
+}
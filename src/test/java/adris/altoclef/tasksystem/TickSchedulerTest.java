@@ -0,0 +1,115 @@
+package adris.altoclef.tasksystem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TickSchedulerTest {
+
+    private static final long MS = 1_000_000;
+
+    // Only moves when a job says it took time
+    private long now;
+    private final List<String> ran = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        now = 0;
+        ran.clear();
+    }
+
+    @Test
+    public void criticalJobsRunInOrderBeforeDeferrable() {
+        TickScheduler scheduler = new TickScheduler(5, () -> now);
+        scheduler.addDeferrable("deferred", 0, 1, deadline -> ran.add("deferred"));
+        scheduler.addCritical("first", () -> ran.add("first"));
+        scheduler.addCritical("second", () -> ran.add("second"));
+
+        scheduler.tick();
+
+        assertEquals(List.of("first", "second", "deferred"), ran);
+    }
+
+    @Test
+    public void deferrableJobsRunHighestPriorityFirst() {
+        TickScheduler scheduler = new TickScheduler(5, () -> now);
+        scheduler.addDeferrable("low", 1, 1, deadline -> ran.add("low"));
+        scheduler.addDeferrable("high", 10, 1, deadline -> ran.add("high"));
+        scheduler.addDeferrable("middle", 5, 1, deadline -> ran.add("middle"));
+
+        scheduler.tick();
+
+        assertEquals(List.of("high", "middle", "low"), ran);
+    }
+
+    @Test
+    public void deadlineIsTheJobSliceOrWhatsLeftOfTheBudget() {
+        List<Long> deadlines = new ArrayList<>();
+        TickScheduler scheduler = new TickScheduler(3, () -> now);
+        // Takes 2ms, so only 1ms of the budget is left for the next one
+        scheduler.addDeferrable("slow", 2, 10, deadline -> {
+            deadlines.add(deadline);
+            now += 2 * MS;
+        });
+        scheduler.addDeferrable("rest", 1, 10, deadlines::add);
+        scheduler.addDeferrable("small", 0, 0.5f, deadlines::add);
+
+        scheduler.tick();
+
+        // slow: the whole budget. rest: what's left of it. small: its own slice is shorter than what's left.
+        assertEquals(List.of(3 * MS, 3 * MS, 2 * MS + MS / 2), deadlines);
+    }
+
+    @Test
+    public void overBudgetJobsWaitButDontStarve() {
+        TickScheduler scheduler = new TickScheduler(2, () -> now);
+        // Eats the whole budget every tick
+        scheduler.addDeferrable("hog", 1, 5, deadline -> now = deadline);
+        scheduler.addDeferrable("starved", 0, 1, deadline -> ran.add("starved"));
+
+        for (int tick = 1; tick < 10; ++tick) {
+            scheduler.tick();
+            assertEquals(List.of(), ran, "ran on tick " + tick);
+        }
+        scheduler.tick();
+        assertEquals(List.of("starved"), ran);
+
+        // And the count starts over
+        scheduler.tick();
+        assertEquals(List.of("starved"), ran);
+    }
+
+    @Test
+    public void budgetChangesApplyNextTick() {
+        TickScheduler scheduler = new TickScheduler(1, () -> now);
+        scheduler.addDeferrable("first", 1, 5, deadline -> now += 2 * MS);
+        scheduler.addDeferrable("second", 0, 5, deadline -> ran.add("second"));
+
+        scheduler.tick();
+        assertEquals(List.of(), ran);
+
+        scheduler.setBudgetMs(4);
+        scheduler.tick();
+        assertEquals(List.of("second"), ran);
+    }
+
+    @Test
+    public void jobsStopAtTheDeadlineByTheSchedulersClock() {
+        TickScheduler scheduler = new TickScheduler(10, () -> now);
+        // Pretends each step takes a millisecond
+        scheduler.addDeferrable("sliced", 0, 3, deadline -> {
+            while (!scheduler.isPast(deadline)) {
+                ran.add("step");
+                now += MS;
+            }
+        });
+
+        scheduler.tick();
+
+        assertEquals(List.of("step", "step", "step"), ran);
+    }
+}
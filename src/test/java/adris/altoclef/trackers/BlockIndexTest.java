@@ -0,0 +1,128 @@
+package adris.altoclef.trackers;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Vec3d;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockIndexTest {
+
+    private static final Vec3d ORIGIN = new Vec3d(8.5, 64, 8.5);
+
+    @BeforeAll
+    public static void bootstrap() {
+        // The block registry needs the game set up. Older versions set the game version up on their own.
+        // BlockIndex.getId goes through Registries, versions/mapping-1.19.4-1.18.2.txt turns that into Registry for older ones.
+        //#if MC >= 11904
+        SharedConstants.createGameVersion();
+        //#endif
+        Bootstrap.initialize();
+    }
+
+    private static long find(BlockIndex index, double maxDistance, Block... blocks) {
+        return index.findNearest(ORIGIN, maxDistance, packed -> true, blocks);
+    }
+
+    @Test
+    public void findsTheNearestAcrossChunksAndBlocks() {
+        BlockIndex index = new BlockIndex();
+        index.add(Blocks.STONE, new BlockPos(40, 64, 8));
+        index.add(Blocks.DIRT, new BlockPos(3, 64, 20));
+        index.add(Blocks.STONE, new BlockPos(-30, 70, -30));
+        // Not asked for, even if it's right here
+        index.add(Blocks.GOLD_BLOCK, new BlockPos(8, 64, 8));
+
+        assertEquals(new BlockPos(3, 64, 20).asLong(), find(index, 100, Blocks.STONE, Blocks.DIRT));
+        assertEquals(new BlockPos(40, 64, 8).asLong(), find(index, 100, Blocks.STONE));
+        assertEquals(Long.MAX_VALUE, find(index, 100, Blocks.DIAMOND_BLOCK));
+    }
+
+    @Test
+    public void ignoresAnythingPastTheMaxDistance() {
+        BlockIndex index = new BlockIndex();
+        index.add(Blocks.STONE, new BlockPos(60, 64, 8));
+
+        assertEquals(Long.MAX_VALUE, find(index, 40, Blocks.STONE));
+        assertEquals(new BlockPos(60, 64, 8).asLong(), find(index, 60, Blocks.STONE));
+    }
+
+    @Test
+    public void farChunksArentLookedAtOnceSomethingCloserIsFound() {
+        BlockIndex index = new BlockIndex();
+        BlockPos near = new BlockPos(10, 64, 10);
+        index.add(Blocks.STONE, near);
+        // Lots of chunks full of stone further out
+        for (int chunkX = 3; chunkX < 8; ++chunkX) {
+            for (int chunkZ = -4; chunkZ < 4; ++chunkZ) {
+                Int2ObjectOpenHashMap<LongOpenHashSet> blocks = new Int2ObjectOpenHashMap<>();
+                LongOpenHashSet positions = new LongOpenHashSet();
+                for (int i = 0; i < 16; ++i) {
+                    positions.add(new BlockPos((chunkX << 4) + i, 64, (chunkZ << 4) + i).asLong());
+                }
+                blocks.put(BlockIndex.getId(Blocks.STONE), positions);
+                index.putChunk(new ChunkPos(chunkX, chunkZ), blocks);
+            }
+        }
+
+        LongArrayList tested = new LongArrayList();
+        long found = index.findNearest(ORIGIN, 500, packed -> {
+            tested.add(packed);
+            return true;
+        }, Blocks.STONE);
+
+        assertEquals(near.asLong(), found);
+        // The only chunk that could beat it was its own
+        assertEquals(1, tested.size());
+        assertEquals(near.asLong(), tested.getLong(0));
+    }
+
+    @Test
+    public void rejectedPositionsFallBackToTheNextBest() {
+        BlockIndex index = new BlockIndex();
+        BlockPos nearest = new BlockPos(9, 64, 9);
+        BlockPos second = new BlockPos(20, 64, 8);
+        BlockPos third = new BlockPos(50, 64, 8);
+        index.add(Blocks.STONE, nearest);
+        index.add(Blocks.STONE, second);
+        index.add(Blocks.STONE, third);
+
+        long found = index.findNearest(ORIGIN, 100, packed -> packed != nearest.asLong(), Blocks.STONE);
+
+        assertEquals(second.asLong(), found);
+    }
+
+    @Test
+    public void removedChunksAndPositionsAreGone() {
+        BlockIndex index = new BlockIndex();
+        BlockPos a = new BlockPos(5, 64, 5);
+        BlockPos b = new BlockPos(40, 64, 5);
+        index.add(Blocks.STONE, a);
+        index.add(Blocks.STONE, b);
+        assertEquals(2, index.getChunkCount());
+
+        index.remove(a);
+        assertFalse(index.contains(Blocks.STONE, a.asLong()));
+        assertEquals(b.asLong(), find(index, 100, Blocks.STONE));
+
+        index.removeChunk(new ChunkPos(b));
+        assertFalse(index.hasChunk(new ChunkPos(b)));
+        assertEquals(Long.MAX_VALUE, find(index, 100, Blocks.STONE));
+
+        List<BlockPos> all = new ArrayList<>();
+        index.collect(Blocks.STONE, all);
+        assertTrue(all.isEmpty());
+    }
+}
@@ -0,0 +1,149 @@
+package adris.altoclef.util.helpers;
+
+import adris.altoclef.util.baritone.CachedProjectile;
+import net.minecraft.util.math.Vec3d;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectileSimulatorTest {
+
+    private static final int TICKS = 60;
+
+    private static CachedProjectile projectile(Vec3d position, Vec3d velocity, double gravity, double drag) {
+        CachedProjectile projectile = new CachedProjectile();
+        projectile.position = position;
+        projectile.velocity = velocity;
+        projectile.gravity = gravity;
+        projectile.drag = drag;
+        return projectile;
+    }
+
+    // Linear between ticks, same as the simulator's path
+    private static Vec3d positionAt(ProjectileSimulator simulation, int projectile, double time) {
+        int tick = Math.min((int) Math.floor(time), simulation.getTicks() - 1);
+        double s = time - tick;
+        return new Vec3d(
+                simulation.getX(projectile, tick) + (simulation.getX(projectile, tick + 1) - simulation.getX(projectile, tick)) * s,
+                simulation.getY(projectile, tick) + (simulation.getY(projectile, tick + 1) - simulation.getY(projectile, tick)) * s,
+                simulation.getZ(projectile, tick) + (simulation.getZ(projectile, tick + 1) - simulation.getZ(projectile, tick)) * s
+        );
+    }
+
+    @Test
+    public void matchesTheAnalyticApproachForFlatShots() {
+        Vec3d origin = new Vec3d(0.5, 70, -3);
+        Vec3d[] velocities = {
+                new Vec3d(2, 0, 0),
+                new Vec3d(1.2, 0, 1.6),
+                new Vec3d(-0.4, 0, 2.5),
+                new Vec3d(0.9, 0, -0.9),
+        };
+        Vec3d player = new Vec3d(18, 64, 9);
+
+        for (Vec3d velocity : velocities) {
+            // The analytic version doesn't know about drag
+            CachedProjectile arrow = projectile(origin, velocity, ProjectileHelper.ARROW_GRAVITY_ACCEL, 1);
+            ProjectileSimulator simulation = new ProjectileSimulator(List.of(arrow), TICKS);
+            Vec3d expected = ProjectileHelper.calculateArrowClosestApproach(origin, velocity, arrow.gravity, player);
+
+            double horizontalSpeed = Math.sqrt(velocity.x * velocity.x + velocity.z * velocity.z);
+            double time = Math.sqrt((expected.x - origin.x) * (expected.x - origin.x) + (expected.z - origin.z) * (expected.z - origin.z)) / horizontalSpeed;
+            if (time > TICKS) continue;
+            Vec3d simulated = positionAt(simulation, 0, time);
+
+            assertEquals(expected.x, simulated.x, 1e-6, "x for " + velocity);
+            assertEquals(expected.z, simulated.z, 1e-6, "z for " + velocity);
+            // Minecraft moves before it applies gravity, so whole ticks land g * t / 2 above the smooth parabola
+            assertEquals(expected.y, simulated.y, arrow.gravity * (time + 1) / 2, "y for " + velocity);
+        }
+    }
+
+    @Test
+    public void stepsLikeMinecraft() {
+        Vec3d position = new Vec3d(10, 80, 10);
+        Vec3d velocity = new Vec3d(0.7, 0.9, -1.3);
+        double gravity = ProjectileHelper.THROWN_ENTITY_GRAVITY_ACCEL, drag = ProjectileHelper.AIR_DRAG;
+        ProjectileSimulator simulation = new ProjectileSimulator(List.of(projectile(position, velocity, gravity, drag)), TICKS);
+
+        double x = position.x, y = position.y, z = position.z;
+        double velocityX = velocity.x, velocityY = velocity.y, velocityZ = velocity.z;
+        for (int t = 0; t <= TICKS; ++t) {
+            assertEquals(x, simulation.getX(0, t), 1e-9);
+            assertEquals(y, simulation.getY(0, t), 1e-9);
+            assertEquals(z, simulation.getZ(0, t), 1e-9);
+            x += velocityX;
+            y += velocityY;
+            z += velocityZ;
+            velocityX *= drag;
+            velocityY = velocityY * drag - gravity;
+            velocityZ *= drag;
+        }
+    }
+
+    @Test
+    public void projectilesDontAffectEachOther() {
+        CachedProjectile a = projectile(new Vec3d(0, 64, 0), new Vec3d(1, 0.5, 0), ProjectileHelper.ARROW_GRAVITY_ACCEL, ProjectileHelper.AIR_DRAG);
+        CachedProjectile b = projectile(new Vec3d(-20, 90, 5), new Vec3d(0, 0, -2), 0, 1);
+        ProjectileSimulator both = new ProjectileSimulator(List.of(a, b), TICKS);
+        ProjectileSimulator onlyB = new ProjectileSimulator(List.of(b), TICKS);
+
+        assertEquals(2, both.getProjectileCount());
+        for (int t = 0; t <= TICKS; ++t) {
+            assertEquals(onlyB.getX(0, t), both.getX(1, t));
+            assertEquals(onlyB.getY(0, t), both.getY(1, t));
+            assertEquals(onlyB.getZ(0, t), both.getZ(1, t));
+        }
+    }
+
+    @Test
+    public void closestApproachIsOnThePath() {
+        CachedProjectile arrow = projectile(new Vec3d(0, 70, 0), new Vec3d(1.5, 0.3, 0.5), ProjectileHelper.ARROW_GRAVITY_ACCEL, ProjectileHelper.AIR_DRAG);
+        ProjectileSimulator simulation = new ProjectileSimulator(List.of(arrow), TICKS);
+        Vec3d target = new Vec3d(25, 65, 12);
+
+        double[] out = new double[4];
+        double distanceSq = simulation.closestApproach(0, target.x, target.y, target.z, out);
+
+        Vec3d hit = new Vec3d(out[0], out[1], out[2]);
+        assertEquals(hit.squaredDistanceTo(target), distanceSq, 1e-9);
+        assertEquals(0, positionAt(simulation, 0, out[3]).distanceTo(hit), 1e-9);
+        // Nothing on the path, at any tick, is closer
+        for (int t = 0; t <= TICKS; ++t) {
+            Vec3d point = new Vec3d(simulation.getX(0, t), simulation.getY(0, t), simulation.getZ(0, t));
+            assertTrue(point.squaredDistanceTo(target) >= distanceSq - 1e-9, "tick " + t + " is closer");
+        }
+    }
+
+    @Test
+    public void pathBoundsCoverTheWholePath() {
+        CachedProjectile arrow = projectile(new Vec3d(0, 70, 0), new Vec3d(1, 1, 0), ProjectileHelper.ARROW_GRAVITY_ACCEL, 1);
+        ProjectileSimulator simulation = new ProjectileSimulator(List.of(arrow), TICKS);
+
+        double endX = simulation.getX(0, TICKS);
+        assertTrue(simulation.pathIntersects(0, endX - 0.1, 0, -1, endX + 0.1, 200, 1));
+        assertFalse(simulation.pathIntersects(0, endX + 1, 0, -1, endX + 2, 200, 1));
+        assertFalse(simulation.pathIntersects(0, 0, 0, 5, 100, 200, 6));
+    }
+
+    @Test
+    public void predictsOnlyWhatItSimulated() {
+        CachedProjectile arrow = projectile(new Vec3d(0, 70, 0), new Vec3d(1, 0.2, 1), ProjectileHelper.ARROW_GRAVITY_ACCEL, ProjectileHelper.AIR_DRAG);
+        ProjectileSimulator simulation = new ProjectileSimulator(List.of(arrow), TICKS);
+
+        // Where it is 5 ticks later, moving the way we simulated
+        CachedProjectile later = projectile(
+                new Vec3d(simulation.getX(0, 5), simulation.getY(0, 5), simulation.getZ(0, 5)),
+                arrow.velocity, arrow.gravity, arrow.drag);
+        assertTrue(simulation.predicts(List.of(later), 5, 0.3));
+        assertFalse(simulation.predicts(List.of(later), 6, 0.3));
+
+        CachedProjectile knocked = projectile(later.position.add(0, 1, 0), later.velocity, later.gravity, later.drag);
+        assertFalse(simulation.predicts(List.of(knocked), 5, 0.3));
+        // Something new got fired
+        assertFalse(simulation.predicts(List.of(later, knocked), 5, 0.3));
+        assertFalse(simulation.predicts(List.of(later), TICKS + 1, 0.3));
+    }
+}